@@ -0,0 +1,138 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * LogDNA-like record values used by the benchmarks.
+ */
+public final class BenchmarkPayloads {
+
+	public static final String SOURCE_FIELD_NAME = "_crn";
+	public static final String SOURCE_FIELD_VALUE = "crn:v1:bluemix:public:databases-for-mongodb:us-south:a/123:11111111-2222-3333-4444-555555555555::";
+	public static final String REGEX = "crn:(?:[^:]+:){3}([^:]+).*";
+	public static final String FORMAT = "cloud_$1_logdna";
+
+	public enum Shape {
+		FLAT(0), NESTED_3(2), NESTED_6(5);
+
+		final int depth;
+
+		Shape(int depth) {
+			this.depth = depth;
+		}
+
+		/**
+		 * The dotted key of the source field within a value of this shape.
+		 */
+		public String sourceKey() {
+			StringBuilder key = new StringBuilder();
+			for (int i = 0; i < this.depth; i++) {
+				key.append(parentName(i)).append('.');
+			}
+			return key.append(SOURCE_FIELD_NAME).toString();
+		}
+	}
+
+	private BenchmarkPayloads() {
+	}
+
+	/**
+	 * Creates a value of roughly {@code size} characters, with the source field
+	 * nested according to the {@code shape}.
+	 */
+	public static Map<String, Object> createValueMap(Shape shape, int size) {
+		Map<String, Object> root = new HashMap<>();
+		root.put("_account", "0123456789abcdef0123456789abcdef");
+		root.put("_app", "billing-service");
+		root.put("_host", "kube-worker-10.0.0.1");
+		root.put("_ts", 1617181920000L);
+		root.put("level", "info");
+
+		Map<String, Object> parent = root;
+		for (int i = 0; i < shape.depth; i++) {
+			Map<String, Object> nested = new HashMap<>();
+			nested.put("name", "level-" + i);
+			nested.put("labels", createLabels(i));
+			parent.put(parentName(i), nested);
+			parent = nested;
+		}
+		parent.put(SOURCE_FIELD_NAME, SOURCE_FIELD_VALUE);
+
+		int remaining = size - approximateSize(root);
+		int line = Math.max(0, remaining / 2);
+		root.put("_line", repeat("GET /api/v1/accounts 200 12ms ", line));
+
+		Map<String, Object> meta = new HashMap<>();
+		for (int i = 0; remaining - line > 0 && i * 64 < remaining - line; i++) {
+			meta.put("field_" + i, repeat("x", 48));
+		}
+		root.put("_meta", meta);
+
+		return root;
+	}
+
+	/**
+	 * Serializes a value created by {@link #createValueMap(Shape, int)} to
+	 * JSON, as the {@code ByteArrayConverter} would pass it.
+	 */
+	public static byte[] toJson(Map<String, Object> valueMap) {
+		StringBuilder sb = new StringBuilder();
+		appendJson(sb, valueMap);
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void appendJson(StringBuilder sb, Object value) {
+		if (value instanceof Map) {
+			sb.append('{');
+			String separator = "";
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				sb.append(separator).append('"').append(entry.getKey()).append("\":");
+				appendJson(sb, entry.getValue());
+				separator = ",";
+			}
+			sb.append('}');
+		} else if (value instanceof String) {
+			sb.append('"').append(value).append('"');
+		} else {
+			sb.append(value);
+		}
+	}
+
+	private static String parentName(int depth) {
+		return depth == 0 ? "kubernetes" : "level" + depth;
+	}
+
+	private static Map<String, Object> createLabels(int depth) {
+		Map<String, Object> labels = new HashMap<>();
+		labels.put("app", "billing-service");
+		labels.put("pod-template-hash", "5d8f9c7b6-" + depth);
+		return labels;
+	}
+
+	private static int approximateSize(Object value) {
+		if (value instanceof Map) {
+			int size = 2;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				size += String.valueOf(entry.getKey()).length() + 4 + approximateSize(entry.getValue());
+			}
+			return size;
+		}
+		return String.valueOf(value).length() + 2;
+	}
+
+	private static String repeat(String text, int length) {
+		StringBuilder sb = new StringBuilder(length);
+		while (sb.length() < length) {
+			sb.append(text);
+		}
+		sb.setLength(length);
+		return sb.toString();
+	}
+}
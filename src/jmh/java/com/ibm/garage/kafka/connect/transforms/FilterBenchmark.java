@@ -0,0 +1,79 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.header.ConnectHeaders;
+import org.apache.kafka.connect.header.Headers;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterBenchmark {
+
+	private static final String HEADER_KEY = "splunk.header.index";
+
+	@Param({ "FLAT", "NESTED_3", "NESTED_6" })
+	public BenchmarkPayloads.Shape shape;
+
+	@Param({ "1024", "10240", "102400" })
+	public int size;
+
+	@Param({ "true", "false" })
+	public boolean negate;
+
+	@Param({ "true", "false" })
+	public boolean headerPresent;
+
+	private Filter<SinkRecord> transformation;
+	private SinkRecord record;
+
+	@Setup
+	public void setup() {
+		Map<String, Object> props = new HashMap<>();
+		props.put(Filter.HEADER_KEY_CONFIG, HEADER_KEY);
+		props.put(Filter.NEGATE_CONFIG, this.negate);
+
+		this.transformation = new Filter<>();
+		this.transformation.configure(props);
+
+		Headers headers = new ConnectHeaders();
+		headers.addString("splunk.header.host", "kube-worker-10.0.0.1");
+		headers.addString("splunk.header.source", "billing-service");
+		if (this.headerPresent) {
+			headers.addString(HEADER_KEY, "cloud_databases-for-mongodb_logdna");
+		}
+
+		this.record = new SinkRecord("topic", 1, null, null, null,
+				BenchmarkPayloads.createValueMap(this.shape, this.size), 1L, 1L, TimestampType.NO_TIMESTAMP_TYPE,
+				headers);
+	}
+
+	@Benchmark
+	public void apply(Blackhole blackhole) {
+		blackhole.consume(this.transformation.apply(this.record));
+	}
+}
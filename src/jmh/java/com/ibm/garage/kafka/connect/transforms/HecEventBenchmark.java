@@ -0,0 +1,73 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.header.ConnectHeaders;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HecEventBenchmark {
+
+	@Param({ "1024", "16384" })
+	public int payloadSize;
+
+	@Param({ "FLAT", "NESTED_6" })
+	public BenchmarkPayloads.Shape shape;
+
+	/**
+	 * Whether the value is a {@code Map} or JSON bytes, copied byte for byte.
+	 */
+	@Param({ "false", "true" })
+	public boolean jsonBytes;
+
+	private HecEvent<SinkRecord> transformation;
+	private SinkRecord record;
+
+	@Setup
+	public void setup() {
+		Map<String, Object> props = new HashMap<>();
+		props.put(HecEvent.TIME_FIELD_CONFIG, "time");
+		props.put(HecEvent.FIELDS_CONFIG, BenchmarkPayloads.SOURCE_FIELD_NAME);
+		props.put(HecEvent.SOURCETYPE_CONFIG, "kube:logs");
+
+		this.transformation = new HecEvent<>();
+		this.transformation.configure(props);
+
+		Map<String, Object> value = BenchmarkPayloads.createValueMap(this.shape, this.payloadSize);
+		value.put("time", "2021-10-16T13:55:36.123Z");
+		ConnectHeaders headers = new ConnectHeaders();
+		headers.addString("splunk.header.index", "finance");
+		this.record = new SinkRecord("topic", 1, null, null, null,
+				this.jsonBytes ? BenchmarkPayloads.toJson(value) : value, 1L, 1L, TimestampType.CREATE_TIME, headers);
+	}
+
+	@Benchmark
+	public void apply(Blackhole blackhole) {
+		blackhole.consume(this.transformation.apply(this.record));
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PruneBenchmark {
+
+	@Param({ "1024", "16384" })
+	public int payloadSize;
+
+	/**
+	 * {@code field.maxBytes}, {@code 256} truncating the {@code _line}.
+	 */
+	@Param({ "0", "256" })
+	public int maxBytes;
+
+	@Param({ "false", "true" })
+	public boolean jsonBytes;
+
+	private Prune<SinkRecord> transformation;
+	private SinkRecord record;
+
+	@Setup
+	public void setup() {
+		Map<String, Object> props = new HashMap<>();
+		props.put(Prune.EXCLUDE_CONFIG, "_meta,kubernetes.labels,kubernetes.level1.labels");
+		props.put(Prune.FIELD_MAX_BYTES_CONFIG, this.maxBytes);
+
+		this.transformation = new Prune<>();
+		this.transformation.configure(props);
+
+		Map<String, Object> value = BenchmarkPayloads.createValueMap(BenchmarkPayloads.Shape.NESTED_3, this.payloadSize);
+		this.record = new SinkRecord("topic", 1, null, null, null,
+				this.jsonBytes ? BenchmarkPayloads.toJson(value) : value, 1L, 1L, TimestampType.CREATE_TIME);
+	}
+
+	@Benchmark
+	public void apply(Blackhole blackhole) {
+		blackhole.consume(this.transformation.apply(this.record));
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@code regex.engine} values on the regex of a rule.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RegexEngineBenchmark {
+
+	public enum Case {
+		CRN(BenchmarkPayloads.REGEX, BenchmarkPayloads.FORMAT, BenchmarkPayloads.SOURCE_FIELD_VALUE),
+		LOG_LINE("(?<ip>[\\d.]+) \\S+ \\S+ \\[([^\\]]+)\\] \"(\\w+) ([^ \"]+)[^\"]*\" (\\d{3}) .*", "${ip} $3 $5",
+				"10.0.0.1 - frank [10/Oct/2021:13:55:36 -0700] \"GET /api/v1/items?id=42 HTTP/1.1\" 200 2326 "
+						+ "\"-\" \"Mozilla/5.0 (X11; Linux x86_64)\""),
+		// matched without a regex engine
+		SIMPLE("^(.*)$", "my_custom_$1_format", BenchmarkPayloads.SOURCE_FIELD_VALUE),
+		// backtracking polynomially with java.util.regex
+		BACKTRACKING("^(.*a){4}$", "$1", "aaaaaaaaaaaaaaaaaaaaaaaaaa!");
+
+		final String regex;
+		final String format;
+		final String value;
+
+		Case(String regex, String format, String value) {
+			this.regex = regex;
+			this.format = format;
+			this.value = value;
+		}
+	}
+
+	@Param({ Splunk.REGEX_ENGINE_JAVA, Splunk.REGEX_ENGINE_LINEAR })
+	public String engine;
+
+	@Param({ "CRN", "LOG_LINE", "SIMPLE", "BACKTRACKING" })
+	public Case regexCase;
+
+	private RegexFormatter formatter;
+
+	@Setup
+	public void setup() {
+		this.formatter = Splunk.REGEX_ENGINE_LINEAR.equals(this.engine)
+				? RegexFormatter.compileLinear(this.regexCase.regex, this.regexCase.format)
+				: RegexFormatter.compile(this.regexCase.regex, this.regexCase.format);
+	}
+
+	@Benchmark
+	public String format() {
+		return this.formatter.format(this.regexCase.value);
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.header.ConnectHeaders;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RouterBenchmark {
+
+	/**
+	 * Number of tenant routes, matched by equality on the tenant field. The
+	 * record matches the last one.
+	 */
+	@Param({ "10", "500" })
+	public int routes;
+
+	@Param({ "FLAT", "NESTED_6" })
+	public BenchmarkPayloads.Shape shape;
+
+	private Router<SinkRecord> transformation;
+	private SinkRecord record;
+
+	@Setup
+	public void setup() {
+		Map<String, Object> props = new HashMap<>();
+		StringBuilder routeNames = new StringBuilder();
+		for (int i = 0; i < this.routes; i++) {
+			routeNames.append(i == 0 ? "" : ",").append("tenant").append(i);
+			props.put("routes.tenant" + i + ".field", "tenant");
+			props.put("routes.tenant" + i + ".valueEquals", "tenant-" + i);
+			props.put("routes.tenant" + i + ".index", "index_" + i);
+		}
+		props.put(Router.ROUTES_CONFIG, routeNames.toString());
+
+		this.transformation = new Router<>();
+		this.transformation.configure(props);
+
+		Map<String, Object> value = BenchmarkPayloads.createValueMap(this.shape, 1024);
+		value.put("tenant", "tenant-" + (this.routes - 1));
+		this.record = new SinkRecord("topic", 1, null, null, null, value, 1L, 1L, TimestampType.NO_TIMESTAMP_TYPE,
+				new ConnectHeaders());
+	}
+
+	@Benchmark
+	public void apply(Blackhole blackhole) {
+		blackhole.consume(this.transformation.apply(this.record));
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SplunkBenchmark {
+
+	private static final String DEST_FIELD_NAME = "splunk.header.index";
+
+	@Param({ "FLAT", "NESTED_3", "NESTED_6" })
+	public BenchmarkPayloads.Shape shape;
+
+	@Param({ "1024", "10240", "102400" })
+	public int size;
+
+	@Param({ "true", "false" })
+	public boolean regex;
+
+	@Param({ "true", "false" })
+	public boolean toHeader;
+
+	/**
+	 * Schemaless JSON value as a {@code Map} (from the {@code JsonConverter}),
+	 * or as bytes (from the {@code ByteArrayConverter}) read with the given
+	 * {@code json.mode}.
+	 */
+	@Param({ "none", Splunk.JSON_MODE_SCAN, Splunk.JSON_MODE_MAP })
+	public String jsonMode;
+
+	private Splunk<SinkRecord> transformation;
+	private SinkRecord record;
+
+	@Setup
+	public void setup() {
+		// source.preserve keeps the source field in place, so the same record can
+		// be transformed again and again
+		Map<String, Object> props = new HashMap<>();
+		props.put(Splunk.SOURCE_KEY_CONFIG, this.shape.sourceKey());
+		props.put(Splunk.SOURCE_PRESERVE_CONFIG, true);
+		props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+		props.put(Splunk.DEST_TO_HEADER_CONFIG, this.toHeader);
+		if (!"none".equals(this.jsonMode)) {
+			props.put(Splunk.JSON_MODE_CONFIG, this.jsonMode);
+		}
+		if (this.regex) {
+			props.put(Splunk.REGEX_PATTERN_CONFIG, BenchmarkPayloads.REGEX);
+			props.put(Splunk.REGEX_FORMAT_CONFIG, BenchmarkPayloads.FORMAT);
+		}
+
+		this.transformation = new Splunk<>();
+		this.transformation.configure(props);
+
+		Map<String, Object> valueMap = BenchmarkPayloads.createValueMap(this.shape, this.size);
+		this.record = new SinkRecord("topic", 1, null, null, null,
+				!"none".equals(this.jsonMode) ? BenchmarkPayloads.toJson(valueMap) : valueMap, 1L);
+	}
+
+	@Benchmark
+	public SinkRecord apply() {
+		return this.transformation.apply(this.record);
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@code timestamp.formats} parser with {@code java.time} on
+ * timestamps which share their second for {@code sameSecond} values in a row,
+ * e.g. the lines of a busy log.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TimestampBenchmark {
+
+	private static final int VALUE_COUNT = 1024;
+
+	@Param({ "1", "100" })
+	public int sameSecond;
+
+	@Param({ TimestampParser.ISO8601, "yyyy-MM-dd'T'HH:mm:ss.SSSXXX" })
+	public String format;
+
+	private String[] values;
+	private TimestampParser parser;
+	private int next;
+
+	@Setup
+	public void setup() {
+		this.values = new String[VALUE_COUNT];
+		OffsetDateTime start = OffsetDateTime.of(2021, 10, 16, 13, 55, 36, 0, ZoneOffset.ofHours(2));
+		for (int i = 0; i < VALUE_COUNT; i++) {
+			this.values[i] = start.plusSeconds(i / this.sameSecond).plusNanos((i * 7 % 999 + 1) * 1000000L)
+					.toString();
+		}
+		this.parser = TimestampParser.compile(Collections.singletonList(this.format), ZoneOffset.UTC);
+	}
+
+	private String nextValue() {
+		String value = this.values[this.next];
+		this.next = (this.next + 1) % VALUE_COUNT;
+		return value;
+	}
+
+	@Benchmark
+	public long parser() {
+		return this.parser.parse(nextValue());
+	}
+
+	@Benchmark
+	public long javaTime() {
+		return OffsetDateTime.parse(nextValue()).toInstant().toEpochMilli();
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.transforms.Transformation;
+
+/**
+ * A {@link Transformation} which can also be applied to a batch of records,
+ * e.g. the records of a {@code SinkTask.put()} call, see
+ * {@link BatchTransformationChain}.
+ */
+public interface BatchTransformation<R extends ConnectRecord<R>> extends Transformation<R> {
+
+	/**
+	 * Applies the transformation to every record, in order. The result is the
+	 * same as calling {@link #apply(ConnectRecord)} on each record, without
+	 * the discarded ({@code null}) records.
+	 *
+	 * @return a new list, the given one is not changed
+	 */
+	default List<R> applyAll(List<R> records) {
+		List<R> transformedRecords = new ArrayList<>(records.size());
+		for (R record : records) {
+			R transformedRecord = apply(record);
+			if (transformedRecord != null) {
+				transformedRecords.add(transformedRecord);
+			}
+		}
+		return transformedRecords;
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.transforms.Transformation;
+
+/**
+ * Chain of configured transformations applied batch by batch, for a sink task
+ * calling the transformations itself from its {@code put()} method instead of
+ * through the {@code transforms} of the connector:
+ *
+ * <pre>
+ * public void put(Collection&lt;SinkRecord&gt; records) {
+ * 	for (SinkRecord record : this.transformations.apply(records)) {
+ * 		...
+ * 	}
+ * }
+ * </pre>
+ *
+ * Each {@link BatchTransformation} processes the whole batch in one call,
+ * other transformations are applied record by record.
+ */
+public final class BatchTransformationChain<R extends ConnectRecord<R>> implements AutoCloseable {
+
+	private final List<Transformation<R>> transformations;
+
+	public BatchTransformationChain(List<? extends Transformation<R>> transformations) {
+		this.transformations = new ArrayList<>(transformations);
+	}
+
+	/**
+	 * Returns the transformed records, in order, without the discarded ones.
+	 */
+	public List<R> apply(Collection<R> records) {
+		List<R> batch = records instanceof List ? (List<R>) records : new ArrayList<>(records);
+
+		for (Transformation<R> transformation : this.transformations) {
+			if (batch.isEmpty()) {
+				break;
+			}
+			if (transformation instanceof BatchTransformation) {
+				batch = ((BatchTransformation<R>) transformation).applyAll(batch);
+			} else {
+				List<R> transformedBatch = new ArrayList<>(batch.size());
+				for (R record : batch) {
+					R transformedRecord = transformation.apply(record);
+					if (transformedRecord != null) {
+						transformedBatch.add(transformedRecord);
+					}
+				}
+				batch = transformedBatch;
+			}
+		}
+		return batch;
+	}
+
+	/**
+	 * Closes the transformations of the chain.
+	 */
+	@Override
+	public void close() {
+		for (Transformation<R> transformation : this.transformations) {
+			transformation.close();
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kafka.connect.header.Headers;
+
+/**
+ * Copy of a record value and headers made on the first write. Only the maps
+ * on the written paths are copied (path copying), every other nested map is
+ * shared with the original value, which is left unchanged.
+ */
+final class CopyOnWriteValue {
+
+	private final Map<String, Object> originalValueMap;
+	private final Headers originalHeaders;
+	private final Set<Map<String, Object>> copies = Collections.newSetFromMap(new IdentityHashMap<>());
+	private Map<String, Object> valueMap;
+	private Headers headers;
+
+	CopyOnWriteValue(Map<String, Object> valueMap, Headers headers) {
+		this.originalValueMap = valueMap;
+		this.originalHeaders = headers;
+	}
+
+	boolean isValueCopied() {
+		return this.valueMap != null;
+	}
+
+	/**
+	 * Returns the copy of the value, or the original value if it has not been
+	 * written.
+	 */
+	Map<String, Object> currentValueMap() {
+		return this.valueMap != null ? this.valueMap : this.originalValueMap;
+	}
+
+	Headers currentHeaders() {
+		return this.headers != null ? this.headers : this.originalHeaders;
+	}
+
+	/**
+	 * Returns the writable copy of the root map.
+	 */
+	Map<String, Object> valueMap() {
+		if (this.valueMap == null) {
+			this.valueMap = copy(this.originalValueMap);
+		}
+		return this.valueMap;
+	}
+
+	/**
+	 * Returns the writable copy of the map holding the leaf key of the path,
+	 * copying the maps on the path that have not been copied yet, or
+	 * {@code null} if the map does not exist.
+	 */
+	@SuppressWarnings("unchecked")
+	Map<String, Object> parent(KeyPath path) {
+		Map<String, Object> valueMap = valueMap();
+
+		for (int i = 0; i < path.size() - 1; i++) {
+			Object value = valueMap.get(path.segment(i));
+			if (!(value instanceof Map)) {
+				return null;
+			}
+
+			Map<String, Object> nestedValueMap = (Map<String, Object>) value;
+			if (!this.copies.contains(nestedValueMap)) {
+				nestedValueMap = copy(nestedValueMap);
+				valueMap.put(path.segment(i), nestedValueMap);
+			}
+			valueMap = nestedValueMap;
+		}
+
+		return valueMap;
+	}
+
+	Headers headers() {
+		if (this.headers == null) {
+			this.headers = this.originalHeaders.duplicate();
+		}
+		return this.headers;
+	}
+
+	private Map<String, Object> copy(Map<String, Object> valueMap) {
+		Map<String, Object> copy = new LinkedHashMap<>(valueMap);
+		this.copies.add(copy);
+		return copy;
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.apache.kafka.connect.header.Headers;
+
+/**
+ * Applies {@link SplunkRule}s to values which are not changed in place. The
+ * rules are first evaluated against the input value, taking into account the
+ * edits made by the earlier rules, then the output value is built once from
+ * the tree of edits of the rules that applied.
+ * <p>
+ * The written values are held in one slot per rule, followed by the slots of
+ * the {@code regex.outputs} of each rule.
+ *
+ * @param <V> type of the values
+ */
+abstract class EditedRules<V> {
+
+	static final byte WRITE = 1;
+	static final byte REMOVE = 2;
+
+	private static final class Edit {
+		final KeyPath path;
+		final byte kind;
+		final int value;
+
+		Edit(KeyPath path, byte kind, int value) {
+			this.path = path;
+			this.kind = kind;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Node of the tree of edits: a written or removed field, or (with no kind)
+	 * an object holding edited fields.
+	 */
+	static final class EditNode {
+		final Map<String, EditNode> children = new LinkedHashMap<>();
+		byte kind;
+		// slot of the written value
+		int value;
+	}
+
+	protected final List<SplunkRule> rules;
+	private final Edit[][] edits;
+	private final int[][] sourceEditors;
+	private final byte[][] sourceEditKinds;
+	private final int[][] sourceEditValues;
+	private final int[][] parentEditors;
+	private final int[] outputSlots;
+	private final int valueCount;
+
+	EditedRules(List<SplunkRule> rules) {
+		this.rules = rules;
+		this.edits = new Edit[rules.size()][];
+		this.sourceEditors = new int[rules.size()][];
+		this.sourceEditKinds = new byte[rules.size()][];
+		this.sourceEditValues = new int[rules.size()][];
+		this.parentEditors = new int[rules.size()][];
+		this.outputSlots = new int[rules.size()];
+
+		int valueCount = rules.size();
+		for (int i = 0; i < rules.size(); i++) {
+			this.outputSlots[i] = valueCount;
+			valueCount += rules.get(i).outputCount();
+		}
+		this.valueCount = valueCount;
+
+		for (int i = 0; i < rules.size(); i++) {
+			this.edits[i] = editsOf(rules.get(i), i, this.outputSlots[i]);
+
+			// earlier rules writing or removing the source.key field of this rule,
+			// or the root object it is nested in
+			KeyPath sourceKeyPath = rules.get(i).sourceKeyPath();
+			KeyPath parentRoot = sourceKeyPath.isNested() ? KeyPath.of(sourceKeyPath.segment(0)) : null;
+			List<Integer> sourceEditors = new ArrayList<>();
+			List<Byte> sourceEditKinds = new ArrayList<>();
+			List<Integer> sourceEditValues = new ArrayList<>();
+			List<Integer> parentEditors = new ArrayList<>();
+			for (int j = 0; j < i; j++) {
+				for (Edit edit : this.edits[j]) {
+					if (edit.path.equals(sourceKeyPath)) {
+						sourceEditors.add(j);
+						sourceEditKinds.add(edit.kind);
+						sourceEditValues.add(edit.value);
+					} else if (edit.path.equals(parentRoot)) {
+						parentEditors.add(j);
+					}
+				}
+			}
+
+			this.sourceEditors[i] = sourceEditors.stream().mapToInt(Integer::intValue).toArray();
+			this.sourceEditKinds[i] = new byte[sourceEditKinds.size()];
+			for (int k = 0; k < sourceEditKinds.size(); k++) {
+				this.sourceEditKinds[i][k] = sourceEditKinds.get(k);
+			}
+			this.sourceEditValues[i] = sourceEditValues.stream().mapToInt(Integer::intValue).toArray();
+			this.parentEditors[i] = parentEditors.stream().mapToInt(Integer::intValue).toArray();
+		}
+	}
+
+	/**
+	 * Edits of the value made by the rule when it applies, in the same order
+	 * as {@link SplunkRule#apply(Map, Map, Headers)} makes them.
+	 */
+	private static Edit[] editsOf(SplunkRule rule, int value, int firstOutputValue) {
+		List<Edit> edits = new ArrayList<>();
+
+		if (rule.isTimestamp() || !rule.formatsSource()) {
+			// only the headers, the outputs or the record timestamp are written
+		} else if (rule.destKey() == null) {
+			edits.add(new Edit(rule.sourceKeyPath(), rule.destToHeader() ? REMOVE : WRITE, value));
+		} else {
+			if (!rule.sourcePreserve()) {
+				edits.add(new Edit(rule.sourceKeyPath(), REMOVE, value));
+			}
+			edits.add(new Edit(KeyPath.of(rule.destKey()), rule.destToHeader() ? REMOVE : WRITE, value));
+		}
+
+		for (int k = 0; k < rule.outputCount(); k++) {
+			if (!rule.outputToHeader(k)) {
+				edits.add(new Edit(KeyPath.of(rule.outputName(k)), WRITE, firstOutputValue + k));
+			}
+		}
+
+		return edits.toArray(new Edit[0]);
+	}
+
+	/**
+	 * Returns an array holding the values written by the rules.
+	 */
+	final String[] newValues() {
+		return new String[this.valueCount];
+	}
+
+	/**
+	 * Evaluates the rules against the value and adds the headers. Fills
+	 * {@code values} (see {@link #newValues()}) with the values written by the
+	 * rules and {@code applied}
+	 * with the rules that edited the value, and sets the {@code timestamp}
+	 * parsed by the timestamp rules.
+	 */
+	final void evaluate(V value, Headers headers, BiConsumer<SplunkRule, SplunkRule.Outcome> outcomes,
+			String[] values, BitSet applied, SplunkRule.RecordTimestamp timestamp) {
+		for (int i = 0; i < this.rules.size(); i++) {
+			SplunkRule rule = this.rules.get(i);
+			SplunkRule.Outcome outcome = applyRule(i, value, values, applied, timestamp);
+
+			if (outcome.modified && rule.destToHeader()) {
+				rule.putHeader(headers, values[i]);
+			}
+			if (outcome.modified) {
+				for (int k = 0; k < rule.outputCount(); k++) {
+					if (rule.outputToHeader(k)) {
+						rule.putOutputHeader(headers, k, values[this.outputSlots[i] + k]);
+					}
+				}
+			}
+			outcomes.accept(rule, outcome);
+		}
+	}
+
+	/**
+	 * Returns the {@code source.key} value of the i-th rule read from the input
+	 * value, or the {@link SplunkRule.Outcome} if it cannot be read.
+	 */
+	protected abstract Object readSource(V value, int rule);
+
+	private SplunkRule.Outcome applyRule(int i, V value, String[] values, BitSet applied,
+			SplunkRule.RecordTimestamp timestamp) {
+		for (int j : this.parentEditors[i]) {
+			if (applied.get(j)) {
+				return SplunkRule.Outcome.NESTED_OBJECT_NOT_FOUND;
+			}
+		}
+
+		Object sourceValue = null;
+		boolean edited = false;
+		for (int k = this.sourceEditors[i].length - 1; k >= 0 && !edited; k--) {
+			int j = this.sourceEditors[i][k];
+			if (applied.get(j)) {
+				if (this.sourceEditKinds[i][k] == REMOVE) {
+					return SplunkRule.Outcome.SOURCE_KEY_NOT_FOUND;
+				}
+				sourceValue = values[this.sourceEditValues[i][k]];
+				edited = true;
+			}
+		}
+
+		if (!edited) {
+			sourceValue = readSource(value, i);
+			if (sourceValue instanceof SplunkRule.Outcome) {
+				return (SplunkRule.Outcome) sourceValue;
+			}
+		}
+
+		SplunkRule rule = this.rules.get(i);
+		SplunkRule.Outcome outcome = SplunkRule.Outcome.MODIFIED;
+		String[] outputValues = rule.outputCount() > 0 ? new String[rule.outputCount()] : null;
+		String formattedValue = rule.formatValue(String.valueOf(sourceValue), outputValues);
+		if (formattedValue == null) {
+			if (rule.regexDefaultValue() == null) {
+				return SplunkRule.Outcome.REGEX_NOT_MATCHED;
+			}
+			formattedValue = rule.defaultValue(outputValues);
+			outcome = SplunkRule.Outcome.DEFAULTED;
+		}
+
+		if (rule.isTimestamp()) {
+			long millis = rule.parseTimestamp(sourceValue, formattedValue);
+			if (millis == Timestamps.INVALID) {
+				return SplunkRule.Outcome.TIMESTAMP_NOT_PARSED;
+			}
+			values[i] = String.valueOf(millis);
+			if (timestamp != null) {
+				if (!rule.destToHeader()) {
+					timestamp.millis = millis;
+				}
+				timestamp.applied = true;
+			}
+			return outcome;
+		}
+
+		values[i] = formattedValue;
+		if (outputValues != null) {
+			System.arraycopy(outputValues, 0, values, this.outputSlots[i], outputValues.length);
+		}
+		applied.set(i);
+		return outcome;
+	}
+
+	/**
+	 * Whether the rules that applied edited the value, and not only the
+	 * headers.
+	 */
+	final boolean hasEdits(BitSet applied) {
+		for (int j = applied.nextSetBit(0); j >= 0; j = applied.nextSetBit(j + 1)) {
+			if (this.edits[j].length > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	final EditNode editTree(BitSet applied) {
+		EditNode root = new EditNode();
+
+		for (int j = applied.nextSetBit(0); j >= 0; j = applied.nextSetBit(j + 1)) {
+			for (Edit edit : this.edits[j]) {
+				EditNode node = root;
+				for (int s = 0; s < edit.path.size(); s++) {
+					node = node.children.computeIfAbsent(edit.path.segment(s), segment -> new EditNode());
+				}
+				node.kind = edit.kind;
+				node.value = edit.value;
+				node.children.clear();
+			}
+		}
+
+		return root;
+	}
+}
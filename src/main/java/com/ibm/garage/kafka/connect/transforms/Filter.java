@@ -5,73 +5,188 @@
 
 package com.ibm.garage.kafka.connect.transforms;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.connect.connector.ConnectRecord;
-import org.apache.kafka.connect.header.Header;
-import org.apache.kafka.connect.transforms.Transformation;
 import org.apache.kafka.connect.transforms.util.SimpleConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class Filter<R extends ConnectRecord<R>> implements Transformation<R> {
+public class Filter<R extends ConnectRecord<R>> implements BatchTransformation<R> {
 
 	private static final Logger log = LoggerFactory.getLogger(Filter.class);
 
-	public static final String OVERVIEW_DOC = "Filter transformation to discard a record if the header field exists";
+	public static final String OVERVIEW_DOC = "Filter transformation to discard a record if the header field (or a record field) exists or matches";
 
 	public static final String HEADER_KEY_CONFIG = "headerKey";
+	public static final String FIELD_CONFIG = "field";
+	public static final String VALUE_EQUALS_CONFIG = "valueEquals";
+	public static final String VALUE_IN_CONFIG = "valueIn";
+	public static final String VALUE_PREFIX_CONFIG = "valuePrefix";
+	public static final String VALUE_REGEX_CONFIG = "valueRegex";
+	public static final String CONDITIONS_CONFIG = "conditions";
+	public static final String OPERATOR_CONFIG = "operator";
 	public static final String NEGATE_CONFIG = "isNegate";
-
-	public static final ConfigDef CONFIG_DEF = new ConfigDef().define(HEADER_KEY_CONFIG, ConfigDef.Type.STRING,
-			ConfigDef.NO_DEFAULT_VALUE, ConfigDef.Importance.MEDIUM, "hasHeader key").define(NEGATE_CONFIG,
-					ConfigDef.Type.BOOLEAN, Boolean.FALSE, ConfigDef.Importance.MEDIUM, "Negate the condition");
-
-	private String headerName;
+	public static final String TRACE_SAMPLE_RATE_CONFIG = "traceSampleRate";
+
+	/**
+	 * Configuration of a single condition. With multiple conditions these keys
+	 * are prefixed with {@code conditions.<name>.}.
+	 */
+	public static final ConfigDef CONDITION_CONFIG_DEF = new ConfigDef()
+			.define(HEADER_KEY_CONFIG, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM, "hasHeader key")
+			.define(FIELD_CONFIG, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM,
+					"Record value field, nested fields in the dotted form")
+			.define(VALUE_EQUALS_CONFIG, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM,
+					"Header or field value equals")
+			.define(VALUE_IN_CONFIG, ConfigDef.Type.LIST, null, ConfigDef.Importance.MEDIUM,
+					"Header or field value is one of")
+			.define(VALUE_PREFIX_CONFIG, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM,
+					"Header or field value starts with")
+			.define(VALUE_REGEX_CONFIG, ConfigDef.Type.STRING, null, Splunk.PatternValidator(), ConfigDef.Importance.MEDIUM,
+					"Header or field value matches regex pattern");
+
+	public static final ConfigDef CONFIG_DEF = new ConfigDef(CONDITION_CONFIG_DEF)
+			.define(CONDITIONS_CONFIG, ConfigDef.Type.LIST, "", ConfigDef.Importance.MEDIUM,
+					"List of condition names, each configured with \"" + CONDITIONS_CONFIG + ".<name>.\" prefixed keys")
+			.define(OPERATOR_CONFIG, ConfigDef.Type.STRING, FilterConditions.Operator.AND.name(),
+					ConfigDef.ValidString.in(FilterConditions.Operator.AND.name(), FilterConditions.Operator.OR.name()),
+					ConfigDef.Importance.MEDIUM, "Combine the conditions with AND or OR")
+			.define(NEGATE_CONFIG, ConfigDef.Type.BOOLEAN, Boolean.FALSE, ConfigDef.Importance.MEDIUM,
+					"Negate the condition")
+			.define(TRACE_SAMPLE_RATE_CONFIG, ConfigDef.Type.INT, 0, ConfigDef.Range.atLeast(0),
+					ConfigDef.Importance.LOW, "Log the condition results of 1 in N records, 0 to disable");
+
+	static final String METRIC_GROUP = "filter-transform-metrics";
+
+	private FilterConditions conditions;
 	private Boolean isNegate;
+	private int traceSampleRate;
+	private int traceCountdown;
+
+	private final TransformMetrics metrics = new TransformMetrics(METRIC_GROUP);
+	private final LongAdder recordsIn = this.metrics.counter("records-in-total", "Number of records processed");
+	private final LongAdder recordsFiltered = this.metrics.counter("records-filtered-total",
+			"Number of records discarded");
+	private final TransformMetrics.LatencyHistogram applyLatency = this.metrics.latency("apply-latency",
+			"apply() latency in nanoseconds");
 
 	@Override
 	public void configure(Map<String, ?> props) {
 		log.info("Getting configuration for " + Filter.class.getName() + " transformation...");
 
 		final SimpleConfig config = new SimpleConfig(CONFIG_DEF, props);
+		final List<String> conditionNames = config.getList(CONDITIONS_CONFIG);
+
+		final List<FilterCondition> conditions;
+		if (conditionNames.isEmpty()) {
+			conditions = Collections.singletonList(FilterCondition.configure("", config));
+		} else {
+			// a condition key without prefix would be silently ignored
+			for (String conditionKey : CONDITION_CONFIG_DEF.names()) {
+				if (props.containsKey(conditionKey)) {
+					throw new RuntimeException("Config: \"" + conditionKey + "\" cannot be combined with \""
+							+ CONDITIONS_CONFIG + "\", configure it for each condition instead");
+				}
+			}
+			if (conditionNames.size() > FilterConditions.MAX_CONDITIONS) {
+				throw new RuntimeException("Config: \"" + CONDITIONS_CONFIG + "\" cannot list more than "
+						+ FilterConditions.MAX_CONDITIONS + " conditions");
+			}
 
-		this.headerName = config.getString(HEADER_KEY_CONFIG);
-		if (this.headerName == null || this.headerName.isEmpty()) {
-			throw new RuntimeException("\"" + HEADER_KEY_CONFIG + "\" configuration cannot be neither null nor empty");
+			conditions = new ArrayList<>(conditionNames.size());
+			final Set<String> uniqueConditionNames = new HashSet<>();
+			for (String conditionName : conditionNames) {
+				final String prefix = CONDITIONS_CONFIG + "." + conditionName + ".";
+				if (!uniqueConditionNames.add(conditionName)) {
+					throw new RuntimeException("Config: condition \"" + conditionName
+							+ "\" is listed more than once in \"" + CONDITIONS_CONFIG + "\"");
+				}
+				conditions.add(FilterCondition.configure(prefix,
+						new SimpleConfig(CONDITION_CONFIG_DEF, config.originalsWithPrefix(prefix))));
+			}
 		}
 
+		this.conditions = new FilterConditions(conditions,
+				FilterConditions.Operator.valueOf(config.getString(OPERATOR_CONFIG)));
 		this.isNegate = config.getBoolean(NEGATE_CONFIG);
+		this.traceSampleRate = config.getInt(TRACE_SAMPLE_RATE_CONFIG);
+		this.traceCountdown = this.traceSampleRate;
+		log.info("Metrics of " + Filter.class.getName() + " transformation are published with the tags "
+				+ this.metrics.register());
 
 		log.info(Filter.class.getName() + " transformation has been successfully configured.");
 	}
 
 	@Override
 	public R apply(R record) {
-		log.debug("Filtering a record...");
+		final long start = System.nanoTime();
+		this.recordsIn.increment();
 
-		Iterator<Header> header = record.headers().allWithName(this.headerName);
+		final boolean discarded = isDiscarded(record);
 
-		if (this.isNegate) {
-			if (!header.hasNext()) {
-				log.debug("The record has been discarded.");
-				return null;
-			}
-		} else {
-			if (header.hasNext()) {
-				log.debug("The record has been discarded.");
-				return null;
+		if (discarded) {
+			this.recordsFiltered.increment();
+		}
+		this.applyLatency.record(System.nanoTime() - start);
+		return discarded ? null : record;
+	}
+
+	/**
+	 * Keeps the records which are not discarded in a single pass over the
+	 * batch. The {@code apply-latency} metrics record the average latency of
+	 * the batch records.
+	 */
+	@Override
+	public List<R> applyAll(List<R> records) {
+		final long start = System.nanoTime();
+		this.recordsIn.add(records.size());
+
+		final List<R> keptRecords = new ArrayList<>(records.size());
+		for (R record : records) {
+			if (!isDiscarded(record)) {
+				keptRecords.add(record);
 			}
 		}
 
-		log.debug("The record has not been discarded.");
-		return record;
+		this.recordsFiltered.add(records.size() - keptRecords.size());
+		if (!records.isEmpty()) {
+			this.applyLatency.record((System.nanoTime() - start) / records.size(), records.size());
+		}
+		return keptRecords;
+	}
+
+	private boolean isDiscarded(R record) {
+		final boolean discarded = this.conditions.test(record) != this.isNegate;
+
+		if (this.traceSampleRate > 0 && --this.traceCountdown <= 0) {
+			this.traceCountdown = this.traceSampleRate;
+			trace(record, discarded);
+		}
+		return discarded;
+	}
+
+	private void trace(R record, boolean discarded) {
+		final StringBuilder trace = new StringBuilder("Trace of a record from ").append(record.topic()).append('-')
+				.append(record.kafkaPartition()).append(':');
+		this.conditions.trace(record, trace);
+		if (this.isNegate) {
+			trace.append(", negated");
+		}
+		trace.append(discarded ? ", the record has been discarded." : ", the record has not been discarded.");
+		log.info(trace.toString());
 	}
 
 	@Override
 	public void close() {
+		this.metrics.close();
 	}
 
 	@Override
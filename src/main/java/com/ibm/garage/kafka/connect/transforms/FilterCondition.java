@@ -0,0 +1,255 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import static com.ibm.garage.kafka.connect.transforms.Filter.FIELD_CONFIG;
+import static com.ibm.garage.kafka.connect.transforms.Filter.HEADER_KEY_CONFIG;
+import static com.ibm.garage.kafka.connect.transforms.Filter.VALUE_EQUALS_CONFIG;
+import static com.ibm.garage.kafka.connect.transforms.Filter.VALUE_IN_CONFIG;
+import static com.ibm.garage.kafka.connect.transforms.Filter.VALUE_PREFIX_CONFIG;
+import static com.ibm.garage.kafka.connect.transforms.Filter.VALUE_REGEX_CONFIG;
+import static org.apache.kafka.connect.transforms.util.Requirements.requireMapOrNull;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.kafka.common.config.AbstractConfig;
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.header.Header;
+
+/**
+ * One condition of the {@link Filter} transformation: a header key or a
+ * (dotted) field of the record value, and an optional matcher of its value,
+ * compiled once.
+ */
+final class FilterCondition {
+
+	private static final String PURPOSE = "field value filtering";
+	private static final Object NOT_FOUND = new Object();
+
+	private final String name;
+	private final String headerKey;
+	private final KeyPath field;
+	private final Predicate<String> valueMatcher;
+	private final Set<String> equalValues;
+
+	private FilterCondition(String name, String headerKey, KeyPath field, Predicate<String> valueMatcher,
+			Set<String> equalValues) {
+		this.name = name;
+		this.headerKey = headerKey;
+		this.field = field;
+		this.valueMatcher = valueMatcher;
+		this.equalValues = equalValues;
+	}
+
+	/**
+	 * @param prefix prefix of the condition configuration keys, used in error
+	 *               messages (empty for the single condition mode)
+	 */
+	static FilterCondition configure(String prefix, AbstractConfig config) {
+		String headerKey = config.getString(HEADER_KEY_CONFIG);
+		String field = config.getString(FIELD_CONFIG);
+
+		if (headerKey != null && field != null) {
+			throw new RuntimeException("Config: \"" + prefix + HEADER_KEY_CONFIG + "\" and \"" + prefix + FIELD_CONFIG
+					+ "\" cannot be specified both");
+		}
+		Set<String> equalValues = equalValues(config);
+		if (field != null) {
+			if (field.isEmpty()) {
+				throw new RuntimeException("\"" + prefix + FIELD_CONFIG + "\" configuration cannot be empty");
+			}
+			return new FilterCondition(prefix.isEmpty() ? field : prefix.substring(0, prefix.length() - 1), null,
+					KeyPath.parse(field), valueMatcher(prefix, config, equalValues), equalValues);
+		}
+		if (headerKey == null || headerKey.isEmpty()) {
+			throw new RuntimeException(
+					"\"" + prefix + HEADER_KEY_CONFIG + "\" configuration cannot be neither null nor empty");
+		}
+
+		return new FilterCondition(prefix.isEmpty() ? headerKey : prefix.substring(0, prefix.length() - 1), headerKey,
+				null, valueMatcher(prefix, config, equalValues), equalValues);
+	}
+
+	private static Set<String> equalValues(AbstractConfig config) {
+		if (config.getString(VALUE_EQUALS_CONFIG) != null) {
+			return Collections.singleton(config.getString(VALUE_EQUALS_CONFIG));
+		}
+		return config.getList(VALUE_IN_CONFIG) != null ? new HashSet<>(config.getList(VALUE_IN_CONFIG)) : null;
+	}
+
+	/**
+	 * Returns the matcher configured by one of the {@code value*} keys, or
+	 * {@code null} if any value matches.
+	 *
+	 * @param equalValues the values of {@code valueIn}, shared with the index
+	 *                    of the routes
+	 */
+	static Predicate<String> valueMatcher(String prefix, AbstractConfig config, Set<String> equalValues) {
+		String valueEquals = config.getString(VALUE_EQUALS_CONFIG);
+		List<String> valueIn = config.getList(VALUE_IN_CONFIG);
+		String valuePrefix = config.getString(VALUE_PREFIX_CONFIG);
+		String valueRegex = config.getString(VALUE_REGEX_CONFIG);
+
+		int matchers = (valueEquals != null ? 1 : 0) + (valueIn != null ? 1 : 0) + (valuePrefix != null ? 1 : 0)
+				+ (valueRegex != null ? 1 : 0);
+		if (matchers > 1) {
+			throw new RuntimeException("Config: only one of \"" + prefix + VALUE_EQUALS_CONFIG + "\", \"" + prefix
+					+ VALUE_IN_CONFIG + "\", \"" + prefix + VALUE_PREFIX_CONFIG + "\" and \"" + prefix
+					+ VALUE_REGEX_CONFIG + "\" can be specified");
+		}
+
+		if (valueEquals != null) {
+			return valueEquals::equals;
+		}
+		if (valueIn != null) {
+			return equalValues::contains;
+		}
+		if (valuePrefix != null) {
+			return value -> value.startsWith(valuePrefix);
+		}
+		if (valueRegex != null) {
+			Pattern pattern = Pattern.compile(valueRegex);
+			ThreadLocal<Matcher> regexMatchers = ThreadLocal.withInitial(() -> pattern.matcher(""));
+			return value -> regexMatchers.get().reset(value).matches();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the header key tested by this condition, or {@code null} if it
+	 * tests a field of the record value.
+	 */
+	String headerKey() {
+		return this.headerKey;
+	}
+
+	/**
+	 * Returns the tested field of the record value, or {@code null} if this
+	 * condition tests a header.
+	 */
+	KeyPath field() {
+		return this.field;
+	}
+
+	/**
+	 * Returns the values of {@code valueEquals} or {@code valueIn}, the only
+	 * values matched, or {@code null} for the other matchers.
+	 */
+	Set<String> equalValues() {
+		return this.equalValues;
+	}
+
+	/**
+	 * Tests the headers or the field of a record, on its own: a header
+	 * condition iterates the headers with its key. {@link FilterConditions}
+	 * tests the header conditions of a filter in a single pass instead.
+	 *
+	 * @param fields the record value, read as a map if it is JSON in bytes
+	 */
+	boolean test(ConnectRecord<?> record, Object fields) {
+		if (this.headerKey == null) {
+			return matchesField(fields);
+		}
+		Iterator<Header> headers = record.headers().allWithName(this.headerKey);
+		while (headers.hasNext()) {
+			if (matches(headers.next().value())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tests the value of a header with the {@link #headerKey()} key.
+	 */
+	boolean matches(Object headerValue) {
+		if (this.valueMatcher == null) {
+			return true;
+		}
+		if (headerValue == null) {
+			return false;
+		}
+		return this.valueMatcher.test(asString(headerValue));
+	}
+
+	static String asString(Object value) {
+		return value instanceof String ? (String) value : String.valueOf(value);
+	}
+
+	/**
+	 * Tests the field of the record value (a {@code Map} or a {@code Struct}).
+	 * A field pointing to an object is considered missing.
+	 */
+	boolean matchesField(Object recordValue) {
+		Object fieldValue = fieldValue(recordValue);
+		return fieldValue != NOT_FOUND && matches(fieldValue);
+	}
+
+	/**
+	 * Returns the field of the record value as a string, {@code null} if it is
+	 * missing or null.
+	 */
+	String fieldString(Object recordValue) {
+		Object fieldValue = fieldValue(recordValue);
+		return fieldValue == NOT_FOUND || fieldValue == null ? null : asString(fieldValue);
+	}
+
+	private Object fieldValue(Object recordValue) {
+		if (recordValue instanceof Map) {
+			return fieldValue(requireMapOrNull(recordValue, PURPOSE));
+		}
+		if (recordValue instanceof Struct) {
+			return fieldValue((Struct) recordValue);
+		}
+		return NOT_FOUND;
+	}
+
+	private Object fieldValue(Map<String, Object> valueMap) {
+		Map<String, Object> parent = this.field.parent(valueMap);
+		if (parent == null || !parent.containsKey(this.field.leaf())) {
+			return NOT_FOUND;
+		}
+
+		Object value = parent.get(this.field.leaf());
+		return value instanceof Map ? NOT_FOUND : value;
+	}
+
+	private Object fieldValue(Struct value) {
+		Struct parent = value;
+		for (int i = 0; i < this.field.size() - 1; i++) {
+			Field field = parent.schema().field(this.field.segment(i));
+			if (field == null || field.schema().type() != Schema.Type.STRUCT) {
+				return NOT_FOUND;
+			}
+			parent = parent.getStruct(field.name());
+			if (parent == null) {
+				return NOT_FOUND;
+			}
+		}
+
+		Field field = parent.schema().field(this.field.leaf());
+		if (field == null || field.schema().type() == Schema.Type.STRUCT || field.schema().type() == Schema.Type.MAP) {
+			return NOT_FOUND;
+		}
+		return parent.get(field);
+	}
+
+	@Override
+	public String toString() {
+		return this.name;
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.header.Header;
+
+/**
+ * {@link FilterCondition}s combined with AND or OR. The field conditions are
+ * tested first, then the headers of a record are iterated once, whatever the
+ * number of header conditions. The matched conditions are tracked in a bit
+ * mask. A JSON object value in bytes is read as a {@link LazyJsonMap}, which
+ * parses only the fields of the conditions.
+ */
+final class FilterConditions {
+
+	static final int MAX_CONDITIONS = Long.SIZE;
+
+	enum Operator {
+		AND, OR
+	}
+
+	private final Operator operator;
+	private final Map<String, int[]> conditionsByHeaderKey = new HashMap<>();
+	private final int[] fieldConditions;
+	private final FilterCondition[] conditions;
+	private final long allConditions;
+
+	FilterConditions(List<FilterCondition> conditions, Operator operator) {
+		if (conditions.size() > MAX_CONDITIONS) {
+			throw new IllegalArgumentException("At most " + MAX_CONDITIONS + " conditions are supported");
+		}
+
+		this.operator = operator;
+		this.conditions = conditions.toArray(new FilterCondition[0]);
+		this.allConditions = this.conditions.length == MAX_CONDITIONS ? -1L : (1L << this.conditions.length) - 1;
+
+		List<Integer> fieldConditions = new ArrayList<>();
+		for (int i = 0; i < this.conditions.length; i++) {
+			if (this.conditions[i].headerKey() == null) {
+				fieldConditions.add(i);
+				continue;
+			}
+			this.conditionsByHeaderKey.merge(this.conditions[i].headerKey(), new int[] { i }, (previous, added) -> {
+				int[] merged = new int[previous.length + 1];
+				System.arraycopy(previous, 0, merged, 0, previous.length);
+				merged[previous.length] = added[0];
+				return merged;
+			});
+		}
+		this.fieldConditions = fieldConditions.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	boolean test(ConnectRecord<?> record) {
+		long matched = 0;
+
+		Object value = this.fieldConditions.length > 0 ? fieldsOf(record.value()) : null;
+		for (int i : this.fieldConditions) {
+			if (this.conditions[i].matchesField(value)) {
+				if (this.operator == Operator.OR) {
+					return true;
+				}
+				matched |= 1L << i;
+			} else if (this.operator == Operator.AND) {
+				return false;
+			}
+		}
+
+		return isMatched(matchHeaders(record, matched, true));
+	}
+
+	private boolean isMatched(long matched) {
+		return this.operator == Operator.OR ? matched != 0 : matched == this.allConditions;
+	}
+
+	/**
+	 * Adds the header conditions matched by the record to {@code matched},
+	 * iterating its headers once.
+	 *
+	 * @param exitEarly whether to stop as soon as the conditions are matched
+	 */
+	private long matchHeaders(ConnectRecord<?> record, long matched, boolean exitEarly) {
+		if (this.conditionsByHeaderKey.isEmpty()) {
+			return matched;
+		}
+
+		for (Header header : record.headers()) {
+			int[] conditionIndexes = this.conditionsByHeaderKey.get(header.key());
+			if (conditionIndexes == null) {
+				continue;
+			}
+
+			for (int i : conditionIndexes) {
+				if ((matched & (1L << i)) == 0 && this.conditions[i].matches(header.value())) {
+					matched |= 1L << i;
+				}
+			}
+
+			if (exitEarly && isMatched(matched)) {
+				return matched;
+			}
+		}
+		return matched;
+	}
+
+	/**
+	 * Appends the result of every condition to the trace, without the early
+	 * exit of {@link #test(ConnectRecord)}.
+	 */
+	void trace(ConnectRecord<?> record, StringBuilder trace) {
+		Object value = this.fieldConditions.length > 0 ? fieldsOf(record.value()) : null;
+		long matchedHeaders = matchHeaders(record, 0, false);
+		for (int i = 0; i < this.conditions.length; i++) {
+			FilterCondition condition = this.conditions[i];
+			boolean matched = condition.headerKey() == null ? condition.matchesField(value)
+					: (matchedHeaders & (1L << i)) != 0;
+			trace.append(" condition \"").append(condition).append("\" ").append(matched ? "matches," : "does not match,");
+		}
+		trace.append(" combined with ").append(this.operator);
+	}
+
+	/**
+	 * Returns the value the field conditions are tested on.
+	 */
+	static Object fieldsOf(Object value) {
+		return value instanceof byte[] && JsonBytes.isObject((byte[]) value) ? LazyJsonMap.of((byte[]) value) : value;
+	}
+}
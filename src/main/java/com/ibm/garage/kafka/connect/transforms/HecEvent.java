@@ -0,0 +1,342 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.separator;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.writeString;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.header.Header;
+import org.apache.kafka.connect.transforms.util.SimpleConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class HecEvent<R extends ConnectRecord<R>> implements BatchTransformation<R> {
+
+	private static final Logger log = LoggerFactory.getLogger(HecEvent.class);
+
+	public static final String OVERVIEW_DOC = "Wrapping of the record value into a Splunk HTTP Event Collector (HEC) event";
+
+	public static final String TIME_FIELD_CONFIG = "time.field";
+	public static final String TIME_UNIT_CONFIG = "time.unit";
+	public static final String TIME_UNIT_SECONDS = "seconds";
+	public static final String TIME_UNIT_MILLISECONDS = "milliseconds";
+	public static final String HOST_CONFIG = "host";
+	public static final String SOURCE_CONFIG = "source";
+	public static final String SOURCETYPE_CONFIG = "sourcetype";
+	public static final String INDEX_CONFIG = "index";
+	public static final String HEADER_CONFIG_SUFFIX = ".header";
+	public static final String FIELDS_CONFIG = "fields";
+	public static final String OUTPUT_CONFIG = "output";
+	public static final String OUTPUT_STRING = "string";
+	public static final String OUTPUT_BYTES = "bytes";
+
+	private static final String[] METADATA = { HOST_CONFIG, SOURCE_CONFIG, SOURCETYPE_CONFIG, INDEX_CONFIG };
+
+	public static final ConfigDef CONFIG_DEF = metadataConfig(new ConfigDef())
+			.define(TIME_FIELD_CONFIG, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM,
+					"Record value field of the event time, nested fields in the dotted form")
+			.define(TIME_UNIT_CONFIG, ConfigDef.Type.STRING, TIME_UNIT_SECONDS,
+					ConfigDef.ValidString.in(TIME_UNIT_SECONDS, TIME_UNIT_MILLISECONDS), ConfigDef.Importance.LOW,
+					"Unit of the epoch values of the " + TIME_FIELD_CONFIG)
+			.define(FIELDS_CONFIG, ConfigDef.Type.LIST, "", ConfigDef.Importance.MEDIUM,
+					"Record value fields sent as indexed fields, nested fields in the dotted form")
+			.define(OUTPUT_CONFIG, ConfigDef.Type.STRING, OUTPUT_STRING,
+					ConfigDef.ValidString.in(OUTPUT_STRING, OUTPUT_BYTES), ConfigDef.Importance.MEDIUM,
+					"Whether the serialized event is a \"" + OUTPUT_STRING + "\" or UTF-8 \"" + OUTPUT_BYTES + "\"");
+
+	private static ConfigDef metadataConfig(ConfigDef configDef) {
+		for (String metadata : METADATA) {
+			configDef.define(metadata + HEADER_CONFIG_SUFFIX, ConfigDef.Type.STRING, "splunk.header." + metadata,
+					ConfigDef.Importance.LOW, "Header key of the event " + metadata)
+					.define(metadata, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM,
+							"Event " + metadata + " if the record has no such header");
+		}
+		return configDef;
+	}
+
+	static final String METRIC_GROUP = "hec-transform-metrics";
+
+	/**
+	 * An event metadata read from a header, or its default value.
+	 */
+	private static final class Metadata {
+		final byte[] name;
+		final String headerKey;
+		final String defaultValue;
+
+		Metadata(String name, String headerKey, String defaultValue) {
+			this.name = ('"' + name + "\":").getBytes(StandardCharsets.UTF_8);
+			this.headerKey = headerKey;
+			this.defaultValue = defaultValue;
+		}
+	}
+
+	private static final byte[] TIME_NAME = "\"time\":".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] EVENT_NAME = "\"event\":".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] FIELDS_NAME = "\"fields\":".getBytes(StandardCharsets.UTF_8);
+
+	private KeyPath timeField;
+	private boolean epochMillis;
+	private Metadata[] metadata;
+	private KeyPath[] fields;
+	private byte[][] fieldNames;
+	private boolean readsFields;
+	private boolean bytesOutput;
+
+	private final TransformMetrics metrics = new TransformMetrics(METRIC_GROUP);
+	private final LongAdder recordsIn = this.metrics.counter("records-in-total", "Number of records processed");
+	private final LongAdder timeDefaulted = this.metrics.counter("records-time-defaulted-total",
+			"Number of records whose " + TIME_FIELD_CONFIG + " is missing or cannot be parsed");
+	private final TransformMetrics.LatencyHistogram applyLatency = this.metrics.latency("apply-latency",
+			"apply() latency in nanoseconds");
+
+	@Override
+	public void configure(Map<String, ?> props) {
+		log.info("Getting configuration for " + HecEvent.class.getName() + " transformation...");
+
+		final SimpleConfig config = new SimpleConfig(CONFIG_DEF, props);
+		final String timeField = config.getString(TIME_FIELD_CONFIG);
+		this.timeField = timeField == null ? null : KeyPath.parse(timeField);
+		this.epochMillis = TIME_UNIT_MILLISECONDS.equals(config.getString(TIME_UNIT_CONFIG));
+
+		this.metadata = new Metadata[METADATA.length];
+		for (int i = 0; i < METADATA.length; i++) {
+			this.metadata[i] = new Metadata(METADATA[i], config.getString(METADATA[i] + HEADER_CONFIG_SUFFIX),
+					config.getString(METADATA[i]));
+		}
+
+		final List<String> fields = config.getList(FIELDS_CONFIG);
+		this.fields = new KeyPath[fields.size()];
+		this.fieldNames = new byte[fields.size()][];
+		for (int i = 0; i < fields.size(); i++) {
+			this.fields[i] = KeyPath.parse(fields.get(i));
+			this.fieldNames[i] = fieldName(this.fields[i]);
+		}
+		this.readsFields = this.timeField != null || this.fields.length > 0;
+		this.bytesOutput = OUTPUT_BYTES.equals(config.getString(OUTPUT_CONFIG));
+		log.info("Metrics of " + HecEvent.class.getName() + " transformation are published with the tags "
+				+ this.metrics.register());
+
+		log.info(HecEvent.class.getName() + " transformation has been successfully configured.");
+	}
+
+	@Override
+	public R apply(R record) {
+		final long start = System.nanoTime();
+		this.recordsIn.increment();
+
+		final R wrappedRecord = wrap(record);
+
+		this.applyLatency.record(System.nanoTime() - start);
+		return wrappedRecord;
+	}
+
+	/**
+	 * Wraps the records of the batch in a single pass. The
+	 * {@code apply-latency} metrics record the average latency of the batch
+	 * records.
+	 */
+	@Override
+	public List<R> applyAll(List<R> records) {
+		final long start = System.nanoTime();
+		this.recordsIn.add(records.size());
+
+		final List<R> wrappedRecords = new ArrayList<>(records.size());
+		for (R record : records) {
+			wrappedRecords.add(wrap(record));
+		}
+
+		if (!records.isEmpty()) {
+			this.applyLatency.record((System.nanoTime() - start) / records.size(), records.size());
+		}
+		return wrappedRecords;
+	}
+
+	/**
+	 * Writes the event in a single pass: the metadata, then the value as is,
+	 * JSON bytes being copied byte for byte, and the indexed fields. Records
+	 * without value are returned unchanged.
+	 */
+	private R wrap(R record) {
+		final Object value = record.value();
+		if (value == null) {
+			return record;
+		}
+
+		if (!(value instanceof Map) && !(value instanceof String) && !(value instanceof byte[])) {
+			throw new DataException("Only Map objects, strings and bytes supported in the absence of schema for "
+					+ "HEC event wrapping, found: " + value.getClass().getName());
+		}
+
+		final boolean jsonObject = value instanceof byte[] && JsonBytes.isObject((byte[]) value);
+		if (jsonObject) {
+			checkJsonObject((byte[]) value);
+		}
+		final Map<String, Object> valueMap = this.readsFields ? valueMap(value, jsonObject) : null;
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(
+				value instanceof byte[] ? ((byte[]) value).length + 128 : 256);
+		out.write('{');
+
+		boolean first = true;
+		final long time = time(record, valueMap);
+		if (time != Timestamps.INVALID) {
+			first = separator(first, out);
+			out.write(TIME_NAME, 0, TIME_NAME.length);
+			Timestamps.writeEpochSeconds(time, out);
+		}
+
+		for (Metadata metadata : this.metadata) {
+			final Header header = record.headers().lastWithName(metadata.headerKey);
+			final String metadataValue = header != null && header.value() != null
+					? FilterCondition.asString(header.value()) : metadata.defaultValue;
+			if (metadataValue != null) {
+				first = separator(first, out);
+				out.write(metadata.name, 0, metadata.name.length);
+				writeString(metadataValue, out);
+			}
+		}
+
+		separator(first, out);
+		out.write(EVENT_NAME, 0, EVENT_NAME.length);
+		if (jsonObject) {
+			out.write((byte[]) value, 0, ((byte[]) value).length);
+		} else if (value instanceof byte[]) {
+			writeString(new String((byte[]) value, StandardCharsets.UTF_8), out);
+		} else {
+			LazyJsonMap.write(value, out);
+		}
+
+		writeFields(valueMap, out);
+		out.write('}');
+
+		final byte[] event = out.toByteArray();
+		return record.newRecord(record.topic(), record.kafkaPartition(), record.keySchema(), record.key(), null,
+				this.bytesOutput ? event : new String(event, StandardCharsets.UTF_8), record.timestamp(),
+				record.headers());
+	}
+
+	/**
+	 * Checks that the JSON bytes, copied as is into the event, hold a single
+	 * object with balanced brackets and terminated strings, so that a
+	 * malformed value cannot corrupt the event.
+	 */
+	private static void checkJsonObject(byte[] json) {
+		final int end = JsonBytes.skipWhitespace(json, JsonBytes.skipValue(json, JsonBytes.skipWhitespace(json, 0)));
+		if (end != json.length) {
+			throw new DataException("Malformed JSON value, unexpected data at position " + end);
+		}
+	}
+
+	/**
+	 * Returns the value the fields are read from, {@code null} for a text
+	 * value.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> valueMap(Object value, boolean jsonObject) {
+		if (value instanceof Map) {
+			return (Map<String, Object>) value;
+		}
+		return jsonObject ? LazyJsonMap.of((byte[]) value) : null;
+	}
+
+	/**
+	 * Returns the event time from the {@code time.field}, or else the record
+	 * timestamp, {@link Timestamps#INVALID} if there is none.
+	 */
+	private long time(R record, Map<String, Object> valueMap) {
+		if (this.timeField != null) {
+			final Object timeValue = fieldValue(valueMap, this.timeField);
+			long time = Timestamps.INVALID;
+			if (timeValue instanceof Number) {
+				time = Timestamps.fromEpoch((Number) timeValue, this.epochMillis);
+			} else if (timeValue instanceof String) {
+				time = Timestamps.parse((String) timeValue, this.epochMillis);
+			}
+			if (time != Timestamps.INVALID) {
+				return time;
+			}
+			this.timeDefaulted.increment();
+		}
+		return record.timestamp() != null ? record.timestamp() : Timestamps.INVALID;
+	}
+
+	/**
+	 * Writes the indexed fields, as strings or arrays of strings. The missing,
+	 * null and object fields are left out.
+	 */
+	private void writeFields(Map<String, Object> valueMap, ByteArrayOutputStream out) {
+		boolean first = true;
+		for (int i = 0; i < this.fields.length; i++) {
+			final Object fieldValue = fieldValue(valueMap, this.fields[i]);
+			if (fieldValue == null || fieldValue instanceof Map) {
+				continue;
+			}
+
+			if (first) {
+				out.write(',');
+				out.write(FIELDS_NAME, 0, FIELDS_NAME.length);
+				out.write('{');
+			}
+			first = separator(first, out);
+			out.write(this.fieldNames[i], 0, this.fieldNames[i].length);
+			if (fieldValue instanceof List) {
+				boolean firstElement = true;
+				out.write('[');
+				for (Object element : (List<?>) fieldValue) {
+					firstElement = separator(firstElement, out);
+					writeString(FilterCondition.asString(element), out);
+				}
+				out.write(']');
+			} else {
+				writeString(FilterCondition.asString(fieldValue), out);
+			}
+		}
+		if (!first) {
+			out.write('}');
+		}
+	}
+
+	/**
+	 * Returns the JSON member name of an indexed field, its segments joined
+	 * with unescaped dots, e.g. {@code "labels.app.kubernetes.io/name"} for
+	 * {@code labels.app\.kubernetes\.io/name}.
+	 */
+	private static byte[] fieldName(KeyPath field) {
+		final StringBuilder name = new StringBuilder(field.segment(0));
+		for (int i = 1; i < field.size(); i++) {
+			name.append('.').append(field.segment(i));
+		}
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeString(name.toString(), out);
+		out.write(':');
+		return out.toByteArray();
+	}
+
+	private static Object fieldValue(Map<String, Object> valueMap, KeyPath field) {
+		final Map<String, Object> parent = valueMap == null ? null : field.parent(valueMap);
+		return parent == null ? null : parent.get(field.leaf());
+	}
+
+	@Override
+	public void close() {
+		this.metrics.close();
+	}
+
+	@Override
+	public ConfigDef config() {
+		return CONFIG_DEF;
+	}
+}
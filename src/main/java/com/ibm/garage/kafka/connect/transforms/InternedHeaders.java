@@ -0,0 +1,149 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.header.Header;
+import org.apache.kafka.connect.header.Headers;
+
+/**
+ * The headers written by a {@code dest.toHeader} rule, shared by the records
+ * with the same value. Header values such as a Splunk index or sourcetype
+ * take few distinct values, so the first {@code maxSize} of them are kept and
+ * the following ones are created for each record.
+ */
+final class InternedHeaders {
+
+	/**
+	 * Immutable header, the Connect implementation is not public.
+	 */
+	private static final class InternedHeader implements Header {
+		private final String key;
+		private final Schema schema;
+		private final Object value;
+
+		InternedHeader(String key, Schema schema, Object value) {
+			this.key = key;
+			this.schema = schema;
+			this.value = value;
+		}
+
+		@Override
+		public String key() {
+			return this.key;
+		}
+
+		@Override
+		public Schema schema() {
+			return this.schema;
+		}
+
+		@Override
+		public Object value() {
+			return this.value;
+		}
+
+		@Override
+		public Header with(Schema schema, Object value) {
+			return new InternedHeader(this.key, schema, value);
+		}
+
+		@Override
+		public Header rename(String key) {
+			return new InternedHeader(key, this.schema, this.value);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Header)) {
+				return false;
+			}
+			Header that = (Header) obj;
+			return this.key.equals(that.key()) && Objects.equals(this.schema, that.schema())
+					&& Objects.equals(this.value, that.value());
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.key, this.schema, this.value);
+		}
+
+		@Override
+		public String toString() {
+			return "InternedHeader(key=" + this.key + ", value=" + this.value + ", schema=" + this.schema + ")";
+		}
+	}
+
+	private final String key;
+	private final int maxSize;
+	private final ConcurrentMap<String, Header> headers = new ConcurrentHashMap<>();
+
+	InternedHeaders(String key, int maxSize) {
+		this.key = key;
+		this.maxSize = maxSize;
+	}
+
+	Header header(String value) {
+		Header header = this.headers.get(value);
+		if (header == null) {
+			header = new InternedHeader(this.key, Schema.STRING_SCHEMA, value);
+			if (this.headers.size() < this.maxSize) {
+				Header interned = this.headers.putIfAbsent(value, header);
+				if (interned != null) {
+					header = interned;
+				}
+			}
+		}
+		return header;
+	}
+
+	/**
+	 * Header transform replacing the first header with the key and removing
+	 * the others, reused by the calls of a thread.
+	 */
+	private static final class Replacer implements Headers.HeaderTransform {
+		Header header;
+		boolean replaced;
+
+		@Override
+		public Header apply(Header existing) {
+			if (this.replaced) {
+				return null;
+			}
+			this.replaced = true;
+			return this.header;
+		}
+	}
+
+	private static final ThreadLocal<Replacer> REPLACERS = ThreadLocal.withInitial(Replacer::new);
+
+	/**
+	 * Replaces the first header with the same key in place, removing the
+	 * others, or adds the header if there is none. The headers are iterated
+	 * once, instead of once to remove them and once more to add it, and only
+	 * the iterator of {@link Headers#apply(String, Headers.HeaderTransform)}
+	 * is allocated.
+	 */
+	static void put(Headers headers, Header header) {
+		Replacer replacer = REPLACERS.get();
+		replacer.header = header;
+		replacer.replaced = false;
+		headers.apply(header.key(), replacer);
+		// the header is not retained by the thread
+		replacer.header = null;
+
+		if (!replacer.replaced) {
+			headers.add(header);
+		}
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.kafka.connect.errors.DataException;
+
+/**
+ * Scanning and writing of JSON values in their serialized form (UTF-8 bytes).
+ * Positions are indexes in the byte array; a malformed value is reported with
+ * a {@link DataException}.
+ */
+final class JsonBytes {
+
+	private JsonBytes() {
+	}
+
+	/**
+	 * Whether the value is a JSON object, i.e. starts with {@code '{'}.
+	 */
+	static boolean isObject(byte[] json) {
+		int start = skipWhitespace(json, 0);
+		return start < json.length && json[start] == '{';
+	}
+
+	/**
+	 * Whether the key between the quotes at {@code keyStart} and
+	 * {@code keyEnd - 1} is the UTF-8 encoded {@code key}.
+	 */
+	static boolean keyEquals(byte[] json, int keyStart, int keyEnd, byte[] key) {
+		int length = keyEnd - keyStart - 2;
+		if (length == key.length) {
+			for (int i = 0; i < length; i++) {
+				if (json[keyStart + 1 + i] != key[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (length < key.length) {
+			return false;
+		}
+
+		// a key with escape sequences is longer than its UTF-8 form
+		for (int pos = keyStart + 1; pos < keyEnd - 1; pos++) {
+			if (json[pos] == '\\') {
+				return Arrays.equals(decodeString(json, keyStart, keyEnd).getBytes(StandardCharsets.UTF_8), key);
+			}
+		}
+		return false;
+	}
+
+	static int skipWhitespace(byte[] json, int pos) {
+		while (pos < json.length && (json[pos] == ' ' || json[pos] == '\n' || json[pos] == '\r' || json[pos] == '\t')) {
+			pos++;
+		}
+		return pos;
+	}
+
+	static int expect(byte[] json, int pos, char c) {
+		if (pos >= json.length || json[pos] != c) {
+			throw new DataException("Malformed JSON value, expected '" + c + "' at position " + pos);
+		}
+		return pos;
+	}
+
+	/**
+	 * Returns the byte at the position, which must not be past the end of the
+	 * value.
+	 */
+	static byte byteAt(byte[] json, int pos) {
+		if (pos >= json.length) {
+			throw new DataException("Malformed JSON value, unexpected end at position " + pos);
+		}
+		return json[pos];
+	}
+
+	/**
+	 * Returns the position after the closing quote of the string.
+	 */
+	static int skipString(byte[] json, int start) {
+		expect(json, start, '"');
+		for (int pos = start + 1; pos < json.length; pos++) {
+			if (json[pos] == '\\') {
+				pos++;
+			} else if (json[pos] == '"') {
+				return pos + 1;
+			}
+		}
+		throw new DataException("Malformed JSON value, unterminated string at position " + start);
+	}
+
+	static int skipValue(byte[] json, int start) {
+		if (start >= json.length) {
+			throw new DataException("Malformed JSON value, missing value at position " + start);
+		}
+
+		byte c = json[start];
+		if (c == '"') {
+			return skipString(json, start);
+		}
+		if (c == '{' || c == '[') {
+			int depth = 0;
+			for (int pos = start; pos < json.length; pos++) {
+				byte b = json[pos];
+				if (b == '"') {
+					pos = skipString(json, pos) - 1;
+				} else if (b == '{' || b == '[') {
+					depth++;
+				} else if ((b == '}' || b == ']') && --depth == 0) {
+					return pos + 1;
+				}
+			}
+			throw new DataException("Malformed JSON value, unterminated object at position " + start);
+		}
+
+		int pos = start;
+		while (pos < json.length && json[pos] != ',' && json[pos] != '}' && json[pos] != ']' && json[pos] != ' '
+				&& json[pos] != '\n' && json[pos] != '\r' && json[pos] != '\t') {
+			pos++;
+		}
+		if (pos == start) {
+			throw new DataException("Malformed JSON value, missing value at position " + start);
+		}
+		return pos;
+	}
+
+	/**
+	 * Decodes the JSON string between the quotes at {@code start} and
+	 * {@code end - 1}.
+	 */
+	static String decodeString(byte[] json, int start, int end) {
+		int escape = start + 1;
+		while (escape < end - 1 && json[escape] != '\\') {
+			escape++;
+		}
+		if (escape == end - 1) {
+			return new String(json, start + 1, end - start - 2, StandardCharsets.UTF_8);
+		}
+
+		StringBuilder sb = new StringBuilder(end - start);
+		sb.append(new String(json, start + 1, escape - start - 1, StandardCharsets.UTF_8));
+		int pos = escape;
+		while (pos < end - 1) {
+			int next = pos;
+			while (next < end - 1 && json[next] != '\\') {
+				next++;
+			}
+			sb.append(new String(json, pos, next - pos, StandardCharsets.UTF_8));
+			if (next == end - 1) {
+				break;
+			}
+
+			char c = (char) json[next + 1];
+			pos = next + 2;
+			switch (c) {
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'u':
+				if (pos + 4 > end - 1) {
+					throw new DataException("Malformed JSON value, bad unicode escape at position " + next);
+				}
+				int code = 0;
+				for (int i = pos; i < pos + 4; i++) {
+					int digit = Character.digit(json[i], 16);
+					if (digit < 0) {
+						throw new DataException("Malformed JSON value, bad unicode escape at position " + next);
+					}
+					code = code * 16 + digit;
+				}
+				sb.append((char) code);
+				pos += 4;
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Writes a comma unless it is the first member, returns {@code false}.
+	 */
+	static boolean separator(boolean first, ByteArrayOutputStream out) {
+		if (!first) {
+			out.write(',');
+		}
+		return false;
+	}
+
+	static void writeString(String value, ByteArrayOutputStream out) {
+		int escape = 0;
+		while (escape < value.length() && !needsEscape(value.charAt(escape))) {
+			escape++;
+		}
+		if (escape == value.length()) {
+			// most values have nothing to escape and are encoded as they are
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			out.write('"');
+			out.write(bytes, 0, bytes.length);
+			out.write('"');
+			return;
+		}
+
+		StringBuilder sb = new StringBuilder(value.length() + 8).append('"').append(value, 0, escape);
+		for (int i = escape; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c == '\n') {
+				sb.append("\\n");
+			} else if (c == '\r') {
+				sb.append("\\r");
+			} else if (c == '\t') {
+				sb.append("\\t");
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		byte[] bytes = sb.append('"').toString().getBytes(StandardCharsets.UTF_8);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	private static boolean needsEscape(char c) {
+		return c == '"' || c == '\\' || c < 0x20;
+	}
+}
@@ -0,0 +1,280 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.decodeString;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.expect;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.keyEquals;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.separator;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.skipString;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.skipValue;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.skipWhitespace;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.writeString;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.header.Headers;
+
+/**
+ * Applies {@link SplunkRule}s to JSON objects in their serialized form (UTF-8
+ * bytes, e.g. from the {@code ByteArrayConverter}), without materializing
+ * them. The document is scanned once for the {@code source.key} values, and
+ * then only the objects holding edited fields are rewritten, every other
+ * value is copied through byte for byte.
+ */
+final class JsonRules extends EditedRules<JsonRules.Document> {
+
+	private static final int NOT_FOUND = -1;
+
+	/**
+	 * Object holding the {@code source.key} fields or the nested objects of
+	 * the rules, as in {@link KeyPathTrie}.
+	 */
+	private static final class Node {
+		final byte[] segment;
+		Node[] children = new Node[0];
+		int[] leafRules = new int[0];
+		byte[][] leaves = new byte[0][];
+
+		Node(String segment) {
+			this.segment = segment == null ? null : segment.getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * A scanned document: the position of the {@code source.key} value of
+	 * every rule, and whether the object holding it has been found.
+	 */
+	static final class Document {
+		final byte[] json;
+		final int[] valueStarts;
+		final int[] valueEnds;
+		final boolean[] parentsFound;
+		boolean empty = true;
+
+		Document(byte[] json, int rules) {
+			this.json = json;
+			this.valueStarts = new int[rules];
+			this.valueEnds = new int[rules];
+			this.parentsFound = new boolean[rules];
+			Arrays.fill(this.valueStarts, NOT_FOUND);
+		}
+
+		boolean isEmpty() {
+			return this.empty;
+		}
+	}
+
+	private final Node root = new Node(null);
+
+	JsonRules(List<SplunkRule> rules) {
+		super(rules);
+
+		for (int i = 0; i < rules.size(); i++) {
+			KeyPath path = rules.get(i).sourceKeyPath();
+			Node node = this.root;
+			for (int s = 0; s < path.size() - 1; s++) {
+				node = child(node, path.segment(s));
+			}
+			node.leafRules = Arrays.copyOf(node.leafRules, node.leafRules.length + 1);
+			node.leafRules[node.leafRules.length - 1] = i;
+			node.leaves = Arrays.copyOf(node.leaves, node.leaves.length + 1);
+			node.leaves[node.leaves.length - 1] = path.leaf().getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	private static Node child(Node node, String segment) {
+		byte[] bytes = segment.getBytes(StandardCharsets.UTF_8);
+		for (Node child : node.children) {
+			if (Arrays.equals(child.segment, bytes)) {
+				return child;
+			}
+		}
+
+		Node child = new Node(segment);
+		node.children = Arrays.copyOf(node.children, node.children.length + 1);
+		node.children[node.children.length - 1] = child;
+		return child;
+	}
+
+	/**
+	 * Scans the JSON object for the {@code source.key} values.
+	 *
+	 * @throws DataException if the value is not a JSON object
+	 */
+	Document scan(byte[] json) {
+		Document document = new Document(json, this.rules.size());
+		int start = skipWhitespace(json, 0);
+		if (!JsonBytes.isObject(json)) {
+			throw new DataException("Only JSON objects supported for field value modification");
+		}
+
+		scanObject(json, start, this.root, document);
+		return document;
+	}
+
+	/**
+	 * Returns the updated JSON object, the object itself if the rules only
+	 * wrote headers, or {@code null} if none of the rules applied.
+	 */
+	byte[] apply(Document document, Headers headers, BiConsumer<SplunkRule, SplunkRule.Outcome> outcomes,
+			SplunkRule.RecordTimestamp timestamp) {
+		String[] values = newValues();
+		BitSet applied = new BitSet(this.rules.size());
+
+		evaluate(document, headers, outcomes, values, applied, timestamp);
+
+		if (applied.isEmpty()) {
+			return null;
+		}
+		if (!hasEdits(applied)) {
+			// only headers have been written
+			return document.json;
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(document.json.length + 64);
+		writeObject(document.json, skipWhitespace(document.json, 0), editTree(applied), values, out);
+		return out.toByteArray();
+	}
+
+	@Override
+	protected Object readSource(Document document, int rule) {
+		if (this.rules.get(rule).sourceKeyPath().isNested() && !document.parentsFound[rule]) {
+			return SplunkRule.Outcome.NESTED_OBJECT_NOT_FOUND;
+		}
+
+		int start = document.valueStarts[rule];
+		if (start == NOT_FOUND) {
+			return SplunkRule.Outcome.SOURCE_KEY_NOT_FOUND;
+		}
+
+		byte[] json = document.json;
+		if (json[start] == '{') {
+			return SplunkRule.Outcome.SOURCE_KEY_POINTS_TO_OBJECT;
+		}
+		if (json[start] == '"') {
+			return decodeString(json, start, document.valueEnds[rule]);
+		}
+		if (json[start] == '-' || json[start] >= '0' && json[start] <= '9') {
+			// read as in the map mode, e.g. 1.50 is formatted as 1.5
+			return LazyJsonMap.parseNumber(
+					new String(json, start, document.valueEnds[rule] - start, StandardCharsets.US_ASCII), start);
+		}
+		return new String(json, start, document.valueEnds[rule] - start, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the position after the object.
+	 */
+	private static int scanObject(byte[] json, int start, Node node, Document document) {
+		boolean empty = true;
+		int pos = skipWhitespace(json, start + 1);
+
+		if (pos < json.length && json[pos] == '}') {
+			return pos + 1;
+		}
+
+		while (true) {
+			int keyStart = expect(json, pos, '"');
+			int keyEnd = skipString(json, keyStart);
+			int valueStart = skipWhitespace(json, expect(json, skipWhitespace(json, keyEnd), ':') + 1);
+			int valueEnd = skipValue(json, valueStart);
+			empty = false;
+
+			for (int i = 0; i < node.leaves.length; i++) {
+				if (keyEquals(json, keyStart, keyEnd, node.leaves[i])) {
+					document.valueStarts[node.leafRules[i]] = valueStart;
+					document.valueEnds[node.leafRules[i]] = valueEnd;
+				}
+			}
+			if (json[valueStart] == '{') {
+				for (Node child : node.children) {
+					if (keyEquals(json, keyStart, keyEnd, child.segment)) {
+						scanObject(json, valueStart, child, document);
+					}
+				}
+			}
+
+			pos = skipWhitespace(json, valueEnd);
+			if (pos < json.length && json[pos] == ',') {
+				pos = skipWhitespace(json, pos + 1);
+			} else {
+				pos = expect(json, pos, '}') + 1;
+				break;
+			}
+		}
+
+		if (!empty) {
+			if (node.segment == null) {
+				document.empty = false;
+			}
+			for (int rule : node.leafRules) {
+				document.parentsFound[rule] = true;
+			}
+		}
+		return pos;
+	}
+
+	private void writeObject(byte[] json, int start, EditNode edits, String[] values, ByteArrayOutputStream out) {
+		Set<String> written = new HashSet<>();
+		boolean first = true;
+		int pos = skipWhitespace(json, start + 1);
+
+		out.write('{');
+		while (pos < json.length && json[pos] != '}') {
+			int keyStart = pos;
+			int keyEnd = skipString(json, keyStart);
+			int valueStart = skipWhitespace(json, skipWhitespace(json, keyEnd) + 1);
+			int valueEnd = skipValue(json, valueStart);
+
+			String key = decodeString(json, keyStart, keyEnd);
+			EditNode edit = edits.children.get(key);
+			if (edit == null) {
+				first = separator(first, out);
+				out.write(json, keyStart, valueEnd - keyStart);
+			} else if (edit.kind == WRITE) {
+				if (written.add(key)) {
+					first = separator(first, out);
+					out.write(json, keyStart, keyEnd - keyStart);
+					out.write(':');
+					writeString(values[edit.value], out);
+				}
+			} else if (edit.kind != REMOVE) {
+				first = separator(first, out);
+				out.write(json, keyStart, valueStart - keyStart);
+				if (json[valueStart] == '{') {
+					writeObject(json, valueStart, edit, values, out);
+				} else {
+					out.write(json, valueStart, valueEnd - valueStart);
+				}
+			}
+
+			pos = skipWhitespace(json, valueEnd);
+			if (json[pos] == ',') {
+				pos = skipWhitespace(json, pos + 1);
+			}
+		}
+
+		for (Map.Entry<String, EditNode> edit : edits.children.entrySet()) {
+			if (edit.getValue().kind == WRITE && !written.contains(edit.getKey())) {
+				first = separator(first, out);
+				writeString(edit.getKey(), out);
+				out.write(':');
+				writeString(values[edit.getValue().value], out);
+			}
+		}
+		out.write('}');
+	}
+}
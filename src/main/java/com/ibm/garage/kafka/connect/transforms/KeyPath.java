@@ -0,0 +1,116 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dotted key such as {@code "config.app.id"} split into its segments once.
+ * A dot preceded by a backslash ({@code "\."}) is part of the key itself and
+ * {@code "\\"} stands for a single backslash.
+ */
+final class KeyPath {
+
+	private static final char DELIMITER = '.';
+	private static final char ESCAPE = '\\';
+
+	private final String dottedKey;
+	private final String[] segments;
+
+	private KeyPath(String dottedKey, String[] segments) {
+		this.dottedKey = dottedKey;
+		this.segments = segments;
+	}
+
+	static KeyPath parse(String dottedKey) {
+		List<String> segments = new ArrayList<>();
+		StringBuilder segment = new StringBuilder();
+
+		for (int i = 0; i < dottedKey.length(); i++) {
+			char c = dottedKey.charAt(i);
+			if (c == ESCAPE && i + 1 < dottedKey.length()
+					&& (dottedKey.charAt(i + 1) == DELIMITER || dottedKey.charAt(i + 1) == ESCAPE)) {
+				segment.append(dottedKey.charAt(++i));
+			} else if (c == DELIMITER) {
+				segments.add(segment.toString());
+				segment.setLength(0);
+			} else {
+				segment.append(c);
+			}
+		}
+		segments.add(segment.toString());
+
+		// same as String.split(), trailing empty segments are ignored
+		int size = segments.size();
+		while (size > 1 && segments.get(size - 1).isEmpty()) {
+			size--;
+		}
+
+		return new KeyPath(dottedKey, segments.subList(0, size).toArray(new String[0]));
+	}
+
+	/**
+	 * A path made of a single key, which is never split on dots.
+	 */
+	static KeyPath of(String key) {
+		return new KeyPath(key, new String[] { key });
+	}
+
+	boolean isNested() {
+		return this.segments.length > 1;
+	}
+
+	int size() {
+		return this.segments.length;
+	}
+
+	String segment(int index) {
+		return this.segments[index];
+	}
+
+	String leaf() {
+		return this.segments[this.segments.length - 1];
+	}
+
+	/**
+	 * Returns the map holding the {@link #leaf()} key, or {@code null} if any
+	 * of the parent segments is missing or is not an object.
+	 */
+	@SuppressWarnings("unchecked")
+	Map<String, Object> parent(Map<String, Object> valueMap) {
+		Map<String, Object> nestedValueMap = valueMap;
+
+		for (int i = 0; i < this.segments.length - 1; i++) {
+			Object value = nestedValueMap.get(this.segments[i]);
+
+			if (value instanceof Map) {
+				nestedValueMap = (Map<String, Object>) value;
+			} else {
+				return null;
+			}
+		}
+
+		return nestedValueMap;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof KeyPath && Arrays.equals(this.segments, ((KeyPath) o).segments);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(this.segments);
+	}
+
+	@Override
+	public String toString() {
+		return this.dottedKey;
+	}
+}
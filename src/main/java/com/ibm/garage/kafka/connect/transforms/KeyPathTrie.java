@@ -0,0 +1,108 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parent objects of several {@link KeyPath}s merged by their common prefixes,
+ * so that every nested map shared by the paths is looked up only once per
+ * record.
+ */
+final class KeyPathTrie {
+
+	private static final int[] NO_SLOTS = new int[0];
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	private static final class Node {
+		final String segment;
+		Node[] children = NO_CHILDREN;
+		int[] slots = NO_SLOTS;
+
+		Node(String segment) {
+			this.segment = segment;
+		}
+
+		Node child(String segment) {
+			for (Node child : this.children) {
+				if (child.segment.equals(segment)) {
+					return child;
+				}
+			}
+
+			Node child = new Node(segment);
+			Node[] children = new Node[this.children.length + 1];
+			System.arraycopy(this.children, 0, children, 0, this.children.length);
+			children[this.children.length] = child;
+			this.children = children;
+			return child;
+		}
+
+		void addSlot(int slot) {
+			int[] slots = new int[this.slots.length + 1];
+			System.arraycopy(this.slots, 0, slots, 0, this.slots.length);
+			slots[this.slots.length] = slot;
+			this.slots = slots;
+		}
+	}
+
+	private final Node root;
+	private final int size;
+
+	private KeyPathTrie(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	static KeyPathTrie compile(List<KeyPath> paths) {
+		Node root = new Node(null);
+
+		for (int i = 0; i < paths.size(); i++) {
+			KeyPath path = paths.get(i);
+			Node node = root;
+			for (int j = 0; j < path.size() - 1; j++) {
+				node = node.child(path.segment(j));
+			}
+			node.addSlot(i);
+		}
+
+		return new KeyPathTrie(root, paths.size());
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns an array of {@link #size()} parents, to be filled by
+	 * {@link #resolveParents(Map, Map[])}.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	Map<String, Object>[] newParents() {
+		return new Map[this.size];
+	}
+
+	/**
+	 * Fills {@code parents[i]} with the map holding the leaf key of the i-th
+	 * compiled path, or with {@code null} if that map does not exist.
+	 */
+	void resolveParents(Map<String, Object> valueMap, Map<String, Object>[] parents) {
+		resolve(this.root, valueMap, parents);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void resolve(Node node, Map<String, Object> valueMap, Map<String, Object>[] parents) {
+		for (int slot : node.slots) {
+			parents[slot] = valueMap;
+		}
+
+		for (Node child : node.children) {
+			Object value = valueMap == null ? null : valueMap.get(child.segment);
+			resolve(child, value instanceof Map ? (Map<String, Object>) value : null, parents);
+		}
+	}
+}
@@ -0,0 +1,371 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.decodeString;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.expect;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.separator;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.skipString;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.skipValue;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.skipWhitespace;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.writeString;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kafka.connect.errors.DataException;
+
+/**
+ * A JSON object read from its serialized form (UTF-8 bytes) on demand. The
+ * keys are indexed on the first access, and a value is parsed only when it is
+ * read, a nested object being another lazy map. When written back, the
+ * objects that have not been changed are copied byte for byte.
+ * <p>
+ * The values are the same as from the {@code JsonConverter} without schemas:
+ * {@code String}, {@code Long}, {@code Double}, {@code Boolean}, {@code null},
+ * {@code List} and {@code Map}.
+ */
+final class LazyJsonMap extends AbstractMap<String, Object> {
+
+	/**
+	 * Position of a value that has not been parsed yet.
+	 */
+	private static final class Unparsed {
+		final int start;
+		final int end;
+
+		Unparsed(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	private final byte[] json;
+	private final int start;
+	private final int end;
+	private LinkedHashMap<String, Object> entries;
+	private boolean modified;
+
+	private LazyJsonMap(byte[] json, int start, int end) {
+		this.json = json;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * @throws DataException if the value is not a JSON object
+	 */
+	static LazyJsonMap of(byte[] json) {
+		int start = skipWhitespace(json, 0);
+		if (!JsonBytes.isObject(json)) {
+			throw new DataException("Only JSON objects supported for field value modification");
+		}
+		return new LazyJsonMap(json, start, skipValue(json, start));
+	}
+
+	private LinkedHashMap<String, Object> entries() {
+		if (this.entries == null) {
+			LinkedHashMap<String, Object> entries = new LinkedHashMap<>();
+			int pos = skipWhitespace(this.json, this.start + 1);
+
+			while (this.json[pos] != '}') {
+				int keyEnd = skipString(this.json, expect(this.json, pos, '"'));
+				int valueStart = skipWhitespace(this.json, expect(this.json, skipWhitespace(this.json, keyEnd), ':') + 1);
+				int valueEnd = skipValue(this.json, valueStart);
+				// the last duplicated key wins, as in the JsonConverter
+				String key = decodeString(this.json, pos, keyEnd);
+				entries.remove(key);
+				entries.put(key, new Unparsed(valueStart, valueEnd));
+
+				pos = skipWhitespace(this.json, valueEnd);
+				if (this.json[pos] == ',') {
+					pos = skipWhitespace(this.json, pos + 1);
+				} else {
+					expect(this.json, pos, '}');
+				}
+			}
+			this.entries = entries;
+		}
+		return this.entries;
+	}
+
+	private Object parsed(String key, Object value) {
+		if (value instanceof Unparsed) {
+			Object parsedValue = parse(this.json, ((Unparsed) value).start, ((Unparsed) value).end);
+			this.entries.put(key, parsedValue);
+			return parsedValue;
+		}
+		return value;
+	}
+
+	private static Object parse(byte[] json, int start, int end) {
+		switch (json[start]) {
+		case '"':
+			return decodeString(json, start, end);
+		case '{':
+			return new LazyJsonMap(json, start, end);
+		case '[':
+			List<Object> list = new ArrayList<>();
+			int pos = skipWhitespace(json, start + 1);
+			while (json[pos] != ']') {
+				int valueEnd = skipValue(json, pos);
+				list.add(parse(json, pos, valueEnd));
+				pos = skipWhitespace(json, valueEnd);
+				if (json[pos] == ',') {
+					pos = skipWhitespace(json, pos + 1);
+				} else {
+					expect(json, pos, ']');
+				}
+			}
+			return list;
+		default:
+			String literal = new String(json, start, end - start, StandardCharsets.US_ASCII);
+			switch (literal) {
+			case "null":
+				return null;
+			case "true":
+				return Boolean.TRUE;
+			case "false":
+				return Boolean.FALSE;
+			default:
+				return parseNumber(literal, start);
+			}
+		}
+	}
+
+	/**
+	 * Parses a JSON number as a {@code Long} or a {@code Double}, or as a
+	 * {@code BigInteger} or a {@code BigDecimal} if it does not fit.
+	 */
+	static Number parseNumber(String literal, int start) {
+		int pos = literal.startsWith("-") ? 1 : 0;
+		int digits = countDigits(literal, pos);
+		if (digits == 0 || digits > 1 && literal.charAt(pos) == '0') {
+			throw new DataException("Malformed JSON value, bad literal at position " + start);
+		}
+		pos += digits;
+		boolean integral = pos == literal.length();
+		if (pos < literal.length() && literal.charAt(pos) == '.') {
+			digits = countDigits(literal, pos + 1);
+			pos += digits + 1;
+			if (digits == 0) {
+				throw new DataException("Malformed JSON value, bad literal at position " + start);
+			}
+		}
+		if (pos < literal.length() && (literal.charAt(pos) == 'e' || literal.charAt(pos) == 'E')) {
+			pos++;
+			if (pos < literal.length() && (literal.charAt(pos) == '+' || literal.charAt(pos) == '-')) {
+				pos++;
+			}
+			digits = countDigits(literal, pos);
+			pos += digits;
+			if (digits == 0) {
+				throw new DataException("Malformed JSON value, bad literal at position " + start);
+			}
+		}
+		if (pos != literal.length()) {
+			throw new DataException("Malformed JSON value, bad literal at position " + start);
+		}
+
+		if (integral) {
+			// at most 18 digits always fit in a long
+			return digits <= 18 || fitsLong(literal) ? (Number) Long.valueOf(literal)
+					: (Number) new BigInteger(literal);
+		}
+		Double value = Double.valueOf(literal);
+		return value.isInfinite() ? (Number) new BigDecimal(literal) : (Number) value;
+	}
+
+	private static int countDigits(String literal, int start) {
+		int pos = start;
+		while (pos < literal.length() && literal.charAt(pos) >= '0' && literal.charAt(pos) <= '9') {
+			pos++;
+		}
+		return pos - start;
+	}
+
+	private static boolean fitsLong(String literal) {
+		try {
+			Long.parseLong(literal);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public int size() {
+		return entries().size();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return entries().containsKey(key);
+	}
+
+	@Override
+	public Object get(Object key) {
+		Object value = entries().get(key);
+		return value instanceof Unparsed ? parsed((String) key, value) : value;
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		this.modified = true;
+		Object previous = entries().put(key, value);
+		return previous instanceof Unparsed ? parse(this.json, ((Unparsed) previous).start, ((Unparsed) previous).end)
+				: previous;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		if (!entries().containsKey(key)) {
+			return null;
+		}
+		this.modified = true;
+		Object previous = this.entries.remove(key);
+		return previous instanceof Unparsed ? parse(this.json, ((Unparsed) previous).start, ((Unparsed) previous).end)
+				: previous;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<Entry<String, Object>>() {
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				Iterator<Entry<String, Object>> entries = entries().entrySet().iterator();
+				return new Iterator<Entry<String, Object>>() {
+					@Override
+					public boolean hasNext() {
+						return entries.hasNext();
+					}
+
+					@Override
+					public Entry<String, Object> next() {
+						Entry<String, Object> entry = entries.next();
+						if (entry.getValue() instanceof Unparsed) {
+							Unparsed value = (Unparsed) entry.getValue();
+							entry.setValue(parse(LazyJsonMap.this.json, value.start, value.end));
+						}
+						return entry;
+					}
+
+					@Override
+					public void remove() {
+						LazyJsonMap.this.modified = true;
+						entries.remove();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return entries().size();
+			}
+		};
+	}
+
+	/**
+	 * Whether this object or one of the objects read from it has changed.
+	 */
+	boolean isModified() {
+		if (this.modified) {
+			return true;
+		}
+		if (this.entries != null) {
+			for (Object value : this.entries.values()) {
+				if (!(value instanceof Unparsed) && !(value instanceof String) && !isUnchanged(value)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean isUnchanged(Object value) {
+		if (value instanceof LazyJsonMap) {
+			return !((LazyJsonMap) value).isModified();
+		}
+		// a parsed list may have been changed in place
+		return !(value instanceof List) && !(value instanceof Map);
+	}
+
+	/**
+	 * Serializes a value map, e.g. a lazy map or a copy of it.
+	 */
+	static byte[] toJson(Map<String, Object> valueMap) {
+		if (valueMap instanceof LazyJsonMap && !((LazyJsonMap) valueMap).isModified()) {
+			LazyJsonMap map = (LazyJsonMap) valueMap;
+			return Arrays.copyOfRange(map.json, map.start, map.end);
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(
+				valueMap instanceof LazyJsonMap ? ((LazyJsonMap) valueMap).end - ((LazyJsonMap) valueMap).start + 64 : 256);
+		write(valueMap, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Writes a value of a {@code Map}, copying the unchanged lazy objects byte
+	 * for byte.
+	 */
+	static void write(Object value, ByteArrayOutputStream out) {
+		if (value instanceof LazyJsonMap && !((LazyJsonMap) value).isModified()) {
+			LazyJsonMap map = (LazyJsonMap) value;
+			out.write(map.json, map.start, map.end - map.start);
+		} else if (value instanceof LazyJsonMap) {
+			LazyJsonMap map = (LazyJsonMap) value;
+			boolean first = true;
+			out.write('{');
+			for (Map.Entry<String, Object> entry : map.entries.entrySet()) {
+				first = separator(first, out);
+				writeString(entry.getKey(), out);
+				out.write(':');
+				if (entry.getValue() instanceof Unparsed) {
+					Unparsed unparsed = (Unparsed) entry.getValue();
+					out.write(map.json, unparsed.start, unparsed.end - unparsed.start);
+				} else {
+					write(entry.getValue(), out);
+				}
+			}
+			out.write('}');
+		} else if (value instanceof Map) {
+			boolean first = true;
+			out.write('{');
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				first = separator(first, out);
+				writeString(String.valueOf(entry.getKey()), out);
+				out.write(':');
+				write(entry.getValue(), out);
+			}
+			out.write('}');
+		} else if (value instanceof List) {
+			boolean first = true;
+			out.write('[');
+			for (Object element : (List<?>) value) {
+				first = separator(first, out);
+				write(element, out);
+			}
+			out.write(']');
+		} else if (value == null || value instanceof Number || value instanceof Boolean) {
+			byte[] bytes = String.valueOf(value).getBytes(StandardCharsets.US_ASCII);
+			out.write(bytes, 0, bytes.length);
+		} else {
+			writeString(String.valueOf(value), out);
+		}
+	}
+}
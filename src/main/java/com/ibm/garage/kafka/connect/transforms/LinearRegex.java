@@ -0,0 +1,1080 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.MatchResult;
+
+/**
+ * A regex matched in a time linear in the length of the input: the pattern is
+ * compiled to a program run as a Pike VM, which advances all the ways the
+ * pattern may match in step over the input instead of backtracking. The match
+ * is the one {@link java.util.regex.Pattern} finds, since the ways are kept in
+ * the order the backtracking would try them (leftmost first, greedy or lazy
+ * quantifiers, alternatives from left to right), and so are the groups which
+ * are not inside a repetition. A group inside a repetition other than
+ * {@code ?}, e.g. {@code (?:([^a]){1,2})*}, is its last iteration in the
+ * match, whereas {@code Pattern} may keep the group of an iteration it has
+ * backtracked from, even in a failed alternative.
+ * <p>
+ * The syntax is the one of {@code Pattern} without the constructs that require
+ * backtracking, i.e. back references, lookarounds, atomic groups and
+ * possessive quantifiers, and without the flags other than {@code i} and
+ * {@code s}, {@code \p} classes and nested classes. The repetitions of a
+ * subexpression that may match an empty string, e.g. {@code (a*)*} or
+ * {@code (?:b*?)+}, are not supported either, since {@code Pattern} ends them
+ * with rules of its own. {@link #compile(String)} rejects them with an
+ * {@link IllegalArgumentException}. The input is read by code points.
+ */
+final class LinearRegex {
+
+	static final int MAX_PROGRAM_SIZE = 10000;
+
+	// instructions
+	private static final int CHAR_CLASS = 0;
+	private static final int MATCH = 1;
+	private static final int JMP = 2;
+	private static final int SPLIT = 3;
+	private static final int SAVE = 4;
+	private static final int ASSERT = 5;
+	private static final int CHAR = 6;
+
+	// assertions
+	private static final int BEGIN_INPUT = 0;
+	private static final int END_INPUT = 1;
+	private static final int END_INPUT_OR_LINE = 2;
+	private static final int WORD_BOUNDARY = 3;
+	private static final int NOT_WORD_BOUNDARY = 4;
+
+	private static final int MAX_CODE_POINT = Character.MAX_CODE_POINT;
+	private static final int[] ANY = { 0, MAX_CODE_POINT };
+	private static final int[] DIGIT = { '0', '9' };
+	private static final int[] WORD = { '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+	private static final int[] SPACE = { '\t', '\r', ' ', ' ' };
+	private static final int[] LINE_TERMINATOR = { '\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029' };
+
+	private final String regex;
+	private final int[] ops;
+	private final int[] args;
+	private final int[] args2;
+	private final int[][] classes;
+	private final int groupCount;
+	private final Map<String, Integer> groupIndexes;
+
+	private LinearRegex(String regex, Program program, int groupCount, Map<String, Integer> groupIndexes) {
+		this.regex = regex;
+		this.ops = Arrays.copyOf(program.ops, program.size);
+		this.args = Arrays.copyOf(program.args, program.size);
+		this.args2 = Arrays.copyOf(program.args2, program.size);
+		this.classes = program.classes.toArray(new int[0][]);
+		this.groupCount = groupCount;
+		this.groupIndexes = Collections.unmodifiableMap(groupIndexes);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the regex uses a construct this
+	 *                                  engine does not support, or if it is
+	 *                                  not valid
+	 */
+	static LinearRegex compile(String regex) {
+		Parser parser = new Parser(regex);
+		Node root = parser.parseAlternation();
+		if (parser.pos < regex.length()) {
+			throw parser.error("Unmatched closing ')'");
+		}
+
+		Program program = new Program();
+		program.emit(SAVE, 0, 0);
+		root.emit(program);
+		// the end of the match is the position of the MATCH thread
+		program.emit(MATCH, 0, 0);
+		return new LinearRegex(regex, program, parser.groupCount, parser.groupIndexes);
+	}
+
+	int groupCount() {
+		return this.groupCount;
+	}
+
+	/**
+	 * Indexes of the named groups.
+	 */
+	Map<String, Integer> groupIndexes() {
+		return this.groupIndexes;
+	}
+
+	Matcher matcher() {
+		return new Matcher();
+	}
+
+	@Override
+	public String toString() {
+		return this.regex;
+	}
+
+	/**
+	 * Match state, to be used by one thread at a time. As with
+	 * {@link java.util.regex.Matcher}, the groups are those of the last
+	 * successful match.
+	 */
+	final class Matcher implements MatchResult {
+		private final ThreadList current = new ThreadList(LinearRegex.this.ops.length);
+		private final ThreadList next = new ThreadList(LinearRegex.this.ops.length);
+		private final int[] visited = new int[LinearRegex.this.ops.length];
+		private final int[] stackPcs = new int[LinearRegex.this.ops.length];
+		private final int[][] stackGroups = new int[LinearRegex.this.ops.length][];
+		private final int[] groups = new int[2 * (LinearRegex.this.groupCount + 1)];
+		private final int[] noGroups = new int[this.groups.length];
+		private int generation;
+		private String input;
+		private boolean matched;
+
+		boolean matches(String input) {
+			return run(input, 0, true, true);
+		}
+
+		boolean lookingAt(String input) {
+			return run(input, 0, true, false);
+		}
+
+		boolean find(String input, int from) {
+			return run(input, from, false, false);
+		}
+
+		/**
+		 * Finds the match following the last one, moving on by one character
+		 * after an empty match as {@link java.util.regex.Matcher#find()} does.
+		 */
+		boolean findNext() {
+			int from = this.groups[1];
+			if (from == this.groups[0]) {
+				from++;
+			}
+			if (from > this.input.length()) {
+				this.matched = false;
+				return false;
+			}
+			return run(this.input, from, false, false);
+		}
+
+		/**
+		 * Releases the input.
+		 */
+		void reset() {
+			this.input = null;
+			this.matched = false;
+		}
+
+		private boolean run(String input, int from, boolean anchorStart, boolean anchorEnd) {
+			this.input = input;
+			this.matched = false;
+			int length = input.length();
+			int[] noGroups = this.noGroups;
+			Arrays.fill(noGroups, -1);
+
+			ThreadList threads = this.current;
+			ThreadList nextThreads = this.next;
+			threads.clear(nextGeneration());
+			int pos = from;
+			while (true) {
+				// a match starting here has a lower priority than the ones started before
+				if (!this.matched && (pos == from || !anchorStart)) {
+					addThread(threads, 0, noGroups, pos);
+				}
+				if (threads.size == 0 && (this.matched || anchorStart || pos >= length)) {
+					break;
+				}
+
+				int codePoint = pos < length ? input.codePointAt(pos) : -1;
+				int nextPos = pos < length ? pos + Character.charCount(codePoint) : pos;
+				nextThreads.clear(nextGeneration());
+				for (int i = 0; i < threads.size; i++) {
+					int pc = threads.pcs[i];
+					if (LinearRegex.this.ops[pc] == MATCH) {
+						if (anchorEnd && pos != length) {
+							continue;
+						}
+						this.matched = true;
+						System.arraycopy(threads.groups[i], 0, this.groups, 0, this.groups.length);
+						this.groups[1] = pos;
+						// the threads left have a lower priority
+						break;
+					}
+					if (LinearRegex.this.ops[pc] == CHAR ? codePoint == LinearRegex.this.args[pc]
+							: codePoint >= 0 && contains(LinearRegex.this.classes[LinearRegex.this.args[pc]], codePoint)) {
+						addThread(nextThreads, pc + 1, threads.groups[i], nextPos);
+					}
+				}
+				if (pos >= length) {
+					break;
+				}
+
+				ThreadList swapped = threads;
+				threads = nextThreads;
+				nextThreads = swapped;
+				pos = nextPos;
+			}
+			return this.matched;
+		}
+
+		private int nextGeneration() {
+			if (++this.generation == 0) {
+				Arrays.fill(this.visited, 0);
+				this.generation = 1;
+			}
+			return this.generation;
+		}
+
+		/**
+		 * Adds the thread at {@code pc} and the ones it leads to without
+		 * consuming input, in priority order, skipping the instructions already
+		 * reached at this position by a thread of higher priority.
+		 */
+		private void addThread(ThreadList threads, int pc, int[] groups, int pos) {
+			int[] ops = LinearRegex.this.ops;
+			int[] args = LinearRegex.this.args;
+			int[] visited = this.visited;
+			int generation = threads.generation;
+			int top = 0;
+			while (true) {
+				if (visited[pc] != generation) {
+					visited[pc] = generation;
+					switch (ops[pc]) {
+					case JMP:
+						pc = args[pc];
+						continue;
+					case SPLIT:
+						// the second branch is followed once the first one is done
+						this.stackPcs[top] = LinearRegex.this.args2[pc];
+						this.stackGroups[top++] = groups;
+						pc = args[pc];
+						continue;
+					case SAVE:
+						// the groups are shared by the threads, so they are copied on write
+						if (groups[args[pc]] != pos) {
+							groups = groups.clone();
+							groups[args[pc]] = pos;
+						}
+						pc++;
+						continue;
+					case ASSERT:
+						if (holds(args[pc], pos)) {
+							pc++;
+							continue;
+						}
+						break;
+					default:
+						threads.add(pc, groups);
+					}
+				}
+				if (top == 0) {
+					return;
+				}
+				pc = this.stackPcs[--top];
+				groups = this.stackGroups[top];
+				this.stackGroups[top] = null;
+			}
+		}
+
+		private boolean holds(int assertion, int pos) {
+			String input = this.input;
+			int length = input.length();
+			switch (assertion) {
+			case BEGIN_INPUT:
+				return pos == 0;
+			case END_INPUT:
+				return pos == length;
+			case END_INPUT_OR_LINE:
+				// as $ without MULTILINE: at the end or before a final line terminator
+				if (pos == length) {
+					return true;
+				}
+				if (pos == length - 2) {
+					return input.charAt(pos) == '\r' && input.charAt(pos + 1) == '\n';
+				}
+				if (pos == length - 1) {
+					char c = input.charAt(pos);
+					if (c == '\n') {
+						return pos == 0 || input.charAt(pos - 1) != '\r';
+					}
+					return c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+				}
+				return false;
+			default:
+				boolean wordBefore = pos > 0 && isWord(input.codePointBefore(pos));
+				boolean wordAfter = pos < length && isWord(input.codePointAt(pos));
+				return (wordBefore != wordAfter) == (assertion == WORD_BOUNDARY);
+			}
+		}
+
+		private void checkMatch() {
+			if (!this.matched) {
+				throw new IllegalStateException("No match found");
+			}
+		}
+
+		@Override
+		public int start() {
+			return start(0);
+		}
+
+		@Override
+		public int start(int group) {
+			checkMatch();
+			if (group < 0 || group > LinearRegex.this.groupCount) {
+				throw new IndexOutOfBoundsException("No group " + group);
+			}
+			return this.groups[2 * group];
+		}
+
+		@Override
+		public int end() {
+			return end(0);
+		}
+
+		@Override
+		public int end(int group) {
+			checkMatch();
+			if (group < 0 || group > LinearRegex.this.groupCount) {
+				throw new IndexOutOfBoundsException("No group " + group);
+			}
+			return this.groups[2 * group + 1];
+		}
+
+		@Override
+		public String group() {
+			return group(0);
+		}
+
+		@Override
+		public String group(int group) {
+			int start = start(group);
+			return start == -1 ? null : this.input.substring(start, end(group));
+		}
+
+		@Override
+		public int groupCount() {
+			return LinearRegex.this.groupCount;
+		}
+	}
+
+	/**
+	 * Threads of the Pike VM at a position, in priority order.
+	 */
+	private static final class ThreadList {
+		final int[] pcs;
+		final int[][] groups;
+		int size;
+		int generation;
+
+		ThreadList(int capacity) {
+			this.pcs = new int[capacity];
+			this.groups = new int[capacity][];
+		}
+
+		void clear(int generation) {
+			this.size = 0;
+			this.generation = generation;
+		}
+
+		void add(int pc, int[] groups) {
+			this.pcs[this.size] = pc;
+			this.groups[this.size++] = groups;
+		}
+	}
+
+	private static boolean contains(int[] ranges, int codePoint) {
+		int low = 0;
+		int high = ranges.length / 2 - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (codePoint < ranges[2 * middle]) {
+				high = middle - 1;
+			} else if (codePoint > ranges[2 * middle + 1]) {
+				low = middle + 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isWord(int codePoint) {
+		// as \b of java.util.regex, which is not the same as \w
+		return codePoint == '_' || Character.isLetterOrDigit(codePoint);
+	}
+
+	private static final class Program {
+		int[] ops = new int[64];
+		int[] args = new int[64];
+		int[] args2 = new int[64];
+		final List<int[]> classes = new ArrayList<>();
+		int size;
+
+		int emit(int op, int arg, int arg2) {
+			if (this.size == MAX_PROGRAM_SIZE) {
+				throw new IllegalArgumentException("Regex is too large, its program exceeds " + MAX_PROGRAM_SIZE
+						+ " instructions");
+			}
+			if (this.size == this.ops.length) {
+				this.ops = Arrays.copyOf(this.ops, this.size * 2);
+				this.args = Arrays.copyOf(this.args, this.size * 2);
+				this.args2 = Arrays.copyOf(this.args2, this.size * 2);
+			}
+			this.ops[this.size] = op;
+			this.args[this.size] = arg;
+			this.args2[this.size] = arg2;
+			return this.size++;
+		}
+	}
+
+	private abstract static class Node {
+		abstract void emit(Program program);
+
+		/**
+		 * Whether the node may match an empty string.
+		 */
+		abstract boolean matchesEmpty();
+	}
+
+	private static final class CharClass extends Node {
+		final int[] ranges;
+
+		CharClass(int[] ranges) {
+			this.ranges = ranges;
+		}
+
+		@Override
+		void emit(Program program) {
+			if (this.ranges.length == 2 && this.ranges[0] == this.ranges[1]) {
+				program.emit(CHAR, this.ranges[0], 0);
+				return;
+			}
+			program.classes.add(this.ranges);
+			program.emit(CHAR_CLASS, program.classes.size() - 1, 0);
+		}
+
+		@Override
+		boolean matchesEmpty() {
+			return false;
+		}
+	}
+
+	private static final class Assertion extends Node {
+		final int assertion;
+
+		Assertion(int assertion) {
+			this.assertion = assertion;
+		}
+
+		@Override
+		void emit(Program program) {
+			program.emit(ASSERT, this.assertion, 0);
+		}
+
+		@Override
+		boolean matchesEmpty() {
+			return true;
+		}
+	}
+
+	private static final class Concatenation extends Node {
+		final List<Node> nodes;
+
+		Concatenation(List<Node> nodes) {
+			this.nodes = nodes;
+		}
+
+		@Override
+		void emit(Program program) {
+			for (Node node : this.nodes) {
+				node.emit(program);
+			}
+		}
+
+		@Override
+		boolean matchesEmpty() {
+			return this.nodes.stream().allMatch(Node::matchesEmpty);
+		}
+	}
+
+	private static final class Alternation extends Node {
+		final List<Node> alternatives;
+
+		Alternation(List<Node> alternatives) {
+			this.alternatives = alternatives;
+		}
+
+		@Override
+		void emit(Program program) {
+			int[] jumps = new int[this.alternatives.size() - 1];
+			for (int i = 0; i < jumps.length; i++) {
+				int split = program.emit(SPLIT, program.size + 1, 0);
+				this.alternatives.get(i).emit(program);
+				jumps[i] = program.emit(JMP, 0, 0);
+				program.args2[split] = program.size;
+			}
+			this.alternatives.get(jumps.length).emit(program);
+			for (int jump : jumps) {
+				program.args[jump] = program.size;
+			}
+		}
+
+		@Override
+		boolean matchesEmpty() {
+			return this.alternatives.stream().anyMatch(Node::matchesEmpty);
+		}
+	}
+
+	private static final class Group extends Node {
+		final int index;
+		final Node node;
+
+		Group(int index, Node node) {
+			this.index = index;
+			this.node = node;
+		}
+
+		@Override
+		void emit(Program program) {
+			program.emit(SAVE, 2 * this.index, 0);
+			this.node.emit(program);
+			program.emit(SAVE, 2 * this.index + 1, 0);
+		}
+
+		@Override
+		boolean matchesEmpty() {
+			return this.node.matchesEmpty();
+		}
+	}
+
+	private static final class Repetition extends Node {
+		final Node node;
+		final int min;
+		final int max;
+		final boolean greedy;
+
+		/**
+		 * @param max -1 for no maximum
+		 */
+		Repetition(Node node, int min, int max, boolean greedy) {
+			this.node = node;
+			this.min = min;
+			this.max = max;
+			this.greedy = greedy;
+		}
+
+		@Override
+		void emit(Program program) {
+			for (int i = 0; i < this.min; i++) {
+				this.node.emit(program);
+			}
+
+			if (this.max == -1) {
+				int split = program.emit(SPLIT, 0, 0);
+				this.node.emit(program);
+				program.emit(JMP, split, 0);
+				branch(program, split, split + 1, program.size);
+			} else {
+				// nested optional repetitions: x{0,2} is (x(x)?)?
+				int[] splits = new int[this.max - this.min];
+				for (int i = 0; i < splits.length; i++) {
+					splits[i] = program.emit(SPLIT, 0, 0);
+					this.node.emit(program);
+				}
+				for (int split : splits) {
+					branch(program, split, split + 1, program.size);
+				}
+			}
+		}
+
+		private void branch(Program program, int split, int repeat, int exit) {
+			program.args[split] = this.greedy ? repeat : exit;
+			program.args2[split] = this.greedy ? exit : repeat;
+		}
+
+		@Override
+		boolean matchesEmpty() {
+			return this.min == 0 || this.node.matchesEmpty();
+		}
+	}
+
+	private static final class Parser {
+		final String regex;
+		int pos;
+		boolean caseInsensitive;
+		boolean dotAll;
+		int groupCount;
+		final Map<String, Integer> groupIndexes = new HashMap<>();
+
+		Parser(String regex) {
+			this.regex = regex;
+		}
+
+		IllegalArgumentException error(String description) {
+			return new IllegalArgumentException(description + " near index " + this.pos);
+		}
+
+		IllegalArgumentException unsupported(String construct) {
+			return error(construct + " not supported");
+		}
+
+		private boolean more() {
+			return this.pos < this.regex.length();
+		}
+
+		private char peek() {
+			return this.regex.charAt(this.pos);
+		}
+
+		private char next() {
+			if (!more()) {
+				throw error("Unexpected end of the regex");
+			}
+			return this.regex.charAt(this.pos++);
+		}
+
+		private int nextCodePoint() {
+			if (!more()) {
+				throw error("Unexpected end of the regex");
+			}
+			int codePoint = this.regex.codePointAt(this.pos);
+			this.pos += Character.charCount(codePoint);
+			return codePoint;
+		}
+
+		Node parseAlternation() {
+			List<Node> alternatives = new ArrayList<>();
+			alternatives.add(parseConcatenation());
+			while (more() && peek() == '|') {
+				this.pos++;
+				alternatives.add(parseConcatenation());
+			}
+			return alternatives.size() == 1 ? alternatives.get(0) : new Alternation(alternatives);
+		}
+
+		private Node parseConcatenation() {
+			List<Node> nodes = new ArrayList<>();
+			while (more() && peek() != '|' && peek() != ')') {
+				if (this.regex.startsWith("\\Q", this.pos)) {
+					// a quantifier applies to the last quoted character only
+					List<Node> literals = parseQuotation();
+					if (!literals.isEmpty()) {
+						nodes.addAll(literals.subList(0, literals.size() - 1));
+						nodes.add(parseQuantifier(literals.get(literals.size() - 1)));
+					}
+					continue;
+				}
+				Node atom = parseAtom();
+				if (atom != null) {
+					nodes.add(parseQuantifier(atom));
+				}
+			}
+			return nodes.size() == 1 ? nodes.get(0) : new Concatenation(nodes);
+		}
+
+		private List<Node> parseQuotation() {
+			int end = this.regex.indexOf("\\E", this.pos + 2);
+			String quoted = this.regex.substring(this.pos + 2, end == -1 ? this.regex.length() : end);
+			this.pos = end == -1 ? this.regex.length() : end + 2;
+			List<Node> literals = new ArrayList<>();
+			quoted.codePoints().forEach(codePoint -> literals.add(literal(codePoint)));
+			return literals;
+		}
+
+		/**
+		 * Returns {@code null} for a group only setting flags.
+		 */
+		private Node parseAtom() {
+			char c = next();
+			switch (c) {
+			case '(':
+				return parseGroup();
+			case '[':
+				return new CharClass(parseClass());
+			case '.':
+				return new CharClass(this.dotAll ? ANY : complement(LINE_TERMINATOR));
+			case '^':
+				return new Assertion(BEGIN_INPUT);
+			case '$':
+				return new Assertion(END_INPUT_OR_LINE);
+			case '\\':
+				return parseEscape();
+			case '*':
+			case '+':
+			case '?':
+				throw error("Dangling meta character '" + c + "'");
+			case '{':
+				throw error("Illegal repetition");
+			default:
+				this.pos--;
+				return literal(nextCodePoint());
+			}
+		}
+
+		private Node parseGroup() {
+			boolean caseInsensitive = this.caseInsensitive;
+			boolean dotAll = this.dotAll;
+			int index = -1;
+
+			if (more() && peek() == '?') {
+				this.pos++;
+				char c = next();
+				if (c == '<' && more() && peek() != '=' && peek() != '!') {
+					int nameStart = this.pos;
+					while (more() && peek() != '>') {
+						this.pos++;
+					}
+					String name = this.regex.substring(nameStart, this.pos);
+					next();
+					index = ++this.groupCount;
+					this.groupIndexes.put(name, index);
+				} else if (c == '=' || c == '!' || c == '<') {
+					throw unsupported("Lookaround");
+				} else if (c == '>') {
+					throw unsupported("Atomic group");
+				} else if (c != ':') {
+					this.pos--;
+					boolean enable = true;
+					while (true) {
+						c = next();
+						if (c == ')') {
+							// the flags apply up to the end of the enclosing group
+							return null;
+						} else if (c == ':') {
+							break;
+						} else if (c == '-') {
+							enable = false;
+						} else if (c == 'i') {
+							this.caseInsensitive = enable;
+						} else if (c == 's') {
+							this.dotAll = enable;
+						} else {
+							throw unsupported("Flag '" + c + "'");
+						}
+					}
+				}
+			} else {
+				index = ++this.groupCount;
+			}
+
+			Node node = parseAlternation();
+			if (next() != ')') {
+				throw error("Unclosed group");
+			}
+			this.caseInsensitive = caseInsensitive;
+			this.dotAll = dotAll;
+			return index == -1 ? node : new Group(index, node);
+		}
+
+		private Node parseQuantifier(Node atom) {
+			if (!more()) {
+				return atom;
+			}
+
+			int min;
+			int max;
+			switch (peek()) {
+			case '*':
+				min = 0;
+				max = -1;
+				break;
+			case '+':
+				min = 1;
+				max = -1;
+				break;
+			case '?':
+				min = 0;
+				max = 1;
+				break;
+			case '{':
+				this.pos++;
+				min = parseNumber();
+				max = min;
+				if (more() && peek() == ',') {
+					this.pos++;
+					max = more() && peek() == '}' ? -1 : parseNumber();
+				}
+				if (!more() || peek() != '}' || (max != -1 && max < min)) {
+					throw error("Illegal repetition range");
+				}
+				break;
+			default:
+				return atom;
+			}
+			this.pos++;
+
+			boolean greedy = true;
+			if (more() && peek() == '?') {
+				this.pos++;
+				greedy = false;
+			} else if (more() && peek() == '+') {
+				throw unsupported("Possessive quantifier");
+			}
+			// java.util.regex ends such a repetition with rules of its own
+			// (e.g. (a*)* or (?:b*?)+), which a Pike VM does not follow
+			if (max != 0 && max != 1 && atom.matchesEmpty()) {
+				throw unsupported("Repetition of a subexpression that may match an empty string");
+			}
+			return new Repetition(atom, min, max, greedy);
+		}
+
+		private int parseNumber() {
+			int start = this.pos;
+			while (more() && peek() >= '0' && peek() <= '9') {
+				this.pos++;
+			}
+			if (start == this.pos || this.pos - start > 5) {
+				throw error("Illegal repetition range");
+			}
+			return Integer.parseInt(this.regex.substring(start, this.pos));
+		}
+
+		private Node parseEscape() {
+			char c = next();
+			int[] predefined = predefinedClass(c);
+			if (predefined != null) {
+				return new CharClass(predefined);
+			}
+
+			switch (c) {
+			case 'b':
+				return new Assertion(WORD_BOUNDARY);
+			case 'B':
+				return new Assertion(NOT_WORD_BOUNDARY);
+			case 'A':
+				return new Assertion(BEGIN_INPUT);
+			case 'z':
+				return new Assertion(END_INPUT);
+			case 'Z':
+				return new Assertion(END_INPUT_OR_LINE);
+			default:
+				return literal(escapedCodePoint(c));
+			}
+		}
+
+		private static int[] predefinedClass(char c) {
+			switch (c) {
+			case 'd':
+				return DIGIT;
+			case 'D':
+				return complement(DIGIT);
+			case 'w':
+				return WORD;
+			case 'W':
+				return complement(WORD);
+			case 's':
+				return SPACE;
+			case 'S':
+				return complement(SPACE);
+			default:
+				return null;
+			}
+		}
+
+		/**
+		 * Code point of an escape sequence that is a single character, after
+		 * its backslash.
+		 */
+		private int escapedCodePoint(char c) {
+			switch (c) {
+			case 't':
+				return '\t';
+			case 'n':
+				return '\n';
+			case 'r':
+				return '\r';
+			case 'f':
+				return '\f';
+			case 'a':
+				return '\u0007';
+			case 'e':
+				return '\u001B';
+			case 'c':
+				return next() ^ 64;
+			case '0':
+				int octal = 0;
+				for (int i = 0; i < 3 && more() && peek() >= '0' && peek() <= '7' && octal * 8 + peek() - '0' <= 0377; i++) {
+					octal = octal * 8 + next() - '0';
+				}
+				return octal;
+			case 'x':
+				if (more() && peek() == '{') {
+					int end = this.regex.indexOf('}', this.pos);
+					if (end == -1) {
+						throw error("Unclosed hexadecimal escape sequence");
+					}
+					int codePoint = hex(this.pos + 1, end);
+					this.pos = end + 1;
+					return codePoint;
+				}
+				this.pos += 2;
+				return hex(this.pos - 2, this.pos);
+			case 'u':
+				this.pos += 4;
+				return hex(this.pos - 4, this.pos);
+			case 'k':
+				throw unsupported("Back reference");
+			case 'p':
+			case 'P':
+				throw unsupported("Unicode class");
+			default:
+				if (c >= '1' && c <= '9') {
+					throw unsupported("Back reference");
+				}
+				if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+					throw unsupported("Escape sequence \\" + c);
+				}
+				this.pos--;
+				return nextCodePoint();
+			}
+		}
+
+		private int hex(int start, int end) {
+			try {
+				return Integer.parseInt(this.regex.substring(start, end), 16);
+			} catch (NumberFormatException | IndexOutOfBoundsException e) {
+				throw error("Illegal hexadecimal escape sequence");
+			}
+		}
+
+		private int[] parseClass() {
+			boolean negated = more() && peek() == '^';
+			if (negated) {
+				this.pos++;
+			}
+
+			List<int[]> ranges = new ArrayList<>();
+			boolean first = true;
+			while (true) {
+				char c = next();
+				if (c == ']' && !first) {
+					break;
+				}
+				first = false;
+				if (c == '[') {
+					throw unsupported("Nested character class");
+				}
+				if (c == '&' && more() && peek() == '&') {
+					throw unsupported("Character class intersection");
+				}
+
+				int low;
+				if (c == '\\') {
+					char escaped = next();
+					int[] predefined = predefinedClass(escaped);
+					if (predefined != null) {
+						ranges.add(predefined);
+						continue;
+					}
+					if (escaped == 'Q') {
+						throw unsupported("Quotation in a character class");
+					}
+					low = escapedCodePoint(escaped);
+				} else {
+					this.pos--;
+					low = nextCodePoint();
+				}
+
+				int high = low;
+				if (this.pos + 1 < this.regex.length() && peek() == '-' && this.regex.charAt(this.pos + 1) != ']') {
+					this.pos++;
+					char h = next();
+					if (h == '[') {
+						throw unsupported("Nested character class");
+					}
+					if (h == '\\') {
+						high = escapedCodePoint(next());
+					} else {
+						this.pos--;
+						high = nextCodePoint();
+					}
+					if (high < low) {
+						throw error("Illegal character range");
+					}
+				}
+				ranges.add(caseInsensitive(new int[] { low, high }));
+			}
+
+			int[] union = union(ranges);
+			return negated ? complement(union) : union;
+		}
+
+		private Node literal(int codePoint) {
+			return new CharClass(caseInsensitive(new int[] { codePoint, codePoint }));
+		}
+
+		/**
+		 * Adds the other case of the ASCII letters with the {@code i} flag, as
+		 * {@code CASE_INSENSITIVE} without {@code UNICODE_CASE} does.
+		 */
+		private int[] caseInsensitive(int[] range) {
+			if (!this.caseInsensitive) {
+				return range;
+			}
+			List<int[]> ranges = new ArrayList<>();
+			ranges.add(range);
+			int low = Math.max(range[0], 'a');
+			int high = Math.min(range[1], 'z');
+			if (low <= high) {
+				ranges.add(new int[] { low - 32, high - 32 });
+			}
+			low = Math.max(range[0], 'A');
+			high = Math.min(range[1], 'Z');
+			if (low <= high) {
+				ranges.add(new int[] { low + 32, high + 32 });
+			}
+			return union(ranges);
+		}
+	}
+
+	/**
+	 * Sorted and merged ranges of a list of ranges.
+	 */
+	private static int[] union(List<int[]> rangeLists) {
+		List<int[]> ranges = new ArrayList<>();
+		for (int[] rangeList : rangeLists) {
+			for (int i = 0; i < rangeList.length; i += 2) {
+				ranges.add(new int[] { rangeList[i], rangeList[i + 1] });
+			}
+		}
+		ranges.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+		int[] union = new int[2 * ranges.size()];
+		int size = 0;
+		for (int[] range : ranges) {
+			if (size > 0 && range[0] <= union[size - 1] + 1) {
+				union[size - 1] = Math.max(union[size - 1], range[1]);
+			} else {
+				union[size++] = range[0];
+				union[size++] = range[1];
+			}
+		}
+		return Arrays.copyOf(union, size);
+	}
+
+	private static int[] complement(int[] ranges) {
+		int[] complement = new int[ranges.length + 2];
+		int size = 0;
+		int next = 0;
+		for (int i = 0; i < ranges.length; i += 2) {
+			if (ranges[i] > next) {
+				complement[size++] = next;
+				complement[size++] = ranges[i] - 1;
+			}
+			next = ranges[i + 1] + 1;
+		}
+		if (next <= MAX_CODE_POINT) {
+			complement[size++] = next;
+			complement[size++] = MAX_CODE_POINT;
+		}
+		return Arrays.copyOf(complement, size);
+	}
+}
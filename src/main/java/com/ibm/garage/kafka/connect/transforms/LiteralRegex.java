@@ -0,0 +1,192 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.regex.MatchResult;
+
+/**
+ * A {@code regex.pattern} of one of the simple shapes matched with string
+ * operations instead of a regex engine: a literal text, or a literal prefix
+ * and suffix around {@code .*} or {@code (.*)}, optionally anchored with
+ * {@code ^} and {@code $}, e.g. {@code ^(.*)$}, {@code ^prefix-(.*)$} or
+ * {@code (.*)-suffix}. The result of {@link #format(String)} is the one of
+ * {@link RegexFormatter}.
+ */
+final class LiteralRegex {
+
+	private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+
+	private final String regex;
+	private final ReplacementTemplate template;
+	private final String prefix;
+	private final String suffix;
+	private final boolean wildcard;
+	private final boolean group;
+	private final boolean matchesEmptyAtEnd;
+
+	private LiteralRegex(String regex, String format, String prefix, String suffix, boolean wildcard, boolean group,
+			boolean matchesEmptyAtEnd) {
+		this.regex = regex;
+		this.template = ReplacementTemplate.parse(format, group ? 1 : 0);
+		this.prefix = prefix;
+		this.suffix = suffix;
+		this.wildcard = wildcard;
+		this.group = group;
+		this.matchesEmptyAtEnd = matchesEmptyAtEnd;
+	}
+
+	/**
+	 * Returns {@code null} if the regex is not of a simple shape, or if the
+	 * format refers to a named group, left to the regex engine to report.
+	 *
+	 * @throws IllegalArgumentException if the format is not valid
+	 */
+	static LiteralRegex compile(String regex, String format) {
+		if (format.contains("${")) {
+			return null;
+		}
+
+		boolean startAnchor = regex.startsWith("^");
+		int pos = startAnchor ? 1 : 0;
+
+		StringBuilder prefix = new StringBuilder();
+		pos = readLiteral(regex, pos, prefix);
+
+		boolean group = pos >= 0 && regex.startsWith("(.*)", pos);
+		boolean wildcard = group || (pos >= 0 && regex.startsWith(".*", pos));
+		StringBuilder suffix = new StringBuilder();
+		if (wildcard) {
+			pos = readLiteral(regex, pos + (group ? 4 : 2), suffix);
+		}
+
+		if (pos >= 0 && regex.startsWith("$", pos)) {
+			pos++;
+		}
+		if (pos != regex.length() || (!wildcard && prefix.length() == 0)) {
+			return null;
+		}
+
+		// replaceAll also finds the empty match of (.*) at the end of the value
+		boolean matchesEmptyAtEnd = wildcard && !startAnchor && prefix.length() == 0 && suffix.length() == 0;
+		return new LiteralRegex(regex, format, prefix.toString(), suffix.toString(), wildcard, group,
+				matchesEmptyAtEnd);
+	}
+
+	/**
+	 * Appends the literal text from {@code pos} up to the next meta character,
+	 * and returns its position, -1 if the text cannot be matched as is.
+	 */
+	private static int readLiteral(String regex, int pos, StringBuilder literal) {
+		while (pos >= 0 && pos < regex.length()) {
+			char c = regex.charAt(pos);
+			if (c == '\\') {
+				// escaped meta or punctuation characters only, \n or \d are not literal
+				if (pos + 1 == regex.length() || Character.isLetterOrDigit(regex.charAt(pos + 1))) {
+					return -1;
+				}
+				c = regex.charAt(pos + 1);
+				pos++;
+			} else if (META_CHARACTERS.indexOf(c) >= 0) {
+				// a quantifier applies to the last character of the literal
+				return "?*+{".indexOf(c) >= 0 ? -1 : pos;
+			}
+			if (isLineTerminator(c)) {
+				return -1;
+			}
+			literal.append(c);
+			pos++;
+		}
+		return pos;
+	}
+
+	private static boolean isLineTerminator(char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+	String format(String value) {
+		int length = value.length();
+		int groupStart = this.prefix.length();
+		int groupEnd = length - this.suffix.length();
+
+		if (this.wildcard) {
+			if (groupEnd < groupStart || !value.startsWith(this.prefix) || !value.endsWith(this.suffix)) {
+				return null;
+			}
+			// . does not match line terminators
+			for (int i = groupStart; i < groupEnd; i++) {
+				if (isLineTerminator(value.charAt(i))) {
+					return null;
+				}
+			}
+		} else if (!value.equals(this.prefix)) {
+			return null;
+		}
+
+		StringBuilder sb = new StringBuilder(length + 16);
+		this.template.appendTo(sb, new Match(value, 0, length, groupStart, groupEnd), value);
+		if (this.matchesEmptyAtEnd && length > 0) {
+			this.template.appendTo(sb, new Match(value, length, length, length, length), value);
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return this.regex;
+	}
+
+	private final class Match implements MatchResult {
+		private final String value;
+		private final int[] groups;
+
+		Match(String value, int start, int end, int groupStart, int groupEnd) {
+			this.value = value;
+			this.groups = LiteralRegex.this.group ? new int[] { start, end, groupStart, groupEnd }
+					: new int[] { start, end };
+		}
+
+		@Override
+		public int start() {
+			return start(0);
+		}
+
+		@Override
+		public int start(int group) {
+			if (group < 0 || 2 * group >= this.groups.length) {
+				throw new IndexOutOfBoundsException("No group " + group);
+			}
+			return this.groups[2 * group];
+		}
+
+		@Override
+		public int end() {
+			return end(0);
+		}
+
+		@Override
+		public int end(int group) {
+			if (group < 0 || 2 * group >= this.groups.length) {
+				throw new IndexOutOfBoundsException("No group " + group);
+			}
+			return this.groups[2 * group + 1];
+		}
+
+		@Override
+		public String group() {
+			return group(0);
+		}
+
+		@Override
+		public String group(int group) {
+			return this.value.substring(start(group), end(group));
+		}
+
+		@Override
+		public int groupCount() {
+			return this.groups.length / 2 - 1;
+		}
+	}
+}
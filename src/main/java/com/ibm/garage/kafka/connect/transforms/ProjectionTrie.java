@@ -0,0 +1,389 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.byteAt;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.decodeString;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.expect;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.separator;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.skipString;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.skipValue;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.skipWhitespace;
+import static com.ibm.garage.kafka.connect.transforms.JsonBytes.writeString;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.connect.errors.DataException;
+
+/**
+ * Included and excluded {@link KeyPath}s merged by their common prefixes, so
+ * that a value is pruned in a single traversal: an object is descended into
+ * only if a path goes through it, and the other members are kept or dropped
+ * as a whole. An excluded path wins over an included one.
+ * <p>
+ * The string values longer than {@code maxBytes} in UTF-8 are truncated, on
+ * a character boundary.
+ */
+final class ProjectionTrie {
+
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	/**
+	 * Removed member of a pruned {@code Map}.
+	 */
+	private static final Object DROPPED = new Object();
+
+	private static final class Node {
+		final String segment;
+		final byte[] key;
+		Node[] children = NO_CHILDREN;
+		boolean included;
+		boolean excluded;
+
+		Node(String segment) {
+			this.segment = segment;
+			this.key = segment == null ? null : segment.getBytes(StandardCharsets.UTF_8);
+		}
+
+		Node child(String segment) {
+			for (Node child : this.children) {
+				if (child.segment.equals(segment)) {
+					return child;
+				}
+			}
+
+			Node child = new Node(segment);
+			Node[] children = new Node[this.children.length + 1];
+			System.arraycopy(this.children, 0, children, 0, this.children.length);
+			children[this.children.length] = child;
+			this.children = children;
+			return child;
+		}
+
+		Node find(String key) {
+			for (Node child : this.children) {
+				if (child.segment.equals(key)) {
+					return child;
+				}
+			}
+			return null;
+		}
+
+		Node find(byte[] json, int keyStart, int keyEnd) {
+			for (Node child : this.children) {
+				if (JsonBytes.keyEquals(json, keyStart, keyEnd, child.key)) {
+					return child;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Number of members dropped and of strings truncated by a pruning.
+	 */
+	static final class Changes {
+		int dropped;
+		int truncated;
+
+		boolean isEmpty() {
+			return this.dropped == 0 && this.truncated == 0;
+		}
+	}
+
+	/**
+	 * An output whose last members can be removed again, e.g. an object which
+	 * turns out to be empty.
+	 */
+	private static final class Output extends ByteArrayOutputStream {
+
+		Output(int size) {
+			super(size);
+		}
+
+		void truncate(int size) {
+			this.count = size;
+		}
+	}
+
+	// node of the members below a kept path
+	private static final Node ANY = new Node(null);
+
+	private final Node root;
+	private final boolean includeAll;
+	private final int maxBytes;
+
+	private ProjectionTrie(Node root, boolean includeAll, int maxBytes) {
+		this.root = root;
+		this.includeAll = includeAll;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @param include paths to keep, all of them if empty
+	 * @param maxBytes maximum UTF-8 length of the string values, {@code 0}
+	 *        for no limit
+	 */
+	static ProjectionTrie compile(List<KeyPath> include, List<KeyPath> exclude, int maxBytes) {
+		Node root = new Node(null);
+		for (KeyPath path : include) {
+			node(root, path).included = true;
+		}
+		for (KeyPath path : exclude) {
+			node(root, path).excluded = true;
+		}
+		return new ProjectionTrie(root, include.isEmpty(), maxBytes);
+	}
+
+	private static Node node(Node root, KeyPath path) {
+		Node node = root;
+		for (int i = 0; i < path.size(); i++) {
+			node = node.child(path.segment(i));
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the pruned value, which shares the unchanged objects with the
+	 * given one. The given value is not changed.
+	 */
+	Map<String, Object> prune(Map<String, Object> value, Changes changes) {
+		return pruneObject(value, this.root, this.includeAll, changes);
+	}
+
+	private Map<String, Object> pruneObject(Map<String, Object> map, Node node, boolean keep, Changes changes) {
+		Map<String, Object> pruned = null;
+		int index = 0;
+		for (Map.Entry<String, Object> entry : map.entrySet()) {
+			Object value = entry.getValue();
+			Object prunedValue = pruneMember(entry.getKey(), value, node, keep, changes);
+			if (pruned == null && prunedValue != value) {
+				// the object is copied from its first changed member
+				pruned = new LinkedHashMap<>();
+				Iterator<Map.Entry<String, Object>> unchanged = map.entrySet().iterator();
+				for (int i = 0; i < index; i++) {
+					Map.Entry<String, Object> unchangedEntry = unchanged.next();
+					pruned.put(unchangedEntry.getKey(), unchangedEntry.getValue());
+				}
+			}
+			if (pruned != null && prunedValue != DROPPED) {
+				pruned.put(entry.getKey(), prunedValue);
+			}
+			index++;
+		}
+		return pruned == null ? map : pruned;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object pruneMember(String key, Object value, Node node, boolean keep, Changes changes) {
+		Node child = node.find(key);
+		if (child == null ? !keep : child.excluded) {
+			changes.dropped++;
+			return DROPPED;
+		}
+
+		boolean keepChild = keep || child.included;
+		if (child != null && child.children.length > 0 && value instanceof Map) {
+			Map<String, Object> pruned = pruneObject((Map<String, Object>) value, child, keepChild, changes);
+			if (!keepChild && pruned.isEmpty()) {
+				// none of the included paths below is present
+				changes.dropped++;
+				return DROPPED;
+			}
+			return pruned;
+		}
+		if (!keepChild) {
+			changes.dropped++;
+			return DROPPED;
+		}
+		return truncate(value, changes);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object truncate(Object value, Changes changes) {
+		if (this.maxBytes == 0) {
+			return value;
+		}
+		if (value instanceof String) {
+			String string = (String) value;
+			int length = truncatedLength(string);
+			if (length == string.length()) {
+				return string;
+			}
+			changes.truncated++;
+			return string.substring(0, length);
+		}
+		if (value instanceof Map) {
+			return pruneObject((Map<String, Object>) value, ANY, true, changes);
+		}
+		if (value instanceof List) {
+			List<Object> list = (List<Object>) value;
+			List<Object> truncated = null;
+			for (int i = 0; i < list.size(); i++) {
+				Object element = list.get(i);
+				Object truncatedElement = truncate(element, changes);
+				if (truncated == null && truncatedElement != element) {
+					truncated = new ArrayList<>(list.subList(0, i));
+				}
+				if (truncated != null) {
+					truncated.add(truncatedElement);
+				}
+			}
+			return truncated == null ? list : truncated;
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the number of characters of the string which fit in
+	 * {@code maxBytes} UTF-8 bytes, without splitting a surrogate pair.
+	 */
+	private int truncatedLength(String value) {
+		// a character is at most 3 bytes, a surrogate pair 4
+		if (value.length() * 3 <= this.maxBytes) {
+			return value.length();
+		}
+
+		int bytes = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			int size;
+			if (c < 0x80) {
+				size = 1;
+			} else if (c < 0x800) {
+				size = 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+					&& Character.isLowSurrogate(value.charAt(i + 1))) {
+				size = 4;
+			} else {
+				size = 3;
+			}
+			if (bytes + size > this.maxBytes) {
+				return i;
+			}
+			bytes += size;
+			if (size == 4) {
+				i++;
+			}
+		}
+		return value.length();
+	}
+
+	/**
+	 * Writes the pruned JSON object in a single scan, copying the kept values
+	 * byte for byte unless a string is truncated in them. The rewritten
+	 * objects and arrays are written without whitespace.
+	 *
+	 * @throws DataException if the value is not a JSON object
+	 */
+	byte[] prune(byte[] json, Changes changes) {
+		int start = skipWhitespace(json, 0);
+		if (!JsonBytes.isObject(json)) {
+			throw new DataException("Only JSON objects supported for field pruning");
+		}
+		Output out = new Output(json.length);
+		writeObject(json, start, this.root, this.includeAll, changes, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Returns the position after the object.
+	 */
+	private int writeObject(byte[] json, int start, Node node, boolean keep, Changes changes, Output out) {
+		out.write('{');
+		boolean first = true;
+		int pos = skipWhitespace(json, start + 1);
+
+		while (byteAt(json, pos) != '}') {
+			int keyEnd = skipString(json, expect(json, pos, '"'));
+			int valueStart = skipWhitespace(json, expect(json, skipWhitespace(json, keyEnd), ':') + 1);
+			int valueEnd;
+
+			Node child = node.find(json, pos, keyEnd);
+			boolean keepChild = keep || child != null && child.included;
+			if ((child == null ? !keep : child.excluded)
+					|| (!keepChild && (child.children.length == 0 || byteAt(json, valueStart) != '{'))) {
+				valueEnd = skipValue(json, valueStart);
+				changes.dropped++;
+			} else {
+				boolean firstMember = first;
+				int memberStart = out.size();
+				first = separator(first, out);
+				out.write(json, pos, keyEnd - pos);
+				out.write(':');
+				if (child != null && child.children.length > 0 && byteAt(json, valueStart) == '{') {
+					int objectStart = out.size();
+					valueEnd = writeObject(json, valueStart, child, keepChild, changes, out);
+					if (!keepChild && out.size() == objectStart + 2) {
+						// none of the included paths below is present
+						out.truncate(memberStart);
+						first = firstMember;
+						changes.dropped++;
+					}
+				} else {
+					valueEnd = writeValue(json, valueStart, changes, out);
+				}
+			}
+
+			pos = skipWhitespace(json, valueEnd);
+			if (byteAt(json, pos) == ',') {
+				pos = skipWhitespace(json, pos + 1);
+			} else {
+				expect(json, pos, '}');
+			}
+		}
+
+		out.write('}');
+		return pos + 1;
+	}
+
+	/**
+	 * Writes a kept value, only scanning the objects and arrays for strings
+	 * to truncate if there is a {@code maxBytes}. Returns the position after
+	 * the value.
+	 */
+	private int writeValue(byte[] json, int start, Changes changes, Output out) {
+		if (this.maxBytes > 0 && byteAt(json, start) == '{') {
+			return writeObject(json, start, ANY, true, changes, out);
+		}
+		if (this.maxBytes > 0 && json[start] == '[') {
+			out.write('[');
+			boolean first = true;
+			int pos = skipWhitespace(json, start + 1);
+			while (byteAt(json, pos) != ']') {
+				first = separator(first, out);
+				pos = skipWhitespace(json, writeValue(json, pos, changes, out));
+				if (byteAt(json, pos) == ',') {
+					pos = skipWhitespace(json, pos + 1);
+				} else {
+					expect(json, pos, ']');
+				}
+			}
+			out.write(']');
+			return pos + 1;
+		}
+
+		int end = skipValue(json, start);
+		// an encoded string is never shorter than its UTF-8 form
+		if (this.maxBytes > 0 && json[start] == '"' && end - start - 2 > this.maxBytes) {
+			String string = decodeString(json, start, end);
+			int length = truncatedLength(string);
+			if (length < string.length()) {
+				writeString(string.substring(0, length), out);
+				changes.truncated++;
+				return end;
+			}
+		}
+		out.write(json, start, end - start);
+		return end;
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.transforms.util.SimpleConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class Prune<R extends ConnectRecord<R>> implements BatchTransformation<R> {
+
+	private static final Logger log = LoggerFactory.getLogger(Prune.class);
+
+	public static final String OVERVIEW_DOC = "Projection of the record value on included fields, without the excluded fields and with the long strings truncated";
+
+	public static final String INCLUDE_CONFIG = "include";
+	public static final String EXCLUDE_CONFIG = "exclude";
+	public static final String FIELD_MAX_BYTES_CONFIG = "field.maxBytes";
+
+	public static final ConfigDef CONFIG_DEF = new ConfigDef()
+			.define(INCLUDE_CONFIG, ConfigDef.Type.LIST, "", ConfigDef.Importance.HIGH,
+					"Record value fields kept with their nested fields, all of them if empty, nested fields in the dotted form")
+			.define(EXCLUDE_CONFIG, ConfigDef.Type.LIST, "", ConfigDef.Importance.HIGH,
+					"Record value fields removed with their nested fields, nested fields in the dotted form")
+			.define(FIELD_MAX_BYTES_CONFIG, ConfigDef.Type.INT, 0, ConfigDef.Range.atLeast(0),
+					ConfigDef.Importance.MEDIUM,
+					"Maximum UTF-8 length of the string values, longer ones are truncated. 0 for no limit");
+
+	static final String METRIC_GROUP = "prune-transform-metrics";
+
+	private ProjectionTrie projection;
+
+	private final TransformMetrics metrics = new TransformMetrics(METRIC_GROUP);
+	private final LongAdder recordsIn = this.metrics.counter("records-in-total", "Number of records processed");
+	private final LongAdder fieldsDropped = this.metrics.counter("fields-dropped-total",
+			"Number of fields removed since they are excluded or not included");
+	private final LongAdder fieldsTruncated = this.metrics.counter("fields-truncated-total",
+			"Number of string values truncated to " + FIELD_MAX_BYTES_CONFIG);
+	private final TransformMetrics.LatencyHistogram applyLatency = this.metrics.latency("apply-latency",
+			"apply() latency in nanoseconds");
+
+	@Override
+	public void configure(Map<String, ?> props) {
+		log.info("Getting configuration for " + Prune.class.getName() + " transformation...");
+
+		final SimpleConfig config = new SimpleConfig(CONFIG_DEF, props);
+		final List<KeyPath> include = paths(config.getList(INCLUDE_CONFIG));
+		final List<KeyPath> exclude = paths(config.getList(EXCLUDE_CONFIG));
+		final int maxBytes = config.getInt(FIELD_MAX_BYTES_CONFIG);
+		if (include.isEmpty() && exclude.isEmpty() && maxBytes == 0) {
+			throw new RuntimeException("Config: none of \"" + INCLUDE_CONFIG + "\", \"" + EXCLUDE_CONFIG + "\" and \""
+					+ FIELD_MAX_BYTES_CONFIG + "\" is set");
+		}
+
+		this.projection = ProjectionTrie.compile(include, exclude, maxBytes);
+		log.info("Metrics of " + Prune.class.getName() + " transformation are published with the tags "
+				+ this.metrics.register());
+
+		log.info(Prune.class.getName() + " transformation has been successfully configured.");
+	}
+
+	private static List<KeyPath> paths(List<String> dottedKeys) {
+		final List<KeyPath> paths = new ArrayList<>(dottedKeys.size());
+		for (String dottedKey : dottedKeys) {
+			paths.add(KeyPath.parse(dottedKey));
+		}
+		return paths;
+	}
+
+	@Override
+	public R apply(R record) {
+		final long start = System.nanoTime();
+		this.recordsIn.increment();
+
+		final R prunedRecord = prune(record);
+
+		this.applyLatency.record(System.nanoTime() - start);
+		return prunedRecord;
+	}
+
+	/**
+	 * Prunes the records of the batch in a single pass. The
+	 * {@code apply-latency} metrics record the average latency of the batch
+	 * records.
+	 */
+	@Override
+	public List<R> applyAll(List<R> records) {
+		final long start = System.nanoTime();
+		this.recordsIn.add(records.size());
+
+		final List<R> prunedRecords = new ArrayList<>(records.size());
+		for (R record : records) {
+			prunedRecords.add(prune(record));
+		}
+
+		if (!records.isEmpty()) {
+			this.applyLatency.record((System.nanoTime() - start) / records.size(), records.size());
+		}
+		return prunedRecords;
+	}
+
+	/**
+	 * Returns the record with the pruned value, or the record itself if
+	 * nothing has been removed or truncated. A {@code Map} value is not
+	 * changed, the pruned value shares its unchanged objects.
+	 */
+	@SuppressWarnings("unchecked")
+	private R prune(R record) {
+		final Object value = record.value();
+		if (value == null) {
+			return record;
+		}
+
+		final ProjectionTrie.Changes changes = new ProjectionTrie.Changes();
+		final Object prunedValue;
+		if (value instanceof Map) {
+			prunedValue = this.projection.prune((Map<String, Object>) value, changes);
+		} else if (value instanceof byte[]) {
+			prunedValue = this.projection.prune((byte[]) value, changes);
+		} else {
+			throw new DataException("Only Map objects and JSON bytes supported in the absence of schema for "
+					+ "field pruning, found: " + value.getClass().getName());
+		}
+
+		if (changes.isEmpty()) {
+			return record;
+		}
+		this.fieldsDropped.add(changes.dropped);
+		this.fieldsTruncated.add(changes.truncated);
+		return record.newRecord(record.topic(), record.kafkaPartition(), record.keySchema(), record.key(),
+				record.valueSchema(), prunedValue, record.timestamp(), record.headers());
+	}
+
+	@Override
+	public void close() {
+		this.metrics.close();
+	}
+
+	@Override
+	public ConfigDef config() {
+		return CONFIG_DEF;
+	}
+}
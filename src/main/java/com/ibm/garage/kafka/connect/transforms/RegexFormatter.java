@@ -0,0 +1,347 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled {@code regex.pattern} and {@code regex.format} pair. The result of
+ * {@link #format(String)} is the same as
+ * {@code value.matches(pattern) ? value.replaceAll(pattern, format) : null}.
+ * A {@link Matcher} is reused by each thread.
+ * <p>
+ * With a budget, the regex reads the value through a {@link CharSequence}
+ * counting the characters read, so that a pattern backtracking
+ * catastrophically on some value is stopped once it has read the value
+ * {@code budget} times, as if it did not match.
+ * <p>
+ * Compiled for the linear engine, the regex is a {@link LinearRegex} instead,
+ * which needs no budget. With either engine, a regex of a simple shape such as
+ * {@code ^prefix-(.*)$} is a {@link LiteralRegex} matched with string
+ * operations.
+ * <p>
+ * The {@code regex.outputs} templates are formatted from the same full match
+ * as the {@code regex.format}, by {@link #format(String, String[])}. Without
+ * {@code regex.format}, the formatter only matches the value and fills the
+ * outputs.
+ */
+final class RegexFormatter {
+
+	/**
+	 * Thrown by {@link BudgetedValue} out of the regex engine, without a stack
+	 * trace since it is always caught.
+	 */
+	private static final class BudgetExceededException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		BudgetExceededException() {
+			super(null, null, false, false);
+		}
+	}
+
+	private static final BudgetExceededException BUDGET_EXCEEDED = new BudgetExceededException();
+
+	/**
+	 * Value read by the regex, reused by each thread.
+	 */
+	private static final class BudgetedValue implements CharSequence {
+		private String value;
+		private long remainingReads;
+
+		BudgetedValue reset(String value, long reads) {
+			this.value = value;
+			this.remainingReads = reads;
+			return this;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (--this.remainingReads < 0) {
+				throw BUDGET_EXCEEDED;
+			}
+			return this.value.charAt(index);
+		}
+
+		@Override
+		public int length() {
+			return this.value.length();
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return this.value.subSequence(start, end);
+		}
+
+		@Override
+		public String toString() {
+			return this.value;
+		}
+	}
+
+	private static final ReplacementTemplate[] NO_OUTPUTS = new ReplacementTemplate[0];
+
+	/**
+	 * Result of {@link #formatWithinBudget(String)} for a value on which the
+	 * budget is exceeded.
+	 */
+	static final String OVER_BUDGET = new String("OVER_BUDGET");
+
+	private final String regex;
+	private final ReplacementTemplate template;
+	private final ReplacementTemplate[] outputs;
+	private final ThreadLocal<Matcher> matchers;
+	private final ThreadLocal<LinearRegex.Matcher> linearMatchers;
+	private final LiteralRegex literalRegex;
+	private final long budget;
+	private final LongAdder budgetExceeded;
+	private final ThreadLocal<BudgetedValue> budgetedValues;
+
+	private RegexFormatter(Pattern pattern, ReplacementTemplate template, ReplacementTemplate[] outputs, long budget,
+			LongAdder budgetExceeded) {
+		this.regex = pattern.pattern();
+		this.template = template;
+		this.outputs = outputs;
+		this.matchers = ThreadLocal.withInitial(() -> pattern.matcher(""));
+		this.linearMatchers = null;
+		this.literalRegex = null;
+		this.budget = budget;
+		this.budgetExceeded = budgetExceeded;
+		this.budgetedValues = budget > 0 ? ThreadLocal.withInitial(BudgetedValue::new) : null;
+	}
+
+	private RegexFormatter(LinearRegex linearRegex, ReplacementTemplate template, ReplacementTemplate[] outputs) {
+		this.regex = linearRegex.toString();
+		this.template = template;
+		this.outputs = outputs;
+		this.matchers = null;
+		this.linearMatchers = ThreadLocal.withInitial(linearRegex::matcher);
+		this.literalRegex = null;
+		this.budget = 0;
+		this.budgetExceeded = null;
+		this.budgetedValues = null;
+	}
+
+	private RegexFormatter(LiteralRegex literalRegex) {
+		this.regex = literalRegex.toString();
+		this.template = null;
+		this.outputs = NO_OUTPUTS;
+		this.matchers = null;
+		this.linearMatchers = null;
+		this.literalRegex = literalRegex;
+		this.budget = 0;
+		this.budgetExceeded = null;
+		this.budgetedValues = null;
+	}
+
+	static RegexFormatter compile(String regex, String format) {
+		return compile(regex, format, 0, null);
+	}
+
+	/**
+	 * @param budget         number of times the regex may read the whole
+	 *                       value, 0 for no limit
+	 * @param budgetExceeded counts the values on which the budget is exceeded
+	 */
+	static RegexFormatter compile(String regex, String format, long budget, LongAdder budgetExceeded) {
+		return compile(regex, format, budget, budgetExceeded, Collections.emptyList());
+	}
+
+	/**
+	 * @param format        {@code null} if the formatter only fills the
+	 *                      outputs
+	 * @param outputFormats the {@code regex.outputs} templates
+	 * @throws IllegalArgumentException if a template is malformed
+	 */
+	static RegexFormatter compile(String regex, String format, long budget, LongAdder budgetExceeded,
+			List<String> outputFormats) {
+		Pattern pattern = Pattern.compile(regex);
+		LiteralRegex literalRegex = outputFormats.isEmpty() ? LiteralRegex.compile(regex, format) : null;
+		if (literalRegex != null) {
+			return new RegexFormatter(literalRegex);
+		}
+		int groupCount = pattern.matcher("").groupCount();
+		ReplacementTemplate[] outputs = new ReplacementTemplate[outputFormats.size()];
+		for (int i = 0; i < outputs.length; i++) {
+			outputs[i] = ReplacementTemplate.parse(outputFormats.get(i), groupCount);
+		}
+		return new RegexFormatter(pattern, format == null ? null : ReplacementTemplate.parse(format, groupCount),
+				outputs, budget, budgetExceeded);
+	}
+
+	static RegexFormatter compileLinear(String regex, String format) {
+		return compileLinear(regex, format, Collections.emptyList());
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the regex is not supported by
+	 *                                  {@link LinearRegex} or a template is
+	 *                                  malformed
+	 */
+	static RegexFormatter compileLinear(String regex, String format, List<String> outputFormats) {
+		LinearRegex linearRegex = LinearRegex.compile(regex);
+		LiteralRegex literalRegex = outputFormats.isEmpty() ? LiteralRegex.compile(regex, format) : null;
+		if (literalRegex != null) {
+			return new RegexFormatter(literalRegex);
+		}
+		ReplacementTemplate[] outputs = new ReplacementTemplate[outputFormats.size()];
+		for (int i = 0; i < outputs.length; i++) {
+			outputs[i] = ReplacementTemplate.parse(outputFormats.get(i), linearRegex.groupCount(),
+					linearRegex.groupIndexes());
+		}
+		return new RegexFormatter(linearRegex, format == null ? null
+				: ReplacementTemplate.parse(format, linearRegex.groupCount(), linearRegex.groupIndexes()), outputs);
+	}
+
+	String format(String value) {
+		return format(value, null);
+	}
+
+	/**
+	 * Same as {@link #format(String)}, also filling {@code outputValues} with
+	 * the {@code regex.outputs} formatted from the same match. They are left
+	 * unchanged if the regex does not match. Without {@code regex.format}, the
+	 * value itself is returned if it matches.
+	 *
+	 * @param outputValues {@code null} to format no outputs
+	 */
+	String format(String value, String[] outputValues) {
+		String result = formatWithinBudget(value, outputValues);
+		return result == OVER_BUDGET ? null : result;
+	}
+
+	/**
+	 * Same as {@link #format(String)}, but returns {@link #OVER_BUDGET}
+	 * instead of {@code null} if the budget is exceeded, e.g. to cache it.
+	 */
+	String formatWithinBudget(String value) {
+		return formatWithinBudget(value, null);
+	}
+
+	/**
+	 * Counts a value on which the budget is known to be exceeded, without
+	 * matching it again.
+	 */
+	void budgetExceeded() {
+		this.budgetExceeded.increment();
+	}
+
+	private String formatWithinBudget(String value, String[] outputValues) {
+		if (this.literalRegex != null) {
+			return this.literalRegex.format(value);
+		}
+		if (this.linearMatchers != null) {
+			return formatLinear(value, outputValues);
+		}
+		if (this.budgetedValues == null) {
+			return format(value, this.matchers.get().reset(value), outputValues);
+		}
+
+		// at least one read per character, for an empty value too
+		long reads = this.budget * Math.max(value.length(), 1);
+		Matcher matcher = this.matchers.get().reset(this.budgetedValues.get().reset(value, reads));
+		try {
+			return format(value, matcher, outputValues);
+		} catch (BudgetExceededException e) {
+			this.budgetExceeded.increment();
+			return OVER_BUDGET;
+		} finally {
+			// do not hold on to the value until the next one
+			matcher.reset("");
+			this.budgetedValues.get().reset(null, 0);
+		}
+	}
+
+	private String format(String value, Matcher matcher, String[] outputValues) {
+
+		// No match at index 0 means there is no full match either. If the first
+		// match at index 0 spans the whole value, it is also the full match and
+		// the first match replaceAll would find, so the matcher goes on from there.
+		if (!matcher.lookingAt()) {
+			return null;
+		}
+		boolean fullFirstMatch = matcher.end() == value.length();
+		if (!fullFirstMatch && !matcher.matches()) {
+			return null;
+		}
+		formatOutputs(matcher, value, outputValues);
+		if (this.template == null) {
+			return value;
+		}
+		if (!fullFirstMatch) {
+			matcher.reset();
+			matcher.find();
+		}
+
+		StringBuilder sb = new StringBuilder(value.length() + 16);
+		int last = 0;
+		do {
+			sb.append(value, last, matcher.start());
+			this.template.appendTo(sb, matcher, value);
+			last = matcher.end();
+		} while (matcher.find());
+		sb.append(value, last, value.length());
+
+		return sb.toString();
+	}
+
+	private String formatLinear(String value, String[] outputValues) {
+		LinearRegex.Matcher matcher = this.linearMatchers.get();
+		try {
+			// as format(String, Matcher, String[])
+			if (!matcher.lookingAt(value)) {
+				return null;
+			}
+			boolean fullFirstMatch = matcher.end() == value.length();
+			if (!fullFirstMatch && !matcher.matches(value)) {
+				return null;
+			}
+			formatOutputs(matcher, value, outputValues);
+			if (this.template == null) {
+				return value;
+			}
+			if (!fullFirstMatch) {
+				matcher.find(value, 0);
+			}
+
+			StringBuilder sb = new StringBuilder(value.length() + 16);
+			int last = 0;
+			do {
+				sb.append(value, last, matcher.start());
+				this.template.appendTo(sb, matcher, value);
+				last = matcher.end();
+			} while (matcher.findNext());
+			sb.append(value, last, value.length());
+
+			return sb.toString();
+		} finally {
+			matcher.reset();
+		}
+	}
+
+	/**
+	 * Formats the outputs from the full match of the value.
+	 */
+	private void formatOutputs(MatchResult match, String value, String[] outputValues) {
+		if (outputValues == null) {
+			return;
+		}
+		for (int i = 0; i < this.outputs.length; i++) {
+			StringBuilder sb = new StringBuilder();
+			this.outputs[i].appendTo(sb, match, value);
+			outputValues[i] = sb.toString();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return this.regex;
+	}
+}
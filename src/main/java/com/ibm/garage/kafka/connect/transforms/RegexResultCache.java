@@ -0,0 +1,98 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the {@link RegexFormatter} results of a rule, keyed by the
+ * {@code source.key} value. It is split into segments, each an LRU map with
+ * its own lock, so that the batches transformed in parallel do not contend
+ * on a single lock. Values longer than the maximum key length are not
+ * cached. A value on which the {@code regex.budget} is exceeded is cached as
+ * such, and counted as exceeding it on every hit.
+ */
+final class RegexResultCache {
+
+	private static final int MAX_SEGMENTS = 16;
+	private static final int MIN_SEGMENT_SIZE = 64;
+
+	/**
+	 * Cached result of a value which does not match.
+	 */
+	private static final String NOT_MATCHED = new String("NOT_MATCHED");
+
+	private static final class Segment extends LinkedHashMap<String, String> {
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > this.capacity;
+		}
+	}
+
+	private final Segment[] segments;
+	private final int maxKeyLength;
+	private final LongAdder hits;
+	private final LongAdder misses;
+
+	/**
+	 * @param size at least 1
+	 */
+	RegexResultCache(int size, int maxKeyLength, LongAdder hits, LongAdder misses) {
+		// small caches are not split, their LRU order would be too approximate
+		int segments = Math.max(1, Math.min(MAX_SEGMENTS, Integer.highestOneBit(size / MIN_SEGMENT_SIZE)));
+		this.segments = new Segment[segments];
+		for (int i = 0; i < segments; i++) {
+			// the first segments take the remainder
+			this.segments[i] = new Segment(size / segments + (i < size % segments ? 1 : 0));
+		}
+		this.maxKeyLength = maxKeyLength;
+		this.hits = hits;
+		this.misses = misses;
+	}
+
+	/**
+	 * Returns {@code formatter.format(value)}, from the cache if possible.
+	 */
+	String format(String value, RegexFormatter formatter) {
+		if (value.length() > this.maxKeyLength) {
+			this.misses.increment();
+			return formatter.format(value);
+		}
+
+		int hash = value.hashCode();
+		Segment segment = this.segments[(hash ^ (hash >>> 16)) & (this.segments.length - 1)];
+		String result;
+		synchronized (segment) {
+			result = segment.get(value);
+		}
+		if (result != null) {
+			this.hits.increment();
+			if (result == RegexFormatter.OVER_BUDGET) {
+				formatter.budgetExceeded();
+				return null;
+			}
+			return result == NOT_MATCHED ? null : result;
+		}
+
+		this.misses.increment();
+		result = formatter.formatWithinBudget(value);
+		synchronized (segment) {
+			segment.put(value, result == null ? NOT_MATCHED : result);
+		}
+		return result == RegexFormatter.OVER_BUDGET ? null : result;
+	}
+}
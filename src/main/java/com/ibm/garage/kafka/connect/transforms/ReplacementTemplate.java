@@ -0,0 +1,151 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+
+/**
+ * A {@code regex.format} string parsed once into literal and group reference
+ * parts. The grammar is the one of {@link Matcher#appendReplacement}.
+ */
+final class ReplacementTemplate {
+
+	private static final int NAMED_GROUP = -1;
+
+	private final String[] literals;
+	private final int[] groups;
+	private final String[] groupNames;
+
+	private ReplacementTemplate(String[] literals, int[] groups, String[] groupNames) {
+		this.literals = literals;
+		this.groups = groups;
+		this.groupNames = groupNames;
+	}
+
+	static ReplacementTemplate parse(String format, int groupCount) {
+		return parse(format, groupCount, null);
+	}
+
+	/**
+	 * @param groupIndexes indexes of the named groups of the regex, to refer to
+	 *                     them by index, or {@code null} to look them up by
+	 *                     name in the {@link Matcher}
+	 */
+	static ReplacementTemplate parse(String format, int groupCount, Map<String, Integer> groupIndexes) {
+		List<String> literals = new ArrayList<>();
+		List<Integer> groups = new ArrayList<>();
+		List<String> groupNames = new ArrayList<>();
+
+		StringBuilder literal = new StringBuilder();
+		int cursor = 0;
+		while (cursor < format.length()) {
+			char nextChar = format.charAt(cursor);
+			if (nextChar == '\\') {
+				cursor++;
+				if (cursor == format.length()) {
+					throw new IllegalArgumentException("character to be escaped is missing");
+				}
+				literal.append(format.charAt(cursor));
+				cursor++;
+			} else if (nextChar == '$') {
+				cursor++;
+				if (cursor == format.length()) {
+					throw new IllegalArgumentException("Illegal group reference: group index is missing");
+				}
+				nextChar = format.charAt(cursor);
+				int refNum;
+				String refName = null;
+				if (nextChar == '{') {
+					cursor++;
+					int nameStart = cursor;
+					while (cursor < format.length() && isAsciiLetterOrDigit(format.charAt(cursor))) {
+						cursor++;
+					}
+					if (cursor == nameStart) {
+						throw new IllegalArgumentException("named capturing group has 0 length name");
+					}
+					if (cursor == format.length() || format.charAt(cursor) != '}') {
+						throw new IllegalArgumentException("named capturing group is missing trailing '}'");
+					}
+					refName = format.substring(nameStart, cursor);
+					if (Character.isDigit(refName.charAt(0))) {
+						throw new IllegalArgumentException(
+								"capturing group name {" + refName + "} starts with digit character");
+					}
+					refNum = NAMED_GROUP;
+					if (groupIndexes != null) {
+						Integer groupIndex = groupIndexes.get(refName);
+						if (groupIndex == null) {
+							throw new IllegalArgumentException("No group with name {" + refName + "}");
+						}
+						refNum = groupIndex;
+					}
+					cursor++;
+				} else {
+					refNum = nextChar - '0';
+					if (refNum < 0 || refNum > 9) {
+						throw new IllegalArgumentException("Illegal group reference");
+					}
+					cursor++;
+					while (cursor < format.length()) {
+						int nextDigit = format.charAt(cursor) - '0';
+						if (nextDigit < 0 || nextDigit > 9 || refNum * 10 + nextDigit > groupCount) {
+							break;
+						}
+						refNum = refNum * 10 + nextDigit;
+						cursor++;
+					}
+				}
+				literals.add(literal.toString());
+				literal.setLength(0);
+				groups.add(refNum);
+				groupNames.add(refName);
+			} else {
+				literal.append(nextChar);
+				cursor++;
+			}
+		}
+		literals.add(literal.toString());
+
+		int[] groupArray = new int[groups.size()];
+		for (int i = 0; i < groupArray.length; i++) {
+			groupArray[i] = groups.get(i);
+		}
+		return new ReplacementTemplate(literals.toArray(new String[0]), groupArray,
+				groupNames.toArray(new String[0]));
+	}
+
+	/**
+	 * @param match a {@link Matcher} if the template refers to groups by name
+	 */
+	void appendTo(StringBuilder sb, MatchResult match, String input) {
+		for (int i = 0; i < this.groups.length; i++) {
+			sb.append(this.literals[i]);
+
+			int start;
+			int end;
+			if (this.groups[i] == NAMED_GROUP) {
+				start = ((Matcher) match).start(this.groupNames[i]);
+				end = ((Matcher) match).end(this.groupNames[i]);
+			} else {
+				start = match.start(this.groups[i]);
+				end = match.end(this.groups[i]);
+			}
+			if (start != -1) {
+				sb.append(input, start, end);
+			}
+		}
+		sb.append(this.literals[this.groups.length]);
+	}
+
+	private static boolean isAsciiLetterOrDigit(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+	}
+}
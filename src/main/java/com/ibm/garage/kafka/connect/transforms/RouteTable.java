@@ -0,0 +1,154 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.header.Header;
+
+/**
+ * The routes of the {@link Router} transformation, the first one whose
+ * condition matches a record applying. The routes matching values by equality
+ * ({@code valueEquals} or {@code valueIn}) are indexed by value for each header
+ * or field they test, so that the value of a record is looked up once instead
+ * of being tested by each route. Only the other routes are tested in order,
+ * up to the route found by the lookups.
+ */
+final class RouteTable {
+
+	/**
+	 * A route: its condition, and the topic and headers it sets.
+	 */
+	static final class Route {
+		final String name;
+		final FilterCondition condition;
+		final String topic;
+		final Header[] headers;
+
+		Route(String name, FilterCondition condition, String topic, Header[] headers) {
+			this.name = name;
+			this.condition = condition;
+			this.topic = topic;
+			this.headers = headers;
+		}
+
+		<R extends ConnectRecord<R>> R applyTo(R record) {
+			for (Header header : this.headers) {
+				InternedHeaders.put(record.headers(), header);
+			}
+			if (this.topic == null) {
+				return record;
+			}
+			return record.newRecord(this.topic, record.kafkaPartition(), record.keySchema(), record.key(),
+					record.valueSchema(), record.value(), record.timestamp(), record.headers());
+		}
+
+		@Override
+		public String toString() {
+			return this.name;
+		}
+	}
+
+	/**
+	 * Indexes of the equality routes testing the same header or field, by
+	 * value.
+	 */
+	private static final class EqualityIndex {
+		final FilterCondition source;
+		final Map<String, Integer> routes = new HashMap<>();
+
+		EqualityIndex(FilterCondition source) {
+			this.source = source;
+		}
+
+		/**
+		 * Returns the index of the first route matching the record, or
+		 * {@code limit} if it comes after it.
+		 */
+		int lookup(ConnectRecord<?> record, Object fields, int limit) {
+			if (this.source.headerKey() == null) {
+				String value = this.source.fieldString(fields);
+				Integer route = value == null ? null : this.routes.get(value);
+				return route != null && route < limit ? route : limit;
+			}
+
+			int first = limit;
+			Iterator<Header> headers = record.headers().allWithName(this.source.headerKey());
+			while (headers.hasNext()) {
+				Object value = headers.next().value();
+				Integer route = value == null ? null : this.routes.get(FilterCondition.asString(value));
+				if (route != null && route < first) {
+					first = route;
+				}
+			}
+			return first;
+		}
+	}
+
+	private final Route[] routes;
+	private final EqualityIndex[] equalityIndexes;
+	private final int[] testedRoutes;
+	private final boolean readsFields;
+
+	RouteTable(List<Route> routes) {
+		this.routes = routes.toArray(new Route[0]);
+
+		Map<Object, EqualityIndex> equalityIndexes = new LinkedHashMap<>();
+		List<Integer> testedRoutes = new ArrayList<>();
+		boolean readsFields = false;
+		for (int i = 0; i < this.routes.length; i++) {
+			FilterCondition condition = this.routes[i].condition;
+			readsFields |= condition.headerKey() == null;
+			if (condition.equalValues() == null) {
+				testedRoutes.add(i);
+				continue;
+			}
+
+			Object source = condition.headerKey() != null ? condition.headerKey() : condition.field();
+			EqualityIndex index = equalityIndexes.computeIfAbsent(source, key -> new EqualityIndex(condition));
+			for (String value : condition.equalValues()) {
+				// the first route listing a value wins
+				index.routes.putIfAbsent(value, i);
+			}
+		}
+		this.equalityIndexes = equalityIndexes.values().toArray(new EqualityIndex[0]);
+		this.testedRoutes = testedRoutes.stream().mapToInt(Integer::intValue).toArray();
+		this.readsFields = readsFields;
+	}
+
+	/**
+	 * Returns the first route matching the record, or {@code null} if there is
+	 * none.
+	 */
+	Route route(ConnectRecord<?> record) {
+		Object fields = this.readsFields ? FilterConditions.fieldsOf(record.value()) : null;
+
+		int first = this.routes.length;
+		for (EqualityIndex index : this.equalityIndexes) {
+			first = index.lookup(record, fields, first);
+		}
+		for (int i : this.testedRoutes) {
+			if (i >= first) {
+				break;
+			}
+			if (this.routes[i].condition.test(record, fields)) {
+				first = i;
+				break;
+			}
+		}
+		return first < this.routes.length ? this.routes[first] : null;
+	}
+
+	int size() {
+		return this.routes.length;
+	}
+}
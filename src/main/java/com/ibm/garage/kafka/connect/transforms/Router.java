@@ -0,0 +1,178 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.kafka.common.config.AbstractConfig;
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.header.Header;
+import org.apache.kafka.connect.transforms.util.SimpleConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class Router<R extends ConnectRecord<R>> implements BatchTransformation<R> {
+
+	private static final Logger log = LoggerFactory.getLogger(Router.class);
+
+	public static final String OVERVIEW_DOC = "Routing of the records to a topic, Splunk index or sourcetype by the first matching route";
+
+	public static final String ROUTES_CONFIG = "routes";
+	public static final String TOPIC_CONFIG = "topic";
+	public static final String INDEX_CONFIG = "index";
+	public static final String SOURCETYPE_CONFIG = "sourcetype";
+	public static final String INDEX_HEADER_CONFIG = "index.header";
+	public static final String SOURCETYPE_HEADER_CONFIG = "sourcetype.header";
+	public static final String UNMATCHED_CONFIG = "unmatched";
+	public static final String UNMATCHED_KEEP = "keep";
+	public static final String UNMATCHED_DISCARD = "discard";
+
+	/**
+	 * Configuration of a route, with the keys prefixed with
+	 * {@code routes.<name>.}: a condition as in {@link Filter} and what the
+	 * route sets.
+	 */
+	public static final ConfigDef ROUTE_CONFIG_DEF = new ConfigDef(Filter.CONDITION_CONFIG_DEF)
+			.define(TOPIC_CONFIG, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM, "Topic of the record")
+			.define(INDEX_CONFIG, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM, "Splunk index header value")
+			.define(SOURCETYPE_CONFIG, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM,
+					"Splunk sourcetype header value");
+
+	public static final ConfigDef CONFIG_DEF = new ConfigDef()
+			.define(ROUTES_CONFIG, ConfigDef.Type.LIST, ConfigDef.Importance.HIGH,
+					"Ordered list of route names, each configured with \"" + ROUTES_CONFIG + ".<name>.\" prefixed keys")
+			.define(INDEX_HEADER_CONFIG, ConfigDef.Type.STRING, "splunk.header.index", ConfigDef.Importance.LOW,
+					"Header key of the Splunk index")
+			.define(SOURCETYPE_HEADER_CONFIG, ConfigDef.Type.STRING, "splunk.header.sourcetype",
+					ConfigDef.Importance.LOW, "Header key of the Splunk sourcetype")
+			.define(UNMATCHED_CONFIG, ConfigDef.Type.STRING, UNMATCHED_KEEP,
+					ConfigDef.ValidString.in(UNMATCHED_KEEP, UNMATCHED_DISCARD), ConfigDef.Importance.MEDIUM,
+					"Whether the records matching no route are kept unchanged or discarded");
+
+	static final String METRIC_GROUP = "router-transform-metrics";
+
+	private RouteTable routes;
+	private boolean discardUnmatched;
+
+	private final TransformMetrics metrics = new TransformMetrics(METRIC_GROUP);
+	private final LongAdder recordsIn = this.metrics.counter("records-in-total", "Number of records processed");
+	private final LongAdder recordsUnmatched = this.metrics.counter("records-unmatched-total",
+			"Number of records matching no route");
+	private final TransformMetrics.LatencyHistogram applyLatency = this.metrics.latency("apply-latency",
+			"apply() latency in nanoseconds");
+
+	@Override
+	public void configure(Map<String, ?> props) {
+		log.info("Getting configuration for " + Router.class.getName() + " transformation...");
+
+		final SimpleConfig config = new SimpleConfig(CONFIG_DEF, props);
+		final List<String> routeNames = config.getList(ROUTES_CONFIG);
+		if (routeNames.isEmpty()) {
+			throw new RuntimeException("\"" + ROUTES_CONFIG + "\" configuration cannot be empty");
+		}
+
+		final List<RouteTable.Route> routes = new ArrayList<>(routeNames.size());
+		final Set<String> uniqueRouteNames = new HashSet<>();
+		for (String routeName : routeNames) {
+			final String prefix = ROUTES_CONFIG + "." + routeName + ".";
+			if (!uniqueRouteNames.add(routeName)) {
+				throw new RuntimeException("Config: route \"" + routeName + "\" is listed more than once in \""
+						+ ROUTES_CONFIG + "\"");
+			}
+			routes.add(route(routeName, prefix, new SimpleConfig(ROUTE_CONFIG_DEF, config.originalsWithPrefix(prefix)),
+					config));
+		}
+
+		this.routes = new RouteTable(routes);
+		this.discardUnmatched = UNMATCHED_DISCARD.equals(config.getString(UNMATCHED_CONFIG));
+		log.info("Metrics of " + Router.class.getName() + " transformation are published with the tags "
+				+ this.metrics.register());
+
+		log.info(Router.class.getName() + " transformation has been successfully configured with "
+				+ this.routes.size() + " routes.");
+	}
+
+	private static RouteTable.Route route(String name, String prefix, AbstractConfig routeConfig,
+			AbstractConfig config) {
+		String topic = routeConfig.getString(TOPIC_CONFIG);
+		String index = routeConfig.getString(INDEX_CONFIG);
+		String sourcetype = routeConfig.getString(SOURCETYPE_CONFIG);
+		if (topic == null && index == null && sourcetype == null) {
+			throw new RuntimeException("Config: route \"" + name + "\" sets none of \"" + prefix + TOPIC_CONFIG
+					+ "\", \"" + prefix + INDEX_CONFIG + "\" and \"" + prefix + SOURCETYPE_CONFIG + "\"");
+		}
+
+		List<Header> headers = new ArrayList<>(2);
+		if (index != null) {
+			headers.add(new InternedHeaders(config.getString(INDEX_HEADER_CONFIG), 1).header(index));
+		}
+		if (sourcetype != null) {
+			headers.add(new InternedHeaders(config.getString(SOURCETYPE_HEADER_CONFIG), 1).header(sourcetype));
+		}
+		return new RouteTable.Route(name, FilterCondition.configure(prefix, routeConfig), topic,
+				headers.toArray(new Header[0]));
+	}
+
+	@Override
+	public R apply(R record) {
+		final long start = System.nanoTime();
+		this.recordsIn.increment();
+
+		final R routedRecord = route(record);
+
+		this.applyLatency.record(System.nanoTime() - start);
+		return routedRecord;
+	}
+
+	/**
+	 * Routes the records of the batch in a single pass. The
+	 * {@code apply-latency} metrics record the average latency of the batch
+	 * records.
+	 */
+	@Override
+	public List<R> applyAll(List<R> records) {
+		final long start = System.nanoTime();
+		this.recordsIn.add(records.size());
+
+		final List<R> routedRecords = new ArrayList<>(records.size());
+		for (R record : records) {
+			final R routedRecord = route(record);
+			if (routedRecord != null) {
+				routedRecords.add(routedRecord);
+			}
+		}
+
+		if (!records.isEmpty()) {
+			this.applyLatency.record((System.nanoTime() - start) / records.size(), records.size());
+		}
+		return routedRecords;
+	}
+
+	private R route(R record) {
+		final RouteTable.Route route = this.routes.route(record);
+		if (route == null) {
+			this.recordsUnmatched.increment();
+			return this.discardUnmatched ? null : record;
+		}
+		return route.applyTo(record);
+	}
+
+	@Override
+	public void close() {
+		this.metrics.close();
+	}
+
+	@Override
+	public ConfigDef config() {
+		return CONFIG_DEF;
+	}
+}
@@ -7,7 +7,19 @@ package com.ibm.garage.kafka.connect.transforms;
 
 import static org.apache.kafka.connect.transforms.util.Requirements.requireMapOrNull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -15,19 +27,16 @@ import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.connect.connector.ConnectRecord;
 import org.apache.kafka.connect.data.Schema;
-import org.apache.kafka.connect.data.SchemaAndValue;
-import org.apache.kafka.connect.transforms.Transformation;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.header.Headers;
 import org.apache.kafka.connect.transforms.util.SimpleConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class Splunk<R extends ConnectRecord<R>> implements Transformation<R> {
+public class Splunk<R extends ConnectRecord<R>> implements BatchTransformation<R> {
 
 	private static final Logger log = LoggerFactory.getLogger(Splunk.class);
 
-	private static final String JSON_KEY_DELIMITER_REGEX = "\\.";
-	private static final String JSON_KEY_DELIMITER = ".";
-
 	public static final String OVERVIEW_DOC = "Transformation of JSON messages to Splunk format";
 
 	public static final String SOURCE_KEY_CONFIG = "source.key";
@@ -37,8 +46,36 @@ public class Splunk<R extends ConnectRecord<R>> implements Transformation<R> {
 	public static final String REGEX_PATTERN_CONFIG = "regex.pattern";
 	public static final String REGEX_FORMAT_CONFIG = "regex.format";
 	public static final String REGEX_DEFAULT_VALUE_CONFIG = "regex.defaultValue";
+	public static final String REGEX_OUTPUTS_CONFIG = "regex.outputs";
+	public static final String REGEX_OUTPUT_TO_HEADER_SUFFIX = ".toHeader";
+	public static final String REGEX_ENGINE_CONFIG = "regex.engine";
+	public static final String REGEX_ENGINE_JAVA = "java";
+	public static final String REGEX_ENGINE_LINEAR = "linear";
+	public static final String TIMESTAMP_FORMATS_CONFIG = "timestamp.formats";
+	public static final String TIMESTAMP_ZONE_CONFIG = "timestamp.zone";
+	public static final String RULES_CONFIG = "rules";
+	public static final String SCHEMA_CACHE_SIZE_CONFIG = "schema.cache.size";
+	public static final String TRACE_SAMPLE_RATE_CONFIG = "trace.sampleRate";
+	public static final String COPY_ON_WRITE_CONFIG = "value.copyOnWrite";
+	public static final String JSON_MODE_CONFIG = "json.mode";
+	public static final String JSON_MODE_SCAN = "scan";
+	public static final String JSON_MODE_MAP = "map";
+	public static final String REGEX_CACHE_SIZE_CONFIG = "regex.cache.size";
+	public static final String REGEX_CACHE_MAX_KEY_LENGTH_CONFIG = "regex.cache.maxKeyLength";
+	public static final String REGEX_BUDGET_CONFIG = "regex.budget";
+	public static final String HEADER_CACHE_SIZE_CONFIG = "header.cache.size";
+	public static final String BATCH_PARALLELISM_CONFIG = "batch.parallelism";
+	public static final String BATCH_PARALLEL_THRESHOLD_CONFIG = "batch.parallelThreshold";
+
+	static ConfigDef.Validator PatternValidator() {
+		return PatternValidator(REGEX_ENGINE_JAVA);
+	}
 
-	private static ConfigDef.Validator PatternValidator() {
+	/**
+	 * Validates a regex for a {@code regex.engine}, the linear one supporting
+	 * only a part of the syntax.
+	 */
+	static ConfigDef.Validator PatternValidator(String engine) {
 		return (regexKey, regexValue) -> {
 			try {
 				if (regexValue != null) {
@@ -47,12 +84,23 @@ public class Splunk<R extends ConnectRecord<R>> implements Transformation<R> {
 			} catch (PatternSyntaxException pe) {
 				throw new ConfigException(regexKey, regexValue, "Regex pattern is not in the correct form.");
 			}
+			try {
+				if (regexValue != null && REGEX_ENGINE_LINEAR.equals(engine)) {
+					LinearRegex.compile(String.valueOf(regexValue));
+				}
+			} catch (IllegalArgumentException e) {
+				throw new ConfigException(regexKey, regexValue, "Regex pattern is not supported by the \""
+						+ REGEX_ENGINE_LINEAR + "\" " + REGEX_ENGINE_CONFIG + ": " + e.getMessage());
+			}
 		};
 	}
 
-	public static final ConfigDef CONFIG_DEF = new ConfigDef()
-			.define(SOURCE_KEY_CONFIG, ConfigDef.Type.STRING, ConfigDef.NO_DEFAULT_VALUE, ConfigDef.Importance.MEDIUM,
-					"Source key")
+	/**
+	 * Configuration of a single rule. In the multi-rule mode these keys are
+	 * prefixed with {@code rules.<name>.}.
+	 */
+	public static final ConfigDef RULE_CONFIG_DEF = new ConfigDef()
+			.define(SOURCE_KEY_CONFIG, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM, "Source key")
 			.define(DEST_KEY_CONFIG, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM, "Destination key")
 			.define(DEST_TO_HEADER_CONFIG, ConfigDef.Type.BOOLEAN, Boolean.FALSE, ConfigDef.Importance.MEDIUM,
 					"To header key")
@@ -61,182 +109,466 @@ public class Splunk<R extends ConnectRecord<R>> implements Transformation<R> {
 			.define(REGEX_FORMAT_CONFIG, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM, "Regex format key")
 			.define(REGEX_DEFAULT_VALUE_CONFIG, ConfigDef.Type.STRING, null, ConfigDef.Importance.MEDIUM,
 					"Regex default value key")
+			.define(REGEX_OUTPUTS_CONFIG, ConfigDef.Type.LIST, "", ConfigDef.Importance.MEDIUM,
+					"Names of the values formatted from the same match as the " + REGEX_FORMAT_CONFIG + ", each written to"
+							+ " the field or header of its name with the \"" + REGEX_OUTPUTS_CONFIG
+							+ ".<name>\" format, to a header if \"" + REGEX_OUTPUTS_CONFIG + ".<name>"
+							+ REGEX_OUTPUT_TO_HEADER_SUFFIX + "\" is true")
+			.define(REGEX_ENGINE_CONFIG, ConfigDef.Type.STRING, REGEX_ENGINE_JAVA,
+					ConfigDef.ValidString.in(REGEX_ENGINE_JAVA, REGEX_ENGINE_LINEAR), ConfigDef.Importance.LOW,
+					"Regex engine: \"" + REGEX_ENGINE_JAVA + "\" for java.util.regex, \"" + REGEX_ENGINE_LINEAR
+							+ "\" for matching in linear time without backreferences, lookarounds nor repetitions of what may"
+							+ " match empty, a group repeated by other than '?' being its last iteration in the match")
+			.define(TIMESTAMP_FORMATS_CONFIG, ConfigDef.Type.LIST, null, ConfigDef.Importance.MEDIUM,
+					"Formats of the timestamp parsed from the source key, tried in order: \""
+							+ TimestampParser.ISO8601 + "\", \"" + TimestampParser.EPOCH + "\", \""
+							+ TimestampParser.EPOCH_MILLIS + "\" or DateTimeFormatter patterns")
+			.define(TIMESTAMP_ZONE_CONFIG, ConfigDef.Type.STRING, "UTC", ConfigDef.Importance.LOW,
+					"Time zone of the " + TIMESTAMP_FORMATS_CONFIG + " patterns without offset")
 			.define(SOURCE_PRESERVE_CONFIG, ConfigDef.Type.BOOLEAN, Boolean.FALSE, ConfigDef.Importance.MEDIUM,
 					"Preserve source key");
 
-	private static final String PURPOSE = "field value modification";
+	public static final ConfigDef CONFIG_DEF = new ConfigDef(RULE_CONFIG_DEF)
+			.define(RULES_CONFIG, ConfigDef.Type.LIST, "", ConfigDef.Importance.MEDIUM,
+					"Ordered list of rule names, each configured with \"" + RULES_CONFIG + ".<name>.\" prefixed keys")
+			.define(SCHEMA_CACHE_SIZE_CONFIG, ConfigDef.Type.INT, 16, ConfigDef.Range.atLeast(1),
+					ConfigDef.Importance.LOW, "Number of derived Struct schemas kept in the cache")
+			.define(TRACE_SAMPLE_RATE_CONFIG, ConfigDef.Type.INT, 0, ConfigDef.Range.atLeast(0),
+					ConfigDef.Importance.LOW, "Log the rule outcomes of 1 in N records, 0 to disable")
+			.define(COPY_ON_WRITE_CONFIG, ConfigDef.Type.BOOLEAN, Boolean.FALSE, ConfigDef.Importance.MEDIUM,
+					"Copy the modified nested maps and headers instead of changing the record value in place")
+			.define(JSON_MODE_CONFIG, ConfigDef.Type.STRING, JSON_MODE_SCAN,
+					ConfigDef.ValidString.in(JSON_MODE_SCAN, JSON_MODE_MAP), ConfigDef.Importance.LOW,
+					"How JSON values in bytes are read: \"" + JSON_MODE_SCAN + "\" to rewrite the bytes directly, \""
+							+ JSON_MODE_MAP + "\" to read them as a map parsing only the fields the rules touch")
+			.define(REGEX_CACHE_SIZE_CONFIG, ConfigDef.Type.INT, 0, ConfigDef.Range.atLeast(0),
+					ConfigDef.Importance.LOW,
+					"Number of " + REGEX_PATTERN_CONFIG + " results cached per rule by source.key value, 0 to disable")
+			.define(REGEX_CACHE_MAX_KEY_LENGTH_CONFIG, ConfigDef.Type.INT, 256, ConfigDef.Range.atLeast(1),
+					ConfigDef.Importance.LOW, "Maximum length of the source.key values whose result is cached")
+			.define(REGEX_BUDGET_CONFIG, ConfigDef.Type.LONG, 0L, ConfigDef.Range.atLeast(0),
+					ConfigDef.Importance.LOW, "Number of times the " + REGEX_PATTERN_CONFIG
+							+ " may read a value before it is considered as not matching, 0 for no limit")
+			.define(HEADER_CACHE_SIZE_CONFIG, ConfigDef.Type.INT, 1024, ConfigDef.Range.atLeast(0),
+					ConfigDef.Importance.LOW,
+					"Number of " + DEST_TO_HEADER_CONFIG + " values per rule whose header is shared by the records")
+			.define(BATCH_PARALLELISM_CONFIG, ConfigDef.Type.INT, 1, ConfigDef.Range.atLeast(1),
+					ConfigDef.Importance.LOW,
+					"Number of parts a batch of records is split into to be transformed in parallel, 1 to disable")
+			.define(BATCH_PARALLEL_THRESHOLD_CONFIG, ConfigDef.Type.INT, 1000, ConfigDef.Range.atLeast(2),
+					ConfigDef.Importance.LOW, "Minimum number of records of a batch transformed in parallel");
+
+	static final String METRIC_GROUP = "splunk-transform-metrics";
 
-	private String sourceKey;
-	private Boolean sourcePreserve;
-	private String destKey;
-	private Boolean destToHeader;
-	private String regexPattern;
-	private String regexFormat;
-	private String regexDefaultValue;
+	private static final String PURPOSE = "field value modification";
 
-	private Boolean isSourceKeyNested;
+	private List<SplunkRule> rules;
+	private KeyPathTrie sourceKeyParents;
+	private boolean[] resolveParentOnApply;
+	private StructRules structRules;
+	private JsonRules jsonRules;
+	private boolean timestampRules;
+	private boolean copyOnWrite;
+	private boolean jsonAsMap;
+	private int batchParallelism;
+	private int batchParallelThreshold;
+	private int traceSampleRate;
+	private int traceCountdown;
+	private final BiConsumer<SplunkRule, SplunkRule.Outcome> ruleOutcomes = this::ruleApplied;
+
+	private final TransformMetrics metrics = new TransformMetrics(METRIC_GROUP);
+	private final LongAdder recordsIn = this.metrics.counter("records-in-total", "Number of records processed");
+	private final LongAdder recordsModified = this.metrics.counter("records-modified-total",
+			"Number of records modified by at least one rule");
+	private final LongAdder recordsEmpty = this.metrics.counter("records-empty-total",
+			"Number of records returned unchanged since their value is null or empty");
+	private final LongAdder[] ruleOutcomeCounters = outcomeCounters(this.metrics);
+	private final LongAdder rulesMovedToHeader = this.metrics.counter("rule-moved-to-header-total",
+			"Number of rule values moved to a header");
+	private final LongAdder regexCacheHits = this.metrics.counter("regex-cache-hit-total",
+			"Number of " + REGEX_PATTERN_CONFIG + " results found in the cache");
+	private final LongAdder regexCacheMisses = this.metrics.counter("regex-cache-miss-total",
+			"Number of " + REGEX_PATTERN_CONFIG + " results computed with the cache enabled");
+	private final LongAdder regexBudgetExceeded = this.metrics.counter("regex-budget-exceeded-total",
+			"Number of values considered as not matching since the " + REGEX_PATTERN_CONFIG
+					+ " exceeded its budget");
+	private final TransformMetrics.LatencyHistogram applyLatency = this.metrics.latency("apply-latency",
+			"apply() latency in nanoseconds");
+
+	private static LongAdder[] outcomeCounters(TransformMetrics metrics) {
+		final LongAdder[] counters = new LongAdder[SplunkRule.Outcome.values().length];
+		for (SplunkRule.Outcome outcome : SplunkRule.Outcome.values()) {
+			counters[outcome.ordinal()] = metrics.counter(
+					"rule-" + outcome.name().toLowerCase(Locale.ROOT).replace('_', '-') + "-total",
+					"Number of rule applications: " + outcome.description);
+		}
+		return counters;
+	}
 
 	@Override
 	public void configure(Map<String, ?> props) {
 		log.info("Getting configuration for " + Splunk.class.getName() + " transformation...");
 
 		final SimpleConfig config = new SimpleConfig(CONFIG_DEF, props);
+		final List<String> ruleNames = config.getList(RULES_CONFIG);
+		final int regexCacheSize = config.getInt(REGEX_CACHE_SIZE_CONFIG);
+		final int regexCacheMaxKeyLength = config.getInt(REGEX_CACHE_MAX_KEY_LENGTH_CONFIG);
+		final SplunkRule.Options ruleOptions = new SplunkRule.Options(
+				() -> regexCacheSize == 0 ? null
+						: new RegexResultCache(regexCacheSize, regexCacheMaxKeyLength, this.regexCacheHits,
+								this.regexCacheMisses),
+				config.getInt(HEADER_CACHE_SIZE_CONFIG), config.getLong(REGEX_BUDGET_CONFIG),
+				this.regexBudgetExceeded);
+
+		if (ruleNames.isEmpty()) {
+			this.rules = Collections.singletonList(SplunkRule.configure("", config, ruleOptions));
+		} else {
+			// a rule key without prefix would be silently ignored
+			for (String ruleKey : RULE_CONFIG_DEF.names()) {
+				if (props.containsKey(ruleKey)) {
+					throw new RuntimeException("Config: \"" + ruleKey + "\" cannot be combined with \""
+							+ RULES_CONFIG + "\", configure it for each rule instead");
+				}
+			}
+			if (!config.originalsWithPrefix(REGEX_OUTPUTS_CONFIG + ".").isEmpty()) {
+				throw new RuntimeException("Config: \"" + REGEX_OUTPUTS_CONFIG + ".*\" cannot be combined with \""
+						+ RULES_CONFIG + "\", configure it for each rule instead");
+			}
 
-		this.sourceKey = config.getString(SOURCE_KEY_CONFIG);
-		if (this.sourceKey == null || this.sourceKey.isEmpty()) {
-			throw new RuntimeException("\"" + SOURCE_KEY_CONFIG + "\" configuration cannot be neither null nor empty");
+			final List<SplunkRule> rules = new ArrayList<>(ruleNames.size());
+			final Set<String> uniqueRuleNames = new HashSet<>();
+			for (String ruleName : ruleNames) {
+				final String prefix = RULES_CONFIG + "." + ruleName + ".";
+				if (!uniqueRuleNames.add(ruleName)) {
+					throw new RuntimeException("Config: rule \"" + ruleName + "\" is listed more than once in \""
+							+ RULES_CONFIG + "\"");
+				}
+				rules.add(SplunkRule.configure(prefix,
+						new SimpleConfig(RULE_CONFIG_DEF, config.originalsWithPrefix(prefix)), ruleOptions));
+			}
+			this.rules = rules;
 		}
-		this.isSourceKeyNested = isNested(this.sourceKey);
 
-		this.destKey = config.getString(DEST_KEY_CONFIG);
-		this.destToHeader = config.getBoolean(DEST_TO_HEADER_CONFIG);
-		this.regexPattern = config.getString(REGEX_PATTERN_CONFIG);
-		this.regexFormat = config.getString(REGEX_FORMAT_CONFIG);
-		this.regexDefaultValue = config.getString(REGEX_DEFAULT_VALUE_CONFIG);
-		this.sourcePreserve = config.getBoolean(SOURCE_PRESERVE_CONFIG);
+		final List<KeyPath> sourceKeyPaths = new ArrayList<>(this.rules.size());
+		final Set<String> destKeys = new HashSet<>();
+		this.resolveParentOnApply = new boolean[this.rules.size()];
+		for (int i = 0; i < this.rules.size(); i++) {
+			final SplunkRule rule = this.rules.get(i);
+			sourceKeyPaths.add(rule.sourceKeyPath());
+			// a dest.key written (or moved to headers) by a previous rule may replace
+			// the root object this rule descends into
+			this.resolveParentOnApply[i] = rule.sourceKeyPath().isNested()
+					&& destKeys.contains(rule.sourceKeyPath().segment(0));
+			if (rule.destKey() != null) {
+				destKeys.add(rule.destKey());
+			}
+			for (int k = 0; k < rule.outputCount(); k++) {
+				if (!rule.outputToHeader(k)) {
+					destKeys.add(rule.outputName(k));
+				}
+			}
+		}
+		this.sourceKeyParents = KeyPathTrie.compile(sourceKeyPaths);
+		this.structRules = new StructRules(this.rules, config.getInt(SCHEMA_CACHE_SIZE_CONFIG));
+		this.jsonRules = new JsonRules(this.rules);
+		this.timestampRules = this.rules.stream().anyMatch(SplunkRule::isTimestamp);
+		this.copyOnWrite = config.getBoolean(COPY_ON_WRITE_CONFIG);
+		this.jsonAsMap = JSON_MODE_MAP.equals(config.getString(JSON_MODE_CONFIG));
+		this.batchParallelism = config.getInt(BATCH_PARALLELISM_CONFIG);
+		this.batchParallelThreshold = config.getInt(BATCH_PARALLEL_THRESHOLD_CONFIG);
+		this.traceSampleRate = config.getInt(TRACE_SAMPLE_RATE_CONFIG);
+		this.traceCountdown = this.traceSampleRate;
+		log.info("Metrics of " + Splunk.class.getName() + " transformation are published with the tags "
+				+ this.metrics.register());
+
+		log.info(Splunk.class.getName() + " transformation has been successfully configured.");
+	}
+
+	@Override
+	public R apply(R record) {
+		final long start = System.nanoTime();
+		this.recordsIn.increment();
+
+		final R transformedRecord = applySampled(record, null);
+
+		this.applyLatency.record(System.nanoTime() - start);
+		return transformedRecord;
+	}
 
-		if (this.regexPattern == null && this.regexFormat != null) {
-			throw new RuntimeException(
-					"Format: \"" + REGEX_FORMAT_CONFIG + "\" is configured but the regex is missing");
+	/**
+	 * Applies the rules to the batch in a single loop, the per-record setup is
+	 * done once for the batch. The {@code apply-latency} metrics record the
+	 * average latency of the batch records.
+	 * <p>
+	 * A batch of at least {@value #BATCH_PARALLEL_THRESHOLD_CONFIG} records is
+	 * split into {@value #BATCH_PARALLELISM_CONFIG} contiguous parts transformed
+	 * in parallel, in the {@link BatchPool}. The records are returned in the
+	 * same order and the same records are traced. If a record cannot be
+	 * transformed, the exception is thrown once all the parts are done.
+	 */
+	@Override
+	public List<R> applyAll(List<R> records) {
+		final long start = System.nanoTime();
+		this.recordsIn.add(records.size());
+
+		final List<R> transformedRecords;
+		if (this.batchParallelism > 1 && records.size() >= this.batchParallelThreshold) {
+			transformedRecords = applyInParallel(records);
+		} else {
+			final Map<String, Object>[] parentValueMaps = this.sourceKeyParents.newParents();
+			transformedRecords = new ArrayList<>(records.size());
+			for (R record : records) {
+				transformedRecords.add(applySampled(record, parentValueMaps));
+			}
 		}
 
-		if (this.regexFormat == null && this.regexPattern != null) {
-			throw new RuntimeException(
-					"Regex: \"" + REGEX_FORMAT_CONFIG + "\" is configured but the format is missing");
+		if (!records.isEmpty()) {
+			this.applyLatency.record((System.nanoTime() - start) / records.size(), records.size());
 		}
+		return transformedRecords;
+	}
 
-		if (this.regexDefaultValue != null && this.regexPattern == null) {
-			throw new RuntimeException("Regex: \"" + REGEX_DEFAULT_VALUE_CONFIG
-					+ "\" is configured but the regex format or pattern is missing");
+	private List<R> applyInParallel(List<R> records) {
+		final int size = records.size();
+		// the records sampled by the trace countdown, as if applied one by one
+		final int firstTraced = this.traceSampleRate > 0 ? this.traceCountdown - 1 : size;
+		if (this.traceSampleRate > 0) {
+			this.traceCountdown = size < this.traceCountdown ? this.traceCountdown - size
+					: this.traceSampleRate - (size - this.traceCountdown) % this.traceSampleRate;
 		}
 
-		if (this.sourcePreserve && this.destKey == null) {
-			throw new RuntimeException("Config: \"" + SOURCE_PRESERVE_CONFIG + "\" is only applicable if \""
-					+ DEST_KEY_CONFIG + "\" is specified");
+		final R[] transformedRecords = newRecords(size);
+		final int partSize = (size + this.batchParallelism - 1) / this.batchParallelism;
+		final List<ForkJoinTask<?>> parts = new ArrayList<>(this.batchParallelism);
+		for (int from = partSize; from < size; from += partSize) {
+			final int partFrom = from;
+			parts.add(BatchPool.POOL.submit(() -> applyPart(records, transformedRecords, partFrom,
+					Math.min(partFrom + partSize, size), firstTraced)));
 		}
 
-		if (this.sourceKey.equals(this.destKey)) {
-			throw new RuntimeException("Config: \"" + SOURCE_KEY_CONFIG + "\" and \"" + DEST_KEY_CONFIG
-					+ "\" cannot point to the same field");
+		// the first part is transformed by the calling thread
+		RuntimeException failure = null;
+		try {
+			applyPart(records, transformedRecords, 0, Math.min(partSize, size), firstTraced);
+		} catch (RuntimeException e) {
+			failure = e;
+		}
+		for (ForkJoinTask<?> part : parts) {
+			try {
+				part.join();
+			} catch (RuntimeException e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
 		}
 
-		log.info(Splunk.class.getName() + " transformation has been successfully configured.");
+		return Arrays.asList(transformedRecords);
 	}
 
-	@Override
-	public R apply(R record) {
-		log.debug("Processing a record...");
-		final Map<String, Object> rootValueMap = requireMapOrNull(record.value(), PURPOSE);
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private R[] newRecords(int size) {
+		return (R[]) new ConnectRecord[size];
+	}
 
-		if (rootValueMap != null && !rootValueMap.isEmpty()) {
-			Map<String, Object> ctxValueMap = rootValueMap;
-			String ctxKey = this.sourceKey;
+	private void applyPart(List<R> records, R[] transformedRecords, int from, int to, int firstTraced) {
+		final Map<String, Object>[] parentValueMaps = this.sourceKeyParents.newParents();
+		for (int i = from; i < to; i++) {
+			final boolean traced = i >= firstTraced && (i - firstTraced) % this.traceSampleRate == 0;
+			transformedRecords[i] = applyTraced(records.get(i), parentValueMaps, traced);
+		}
+	}
 
-			if (this.isSourceKeyNested) {
-				ctxKey = getLastNestedKey(this.sourceKey);
-				ctxValueMap = getNestedValueMap(this.sourceKey, rootValueMap);
+	private R applySampled(R record, Map<String, Object>[] parentValueMaps) {
+		if (this.traceSampleRate > 0 && --this.traceCountdown <= 0) {
+			this.traceCountdown = this.traceSampleRate;
+			return applyTraced(record, parentValueMaps, true);
+		}
+		return applyRules(record, parentValueMaps, null);
+	}
 
-				if (ctxValueMap == null || ctxValueMap.isEmpty()) {
-					log.debug("The record has been returned unchanged. Nested object is not found.");
-					return record;
-				}
+	private R applyTraced(R record, Map<String, Object>[] parentValueMaps, boolean traced) {
+		if (!traced) {
+			return applyRules(record, parentValueMaps, null);
+		}
+
+		final StringBuilder trace = new StringBuilder("Trace of a record from ").append(record.topic()).append('-')
+				.append(record.kafkaPartition()).append(':');
+		final R transformedRecord = applyRules(record, parentValueMaps, trace);
+		log.info(trace.toString());
+		return transformedRecord;
+	}
+
+	/**
+	 * @param parentValueMaps reused to resolve the {@code source.key} parents,
+	 *                        {@code null} to allocate them for the record
+	 * @param trace           the decision path is appended to it, {@code null}
+	 *                        unless the record is sampled for tracing
+	 */
+	private R applyRules(R record, Map<String, Object>[] parentValueMaps, StringBuilder trace) {
+		if (record.value() instanceof Struct) {
+			return applyWithSchema(record, trace);
+		}
+		if (record.value() instanceof byte[]) {
+			return this.jsonAsMap
+					? applyToMap(record, LazyJsonMap.of((byte[]) record.value()), parentValueMaps, trace)
+					: applyToJson(record, trace);
+		}
+		return applyToMap(record, requireMapOrNull(record.value(), PURPOSE), parentValueMaps, trace);
+	}
+
+	private R applyToMap(R record, Map<String, Object> rootValueMap, Map<String, Object>[] parentValueMaps,
+			StringBuilder trace) {
+		if (rootValueMap == null || rootValueMap.isEmpty()) {
+			this.recordsEmpty.increment();
+			if (trace != null) {
+				trace.append(" the record has been returned unchanged since it is empty.");
 			}
+			return record;
+		}
 
-			if (ctxValueMap.containsKey(ctxKey)) {
-				Object valueObject = ctxValueMap.get(ctxKey);
-
-				if (!(valueObject instanceof Map)) {
-					String value = String.valueOf(valueObject);
-
-					if (this.regexPattern != null) {
-						if (value.matches(this.regexPattern)) {
-							value = value.replaceAll(this.regexPattern, this.regexFormat);
-						} else if (this.regexDefaultValue != null) {
-							value = this.regexDefaultValue;
-						} else {
-							log.debug(
-									"The record has been returned unchanged because the " + REGEX_PATTERN_CONFIG + " does not match and there is no " + REGEX_DEFAULT_VALUE_CONFIG + " specified.");
-							return record;
-						}
-					}
-
-					if (this.destKey != null) {
-						rootValueMap.put(this.destKey, value);
-						if (!this.sourcePreserve) {
-							ctxValueMap.remove(ctxKey);
-						}
-						ctxKey = this.destKey;
-						ctxValueMap = rootValueMap;
-					} else {
-						ctxValueMap.put(ctxKey, value);
-					}
-
-					if (this.destToHeader) {
-						record.headers().remove(ctxKey);
-						record.headers().add(ctxKey, new SchemaAndValue(Schema.STRING_SCHEMA, ctxValueMap.get(ctxKey)));
-						ctxValueMap.remove(ctxKey);
-					}
-
-					log.debug("The record has been modified.");
-					return newRecord(record);
+		if (parentValueMaps == null) {
+			parentValueMaps = this.sourceKeyParents.newParents();
+		}
+		this.sourceKeyParents.resolveParents(rootValueMap, parentValueMaps);
+
+		final CopyOnWriteValue valueCopy = this.copyOnWrite ? new CopyOnWriteValue(rootValueMap, record.headers())
+				: null;
+		final SplunkRule.RecordTimestamp timestamp = newRecordTimestamp();
+
+		boolean modified = false;
+		for (int i = 0; i < this.rules.size(); i++) {
+			final SplunkRule rule = this.rules.get(i);
+			// once copied, the parents resolved from the original value are stale
+			final Map<String, Object> valueMap = valueCopy != null ? valueCopy.currentValueMap() : rootValueMap;
+			final Headers headers = valueCopy != null ? valueCopy.currentHeaders() : record.headers();
+			final Object sourceValue = trace != null ? rule.sourceValue(valueMap) : null;
+			final SplunkRule.Outcome outcome = this.resolveParentOnApply[i] || valueMap != rootValueMap
+					? rule.apply(valueMap, rule.sourceKeyPath().parent(valueMap), headers, valueCopy, timestamp)
+					: rule.apply(rootValueMap, parentValueMaps[i], headers, valueCopy, timestamp);
+
+			modified |= outcome.modified;
+			ruleApplied(rule, outcome);
+			if (trace != null) {
+				traceRule(trace, rule, outcome);
+				trace.append(" \"").append(sourceValue).append('"');
+				if (outcome.modified) {
+					trace.append(" -> \"").append(rule.isTimestamp() && !rule.destToHeader() ? timestamp.millis
+							: rule.resultValue(valueCopy != null ? valueCopy.currentValueMap() : rootValueMap,
+									valueCopy != null ? valueCopy.currentHeaders() : record.headers()))
+							.append('"');
 				}
-				log.debug("The record has been returned unchanged. " + SOURCE_KEY_CONFIG + " field points to the object.");
-				return record;
 			}
-			log.debug("The record has been returned unchanged. Nested " + SOURCE_KEY_CONFIG + " field is not found.");
-			return record;
+		}
 
+		if (modified) {
+			this.recordsModified.increment();
+			final Map<String, Object> updatedValueMap = valueCopy != null ? valueCopy.currentValueMap()
+					: rootValueMap;
+			return newRecord(record, record.valueSchema(),
+					record.value() instanceof byte[] ? LazyJsonMap.toJson(updatedValueMap) : updatedValueMap,
+					valueCopy != null ? valueCopy.currentHeaders() : record.headers(), timestamp);
 		}
-		log.debug("The record has been returned unchanged since it is empty.");
 		return record;
 	}
 
-	@Override
-	public void close() {
-	}
+	private R applyWithSchema(R record, StringBuilder trace) {
+		final Struct value = (Struct) record.value();
+		// Struct values are never changed in place, only the headers are
+		final Headers headers = this.copyOnWrite ? record.headers().duplicate() : record.headers();
+		final SplunkRule.RecordTimestamp timestamp = newRecordTimestamp();
+		final Struct updatedValue = this.structRules.apply(value, headers, ruleOutcomes(trace), timestamp);
 
-	@Override
-	public ConfigDef config() {
-		return CONFIG_DEF;
+		if (updatedValue != null) {
+			this.recordsModified.increment();
+			return newRecord(record, updatedValue.schema(), updatedValue, headers, timestamp);
+		}
+		if (timestamp != null && timestamp.applied) {
+			this.recordsModified.increment();
+			return newRecord(record, record.valueSchema(), value, headers, timestamp);
+		}
+		return record;
 	}
 
-	private R newRecord(R record) {
-		return record.newRecord(record.topic(), record.kafkaPartition(), record.keySchema(), record.key(),
-				record.valueSchema(), record.value(), record.timestamp(), record.headers());
+	private R applyToJson(R record, StringBuilder trace) {
+		final JsonRules.Document document = this.jsonRules.scan((byte[]) record.value());
+
+		if (document.isEmpty()) {
+			this.recordsEmpty.increment();
+			if (trace != null) {
+				trace.append(" the record has been returned unchanged since it is empty.");
+			}
+			return record;
+		}
+
+		// the JSON bytes are never changed in place, only the headers are
+		final Headers headers = this.copyOnWrite ? record.headers().duplicate() : record.headers();
+		final SplunkRule.RecordTimestamp timestamp = newRecordTimestamp();
+		final byte[] updatedValue = this.jsonRules.apply(document, headers, ruleOutcomes(trace), timestamp);
+
+		if (updatedValue != null || (timestamp != null && timestamp.applied)) {
+			this.recordsModified.increment();
+			return newRecord(record, record.valueSchema(), updatedValue != null ? updatedValue : record.value(),
+					headers, timestamp);
+		}
+		return record;
 	}
 
-	private boolean isNested(String key) {
-		return key.contains(JSON_KEY_DELIMITER);
+	private BiConsumer<SplunkRule, SplunkRule.Outcome> ruleOutcomes(StringBuilder trace) {
+		return trace == null ? this.ruleOutcomes : (rule, outcome) -> {
+			ruleApplied(rule, outcome);
+			traceRule(trace, rule, outcome);
+		};
 	}
 
-	private String getLastNestedKey(String dottedKey) {
-		String[] splittedKeys = dottedKey.split(JSON_KEY_DELIMITER_REGEX);
-		return splittedKeys[splittedKeys.length - 1];
+	private void ruleApplied(SplunkRule rule, SplunkRule.Outcome outcome) {
+		this.ruleOutcomeCounters[outcome.ordinal()].increment();
+		if (outcome.modified && rule.destToHeader()) {
+			this.rulesMovedToHeader.increment();
+		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private Map<String, Object> getNestedValueMap(String dottedKey, Map<String, Object> valueMap) {
-		String[] splittedKeys = dottedKey.split(JSON_KEY_DELIMITER_REGEX);
+	private static void traceRule(StringBuilder trace, SplunkRule rule, SplunkRule.Outcome outcome) {
+		trace.append(" rule \"").append(rule).append("\" ").append(outcome.description);
+	}
 
-		if (splittedKeys.length == 1) {
-			return valueMap;
-		}
+	@Override
+	public void close() {
+		this.metrics.close();
+	}
 
-		Map<String, Object> nestedValueMap = valueMap;
+	/**
+	 * Pool of daemon threads shared by all the instances to transform the
+	 * batches in parallel, bounded to the number of processors.
+	 */
+	private static final class BatchPool {
+		static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+			final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("splunk-transform-batch-" + thread.getPoolIndex());
+			thread.setDaemon(true);
+			return thread;
+		}, null, false);
+	}
 
-		for (int i = 0; i < splittedKeys.length - 1; i++) {
-			Object value = nestedValueMap.get(splittedKeys[i]);
-			if (value == null) {
-				return null;
-			}
+	@Override
+	public ConfigDef config() {
+		return CONFIG_DEF;
+	}
 
-			if (value instanceof Map) {
-				nestedValueMap = (Map<String, Object>) value;
-			} else {
-				return null;
-			}
-		}
+	/**
+	 * Returns {@code null} if none of the rules parses a timestamp.
+	 */
+	private SplunkRule.RecordTimestamp newRecordTimestamp() {
+		return this.timestampRules ? new SplunkRule.RecordTimestamp() : null;
+	}
 
-		return nestedValueMap;
+	private R newRecord(R record, Schema valueSchema, Object value, Headers headers,
+			SplunkRule.RecordTimestamp timestamp) {
+		return record.newRecord(record.topic(), record.kafkaPartition(), record.keySchema(), record.key(),
+				valueSchema, value, timestamp != null && timestamp.isSet() ? Long.valueOf(timestamp.millis) : record.timestamp(),
+				headers);
 	}
 }
@@ -0,0 +1,573 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import static com.ibm.garage.kafka.connect.transforms.Splunk.DEST_KEY_CONFIG;
+import static com.ibm.garage.kafka.connect.transforms.Splunk.DEST_TO_HEADER_CONFIG;
+import static com.ibm.garage.kafka.connect.transforms.Splunk.REGEX_DEFAULT_VALUE_CONFIG;
+import static com.ibm.garage.kafka.connect.transforms.Splunk.REGEX_ENGINE_CONFIG;
+import static com.ibm.garage.kafka.connect.transforms.Splunk.REGEX_ENGINE_LINEAR;
+import static com.ibm.garage.kafka.connect.transforms.Splunk.REGEX_FORMAT_CONFIG;
+import static com.ibm.garage.kafka.connect.transforms.Splunk.REGEX_OUTPUTS_CONFIG;
+import static com.ibm.garage.kafka.connect.transforms.Splunk.REGEX_OUTPUT_TO_HEADER_SUFFIX;
+import static com.ibm.garage.kafka.connect.transforms.Splunk.REGEX_PATTERN_CONFIG;
+import static com.ibm.garage.kafka.connect.transforms.Splunk.SOURCE_KEY_CONFIG;
+import static com.ibm.garage.kafka.connect.transforms.Splunk.SOURCE_PRESERVE_CONFIG;
+import static com.ibm.garage.kafka.connect.transforms.Splunk.TIMESTAMP_FORMATS_CONFIG;
+import static com.ibm.garage.kafka.connect.transforms.Splunk.TIMESTAMP_ZONE_CONFIG;
+
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.kafka.common.config.AbstractConfig;
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.header.Header;
+import org.apache.kafka.connect.header.Headers;
+
+/**
+ * One {@code source.key}/{@code dest.key}/{@code regex.*} rule of the
+ * {@link Splunk} transformation, validated and compiled once.
+ * <p>
+ * The {@code regex.outputs} of a rule are formatted from the same match as
+ * its {@code regex.format} and written to root fields or headers named after
+ * them. Without {@code regex.format}, the rule only writes its outputs and
+ * leaves the {@code source.key} field unchanged.
+ */
+final class SplunkRule {
+
+	enum Outcome {
+		MODIFIED(true, "The record has been modified."),
+		DEFAULTED(true, "The " + REGEX_PATTERN_CONFIG + " does not match, the record has been modified with the "
+				+ REGEX_DEFAULT_VALUE_CONFIG + "."),
+		NESTED_OBJECT_NOT_FOUND(false, "Nested object is not found."),
+		SOURCE_KEY_NOT_FOUND(false, "Nested " + SOURCE_KEY_CONFIG + " field is not found."),
+		SOURCE_KEY_POINTS_TO_OBJECT(false, SOURCE_KEY_CONFIG + " field points to the object."),
+		REGEX_NOT_MATCHED(false, "The " + REGEX_PATTERN_CONFIG + " does not match and there is no "
+				+ REGEX_DEFAULT_VALUE_CONFIG + " specified."),
+		TIMESTAMP_NOT_PARSED(false, "The " + SOURCE_KEY_CONFIG + " value does not match any of the "
+				+ TIMESTAMP_FORMATS_CONFIG + ".");
+
+		final boolean modified;
+		final String description;
+
+		Outcome(boolean modified, String description) {
+			this.modified = modified;
+			this.description = description;
+		}
+	}
+
+	/**
+	 * Settings of the transformation shared by its rules.
+	 */
+	static final class Options {
+		final Supplier<RegexResultCache> regexCaches;
+		final int headerCacheSize;
+		final long regexBudget;
+		final LongAdder regexBudgetExceeded;
+
+		/**
+		 * @param regexCaches         creates the cache of the
+		 *                            {@code regex.pattern} results of a rule,
+		 *                            returns {@code null} if they are not cached
+		 * @param headerCacheSize     number of {@code dest.toHeader} values of a
+		 *                            rule whose header is shared by the records
+		 * @param regexBudget         see {@link RegexFormatter}, 0 for no limit
+		 * @param regexBudgetExceeded counts the values on which the regex budget
+		 *                            is exceeded
+		 */
+		Options(Supplier<RegexResultCache> regexCaches, int headerCacheSize, long regexBudget,
+				LongAdder regexBudgetExceeded) {
+			this.regexCaches = regexCaches;
+			this.headerCacheSize = headerCacheSize;
+			this.regexBudget = regexBudget;
+			this.regexBudgetExceeded = regexBudgetExceeded;
+		}
+	}
+
+	/**
+	 * The record timestamp set by the timestamp rules applied to a record, the
+	 * last one winning, and whether any of them applied (possibly writing a
+	 * header instead).
+	 */
+	static final class RecordTimestamp {
+		long millis = Timestamps.INVALID;
+		boolean applied;
+
+		boolean isSet() {
+			return this.millis != Timestamps.INVALID;
+		}
+	}
+
+	private final String name;
+	private final KeyPath sourceKeyPath;
+	private final boolean sourcePreserve;
+	private final String destKey;
+	private final boolean destToHeader;
+	private final RegexFormatter regexFormatter;
+	private final RegexResultCache regexCache;
+	private final String regexDefaultValue;
+	private final TimestampParser timestampParser;
+	private final InternedHeaders headers;
+	private final boolean formatsSource;
+	private final String[] outputNames;
+	// null for the outputs written to the value
+	private final InternedHeaders[] outputHeaders;
+	private final boolean headerOutputs;
+
+	private SplunkRule(String name, KeyPath sourceKeyPath, boolean sourcePreserve, String destKey,
+			boolean destToHeader, RegexFormatter regexFormatter, RegexResultCache regexCache,
+			String regexDefaultValue, TimestampParser timestampParser, boolean formatsSource, String[] outputNames,
+			boolean[] outputsToHeader, int headerCacheSize) {
+		this.name = name;
+		this.sourceKeyPath = sourceKeyPath;
+		this.sourcePreserve = sourcePreserve;
+		this.destKey = destKey;
+		this.destToHeader = destToHeader;
+		this.regexFormatter = regexFormatter;
+		this.regexCache = regexCache;
+		this.regexDefaultValue = regexDefaultValue;
+		this.timestampParser = timestampParser;
+		// the timestamps of the records hardly repeat, they are not worth sharing
+		this.headers = destToHeader ? new InternedHeaders(destKey != null ? destKey : sourceKeyPath.leaf(),
+				timestampParser != null ? 0 : headerCacheSize) : null;
+		this.formatsSource = formatsSource;
+		this.outputNames = outputNames;
+		this.outputHeaders = new InternedHeaders[outputNames.length];
+		boolean headerOutputs = false;
+		for (int i = 0; i < outputNames.length; i++) {
+			if (outputsToHeader[i]) {
+				this.outputHeaders[i] = new InternedHeaders(outputNames[i], headerCacheSize);
+				headerOutputs = true;
+			}
+		}
+		this.headerOutputs = headerOutputs;
+	}
+
+	/**
+	 * @param prefix prefix of the rule configuration keys, used in error messages
+	 *               (empty for the single rule mode)
+	 */
+	static SplunkRule configure(String prefix, AbstractConfig config, Options options) {
+		String sourceKey = config.getString(SOURCE_KEY_CONFIG);
+		if (sourceKey == null || sourceKey.isEmpty()) {
+			throw new RuntimeException(
+					"\"" + prefix + SOURCE_KEY_CONFIG + "\" configuration cannot be neither null nor empty");
+		}
+
+		String destKey = config.getString(DEST_KEY_CONFIG);
+		Boolean destToHeader = config.getBoolean(DEST_TO_HEADER_CONFIG);
+		String regexPattern = config.getString(REGEX_PATTERN_CONFIG);
+		String regexFormat = config.getString(REGEX_FORMAT_CONFIG);
+		String regexDefaultValue = config.getString(REGEX_DEFAULT_VALUE_CONFIG);
+		String regexEngine = config.getString(REGEX_ENGINE_CONFIG);
+		List<String> timestampFormats = config.getList(TIMESTAMP_FORMATS_CONFIG);
+		List<String> outputNames = config.getList(REGEX_OUTPUTS_CONFIG);
+		Boolean sourcePreserve = config.getBoolean(SOURCE_PRESERVE_CONFIG);
+
+		if (regexPattern == null && regexFormat != null) {
+			throw new RuntimeException(
+					"Format: \"" + prefix + REGEX_FORMAT_CONFIG + "\" is configured but the regex is missing");
+		}
+
+		if (regexFormat == null && regexPattern != null && outputNames.isEmpty()) {
+			throw new RuntimeException(
+					"Regex: \"" + prefix + REGEX_FORMAT_CONFIG + "\" is configured but the format is missing");
+		}
+
+		if (regexDefaultValue != null && regexPattern == null) {
+			throw new RuntimeException("Regex: \"" + prefix + REGEX_DEFAULT_VALUE_CONFIG
+					+ "\" is configured but the regex format or pattern is missing");
+		}
+
+		if (!outputNames.isEmpty()) {
+			if (regexPattern == null) {
+				throw new RuntimeException(
+						"Regex: \"" + prefix + REGEX_OUTPUTS_CONFIG + "\" is configured but the regex is missing");
+			}
+			if (timestampFormats != null) {
+				throw new RuntimeException("Config: \"" + prefix + REGEX_OUTPUTS_CONFIG + "\" cannot be combined with \""
+						+ prefix + TIMESTAMP_FORMATS_CONFIG + "\"");
+			}
+			if (regexFormat == null && (destKey != null || destToHeader || regexDefaultValue != null)) {
+				throw new RuntimeException("Config: \"" + prefix + DEST_KEY_CONFIG + "\", \"" + prefix
+						+ DEST_TO_HEADER_CONFIG + "\" and \"" + prefix + REGEX_DEFAULT_VALUE_CONFIG
+						+ "\" are only applicable with \"" + prefix + REGEX_FORMAT_CONFIG + "\" if \"" + prefix
+						+ REGEX_OUTPUTS_CONFIG + "\" is configured");
+			}
+		}
+
+		if (sourcePreserve && destKey == null) {
+			throw new RuntimeException("Config: \"" + prefix + SOURCE_PRESERVE_CONFIG + "\" is only applicable if \""
+					+ prefix + DEST_KEY_CONFIG + "\" is specified");
+		}
+
+		// dest.key is a root key, a dot in it is not a nesting
+		KeyPath sourceKeyPath = KeyPath.parse(sourceKey);
+		if (destKey != null && sourceKeyPath.equals(KeyPath.of(destKey))) {
+			throw new RuntimeException("Config: \"" + prefix + SOURCE_KEY_CONFIG + "\" and \"" + prefix
+					+ DEST_KEY_CONFIG + "\" cannot point to the same field");
+		}
+
+		TimestampParser timestampParser = null;
+		if (timestampFormats != null) {
+			timestampParser = timestampParser(prefix, config, timestampFormats);
+			if (destKey != null && !destToHeader) {
+				throw new RuntimeException("Config: \"" + prefix + DEST_KEY_CONFIG + "\" of a timestamp rule is only "
+						+ "applicable if \"" + prefix + DEST_TO_HEADER_CONFIG + "\" is true");
+			}
+		}
+
+		List<String> outputFormats = new ArrayList<>(outputNames.size());
+		boolean[] outputsToHeader = new boolean[outputNames.size()];
+		readOutputs(prefix, config, outputNames, outputFormats, outputsToHeader);
+
+		RegexFormatter regexFormatter = null;
+		RegexResultCache regexCache = null;
+		if (regexPattern != null) {
+			// the regex.pattern validator of the config checked the java engine only
+			Splunk.PatternValidator(regexEngine).ensureValid(prefix + REGEX_PATTERN_CONFIG, regexPattern);
+			try {
+				regexFormatter = REGEX_ENGINE_LINEAR.equals(regexEngine)
+						? RegexFormatter.compileLinear(regexPattern, regexFormat, outputFormats)
+						: RegexFormatter.compile(regexPattern, regexFormat, options.regexBudget,
+								options.regexBudgetExceeded, outputFormats);
+			} catch (IllegalArgumentException e) {
+				if (outputFormats.isEmpty()) {
+					throw new ConfigException(prefix + REGEX_FORMAT_CONFIG, regexFormat, e.getMessage());
+				}
+				throw new ConfigException(prefix + REGEX_OUTPUTS_CONFIG, outputNames,
+						"The " + REGEX_FORMAT_CONFIG + " or an output format is malformed: " + e.getMessage());
+			}
+			// the outputs are formatted on every match, they are not cached
+			regexCache = outputFormats.isEmpty() ? options.regexCaches.get() : null;
+		}
+
+		String name = prefix.isEmpty() ? sourceKey : prefix.substring(0, prefix.length() - 1);
+		return new SplunkRule(name, sourceKeyPath, sourcePreserve, destKey, destToHeader,
+				regexFormatter, regexCache, regexDefaultValue, timestampParser,
+				regexFormat != null || regexPattern == null, outputNames.toArray(new String[0]), outputsToHeader,
+				options.headerCacheSize);
+	}
+
+	/**
+	 * Reads the {@code regex.outputs.<name>} format and
+	 * {@code regex.outputs.<name>.toHeader} flag of every output.
+	 */
+	private static void readOutputs(String prefix, AbstractConfig config, List<String> outputNames,
+			List<String> outputFormats, boolean[] outputsToHeader) {
+		Map<String, Object> outputConfigs = config.originalsWithPrefix(REGEX_OUTPUTS_CONFIG + ".");
+		Set<String> uniqueOutputNames = new HashSet<>();
+		for (int i = 0; i < outputNames.size(); i++) {
+			String outputName = outputNames.get(i);
+			String key = prefix + REGEX_OUTPUTS_CONFIG + "." + outputName;
+			if (!uniqueOutputNames.add(outputName)) {
+				throw new RuntimeException("Config: output \"" + outputName + "\" is listed more than once in \""
+						+ prefix + REGEX_OUTPUTS_CONFIG + "\"");
+			}
+
+			Object format = outputConfigs.get(outputName);
+			if (format == null) {
+				throw new ConfigException(key, null, "The format of the output is missing");
+			}
+			outputFormats.add((String) ConfigDef.parseType(key, format, ConfigDef.Type.STRING));
+			Object toHeader = outputConfigs.get(outputName + REGEX_OUTPUT_TO_HEADER_SUFFIX);
+			outputsToHeader[i] = toHeader != null && (Boolean) ConfigDef.parseType(key + REGEX_OUTPUT_TO_HEADER_SUFFIX,
+					toHeader, ConfigDef.Type.BOOLEAN);
+		}
+	}
+
+	private static TimestampParser timestampParser(String prefix, AbstractConfig config, List<String> formats) {
+		if (formats.isEmpty()) {
+			throw new RuntimeException("\"" + prefix + TIMESTAMP_FORMATS_CONFIG + "\" configuration cannot be empty");
+		}
+
+		ZoneId zone;
+		try {
+			zone = ZoneId.of(config.getString(TIMESTAMP_ZONE_CONFIG));
+		} catch (DateTimeException e) {
+			throw new ConfigException(prefix + TIMESTAMP_ZONE_CONFIG, config.getString(TIMESTAMP_ZONE_CONFIG),
+					e.getMessage());
+		}
+		try {
+			return TimestampParser.compile(formats, zone);
+		} catch (IllegalArgumentException e) {
+			throw new ConfigException(prefix + TIMESTAMP_FORMATS_CONFIG, formats, e.getMessage());
+		}
+	}
+
+	KeyPath sourceKeyPath() {
+		return this.sourceKeyPath;
+	}
+
+	String destKey() {
+		return this.destKey;
+	}
+
+	boolean sourcePreserve() {
+		return this.sourcePreserve;
+	}
+
+	boolean destToHeader() {
+		return this.destToHeader;
+	}
+
+	/**
+	 * Whether the rule parses a timestamp, written to the record timestamp or
+	 * to a header, leaving the value unchanged.
+	 */
+	boolean isTimestamp() {
+		return this.timestampParser != null;
+	}
+
+	/**
+	 * Whether the rule writes the formatted {@code source.key} value, i.e.
+	 * it is not a rule with {@code regex.outputs} only.
+	 */
+	boolean formatsSource() {
+		return this.formatsSource;
+	}
+
+	int outputCount() {
+		return this.outputNames.length;
+	}
+
+	String outputName(int output) {
+		return this.outputNames[output];
+	}
+
+	boolean outputToHeader(int output) {
+		return this.outputHeaders[output] != null;
+	}
+
+	Outcome apply(Map<String, Object> rootValueMap, Headers headers) {
+		return apply(rootValueMap, this.sourceKeyPath.parent(rootValueMap), headers, null, null);
+	}
+
+	Outcome apply(Map<String, Object> rootValueMap, Map<String, Object> parentValueMap, Headers headers) {
+		return apply(rootValueMap, parentValueMap, headers, null, null);
+	}
+
+	/**
+	 * @param parentValueMap the map holding the leaf key of {@code source.key}
+	 *                       as resolved from {@code rootValueMap}, or
+	 *                       {@code null} if there is no such map
+	 * @param valueCopy      the copy written instead of {@code rootValueMap}
+	 *                       and {@code headers}, or {@code null} to write them
+	 *                       in place
+	 * @param timestamp      set by a timestamp rule writing the record
+	 *                       timestamp, {@code null} to ignore it
+	 */
+	Outcome apply(Map<String, Object> rootValueMap, Map<String, Object> parentValueMap, Headers headers,
+			CopyOnWriteValue valueCopy, RecordTimestamp timestamp) {
+		Map<String, Object> ctxValueMap = parentValueMap;
+		String ctxKey = this.sourceKeyPath.leaf();
+
+		if (this.sourceKeyPath.isNested()) {
+			if (ctxValueMap == null || ctxValueMap.isEmpty()) {
+				return Outcome.NESTED_OBJECT_NOT_FOUND;
+			}
+		}
+
+		if (!ctxValueMap.containsKey(ctxKey)) {
+			return Outcome.SOURCE_KEY_NOT_FOUND;
+		}
+
+		Object valueObject = ctxValueMap.get(ctxKey);
+		if (valueObject instanceof Map) {
+			return Outcome.SOURCE_KEY_POINTS_TO_OBJECT;
+		}
+
+		Outcome outcome = Outcome.MODIFIED;
+		String[] outputValues = this.outputNames.length > 0 ? new String[this.outputNames.length] : null;
+		String value = formatValue(String.valueOf(valueObject), outputValues);
+		if (value == null) {
+			if (this.regexDefaultValue == null) {
+				return Outcome.REGEX_NOT_MATCHED;
+			}
+			value = defaultValue(outputValues);
+			outcome = Outcome.DEFAULTED;
+		}
+
+		if (this.timestampParser != null) {
+			long millis = parseTimestamp(valueObject, value);
+			if (millis == Timestamps.INVALID) {
+				return Outcome.TIMESTAMP_NOT_PARSED;
+			}
+			if (this.destToHeader) {
+				putHeader(valueCopy != null ? valueCopy.headers() : headers, String.valueOf(millis));
+			} else if (timestamp != null) {
+				timestamp.millis = millis;
+			}
+			if (timestamp != null) {
+				timestamp.applied = true;
+			}
+			return outcome;
+		}
+
+		if (valueCopy != null) {
+			rootValueMap = valueCopy.valueMap();
+			// the parent of source.key is left shared if it is not written
+			if (this.formatsSource && (this.destKey == null || !this.sourcePreserve)) {
+				ctxValueMap = this.sourceKeyPath.isNested() ? valueCopy.parent(this.sourceKeyPath) : rootValueMap;
+			}
+			if (this.destToHeader || this.headerOutputs) {
+				headers = valueCopy.headers();
+			}
+		}
+
+		if (this.formatsSource) {
+			formatSource(rootValueMap, ctxValueMap, ctxKey, headers, value);
+		}
+		// written last, so that an output named after source.key or dest.key wins
+		if (outputValues != null) {
+			putOutputs(rootValueMap, headers, outputValues);
+		}
+
+		return outcome;
+	}
+
+	private void formatSource(Map<String, Object> rootValueMap, Map<String, Object> ctxValueMap, String ctxKey,
+			Headers headers, String value) {
+		if (this.destKey != null) {
+			if (!this.sourcePreserve) {
+				ctxValueMap.remove(ctxKey);
+			}
+			if (this.destToHeader) {
+				rootValueMap.remove(this.destKey);
+			} else {
+				rootValueMap.put(this.destKey, value);
+			}
+		} else if (this.destToHeader) {
+			ctxValueMap.remove(ctxKey);
+		} else {
+			ctxValueMap.put(ctxKey, value);
+		}
+
+		if (this.destToHeader) {
+			putHeader(headers, value);
+		}
+	}
+
+	private void putOutputs(Map<String, Object> rootValueMap, Headers headers, String[] outputValues) {
+		for (int i = 0; i < this.outputNames.length; i++) {
+			if (this.outputHeaders[i] != null) {
+				putOutputHeader(headers, i, outputValues[i]);
+			} else {
+				rootValueMap.put(this.outputNames[i], outputValues[i]);
+			}
+		}
+	}
+
+	/**
+	 * Applies {@code regex.pattern} and {@code regex.format} to the
+	 * {@code source.key} value. Returns {@code null} if the regex does not
+	 * match, in which case {@link #defaultValue(String[])} applies.
+	 */
+	String formatValue(String value) {
+		return formatValue(value, null);
+	}
+
+	/**
+	 * Same as {@link #formatValue(String)}, also filling {@code outputValues}
+	 * with the {@code regex.outputs} from the same match.
+	 *
+	 * @param outputValues {@code null} if the rule has no outputs
+	 */
+	String formatValue(String value, String[] outputValues) {
+		if (this.regexFormatter == null) {
+			return value;
+		}
+		if (outputValues != null) {
+			return this.regexFormatter.format(value, outputValues);
+		}
+		if (this.regexCache != null) {
+			return this.regexCache.format(value, this.regexFormatter);
+		}
+
+		return this.regexFormatter.format(value);
+	}
+
+	String regexDefaultValue() {
+		return this.regexDefaultValue;
+	}
+
+	/**
+	 * Returns the {@code regex.defaultValue}, which is also the value of the
+	 * outputs if the regex does not match.
+	 */
+	String defaultValue(String[] outputValues) {
+		if (outputValues != null) {
+			Arrays.fill(outputValues, this.regexDefaultValue);
+		}
+		return this.regexDefaultValue;
+	}
+
+	/**
+	 * Returns the epoch milliseconds of the {@code source.key} value of a
+	 * timestamp rule, {@link Timestamps#INVALID} if it cannot be parsed. A
+	 * number is read in the unit of the epoch format, unless it is formatted
+	 * by {@code regex.pattern}.
+	 *
+	 * @param formattedValue the value returned by {@link #formatValue(String)}
+	 *                       or the {@code regex.defaultValue}
+	 */
+	long parseTimestamp(Object sourceValue, String formattedValue) {
+		return this.timestampParser.parse(this.regexFormatter == null ? sourceValue : formattedValue);
+	}
+
+	/**
+	 * Returns the {@code source.key} value for tracing, {@code null} if it is
+	 * not found.
+	 */
+	Object sourceValue(Map<String, Object> rootValueMap) {
+		Map<String, Object> parentValueMap = this.sourceKeyPath.parent(rootValueMap);
+		return parentValueMap == null ? null : parentValueMap.get(this.sourceKeyPath.leaf());
+	}
+
+	/**
+	 * Returns the value written by the rule for tracing, after it has applied.
+	 */
+	Object resultValue(Map<String, Object> rootValueMap, Headers headers) {
+		String key = this.destKey != null ? this.destKey : this.sourceKeyPath.leaf();
+		if (this.destToHeader) {
+			Header header = headers.lastWithName(key);
+			return header == null ? null : header.value();
+		}
+
+		Map<String, Object> valueMap = this.destKey != null ? rootValueMap : this.sourceKeyPath.parent(rootValueMap);
+		return valueMap == null ? null : valueMap.get(key);
+	}
+
+	/**
+	 * Writes the {@code dest.toHeader} value, replacing the headers with the
+	 * same key.
+	 */
+	void putHeader(Headers headers, String value) {
+		InternedHeaders.put(headers, this.headers.header(value));
+	}
+
+	/**
+	 * Writes the value of an output to a header, replacing the headers with
+	 * the same key.
+	 */
+	void putOutputHeader(Headers headers, int output, String value) {
+		InternedHeaders.put(headers, this.outputHeaders[output].header(value));
+	}
+
+	@Override
+	public String toString() {
+		return this.name;
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+import org.apache.kafka.common.cache.Cache;
+import org.apache.kafka.common.cache.LRUCache;
+import org.apache.kafka.common.cache.SynchronizedCache;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.header.Headers;
+import org.apache.kafka.connect.transforms.util.SchemaUtil;
+
+/**
+ * Applies {@link SplunkRule}s to {@link Struct} values. The output value is
+ * built with a schema derived from the input schema and the set of rules that
+ * applied. The derived schemas are kept in a bounded LRU cache.
+ */
+final class StructRules extends EditedRules<Struct> {
+
+	private final Cache<UpdateKey, StructUpdate> updateCache;
+
+	StructRules(List<SplunkRule> rules, int cacheSize) {
+		super(rules);
+		this.updateCache = new SynchronizedCache<>(new LRUCache<>(cacheSize));
+	}
+
+	/**
+	 * Returns the updated value, the value itself if the rules only wrote
+	 * headers, or {@code null} if none of the rules applied.
+	 */
+	Struct apply(Struct value, Headers headers, BiConsumer<SplunkRule, SplunkRule.Outcome> outcomes,
+			SplunkRule.RecordTimestamp timestamp) {
+		String[] values = newValues();
+		BitSet applied = new BitSet(this.rules.size());
+
+		evaluate(value, headers, outcomes, values, applied, timestamp);
+
+		if (applied.isEmpty()) {
+			return null;
+		}
+		if (!hasEdits(applied)) {
+			// only headers have been written
+			return value;
+		}
+
+		UpdateKey key = new UpdateKey(value.schema(), applied);
+		StructUpdate update = this.updateCache.get(key);
+		if (update == null) {
+			update = makeUpdate(value.schema(), editTree(applied));
+			this.updateCache.put(key, update);
+		}
+
+		return update.apply(value, values);
+	}
+
+	@Override
+	protected Object readSource(Struct value, int rule) {
+		KeyPath sourceKeyPath = this.rules.get(rule).sourceKeyPath();
+		Struct parent = value;
+		for (int s = 0; s < sourceKeyPath.size() - 1; s++) {
+			Field field = parent.schema().field(sourceKeyPath.segment(s));
+			if (field == null || field.schema().type() != Schema.Type.STRUCT) {
+				return SplunkRule.Outcome.NESTED_OBJECT_NOT_FOUND;
+			}
+			parent = parent.getStruct(field.name());
+			if (parent == null) {
+				return SplunkRule.Outcome.NESTED_OBJECT_NOT_FOUND;
+			}
+		}
+
+		Field field = parent.schema().field(sourceKeyPath.leaf());
+		if (field == null) {
+			return SplunkRule.Outcome.SOURCE_KEY_NOT_FOUND;
+		}
+		if (field.schema().type() == Schema.Type.STRUCT || field.schema().type() == Schema.Type.MAP) {
+			return SplunkRule.Outcome.SOURCE_KEY_POINTS_TO_OBJECT;
+		}
+		Object sourceValue = parent.get(field);
+		return sourceValue != null ? sourceValue : SplunkRule.Outcome.SOURCE_KEY_NOT_FOUND;
+	}
+
+	private static StructUpdate makeUpdate(Schema schema, EditNode edits) {
+		SchemaBuilder builder = SchemaUtil.copySchemaBasics(schema, SchemaBuilder.struct());
+		if (schema.isOptional()) {
+			builder.optional();
+		}
+
+		List<Field> inputFields = new ArrayList<>();
+		List<Integer> ruleValues = new ArrayList<>();
+		List<StructUpdate> nestedUpdates = new ArrayList<>();
+
+		for (Field field : schema.fields()) {
+			EditNode edit = edits.children.get(field.name());
+
+			if (edit == null) {
+				builder.field(field.name(), field.schema());
+				inputFields.add(field);
+				ruleValues.add(-1);
+				nestedUpdates.add(null);
+			} else if (edit.kind == WRITE) {
+				builder.field(field.name(), Schema.OPTIONAL_STRING_SCHEMA);
+				inputFields.add(null);
+				ruleValues.add(edit.value);
+				nestedUpdates.add(null);
+			} else if (edit.kind != REMOVE) {
+				StructUpdate nestedUpdate = makeUpdate(field.schema(), edit);
+				builder.field(field.name(), nestedUpdate.schema);
+				inputFields.add(field);
+				ruleValues.add(-1);
+				nestedUpdates.add(nestedUpdate);
+			}
+		}
+
+		for (Map.Entry<String, EditNode> edit : edits.children.entrySet()) {
+			if (edit.getValue().kind == WRITE && schema.field(edit.getKey()) == null) {
+				builder.field(edit.getKey(), Schema.OPTIONAL_STRING_SCHEMA);
+				inputFields.add(null);
+				ruleValues.add(edit.getValue().value);
+				nestedUpdates.add(null);
+			}
+		}
+
+		Schema updatedSchema = builder.build();
+		return new StructUpdate(updatedSchema, inputFields.toArray(new Field[0]),
+				ruleValues.stream().mapToInt(Integer::intValue).toArray(), nestedUpdates.toArray(new StructUpdate[0]));
+	}
+
+	private static final class StructUpdate {
+		final Schema schema;
+		final Field[] fields;
+		final Field[] inputFields;
+		final int[] ruleValues;
+		final StructUpdate[] nestedUpdates;
+
+		StructUpdate(Schema schema, Field[] inputFields, int[] ruleValues, StructUpdate[] nestedUpdates) {
+			this.schema = schema;
+			this.fields = schema.fields().toArray(new Field[0]);
+			this.inputFields = inputFields;
+			this.ruleValues = ruleValues;
+			this.nestedUpdates = nestedUpdates;
+		}
+
+		Struct apply(Struct value, String[] values) {
+			Struct updatedValue = new Struct(this.schema);
+
+			for (int i = 0; i < this.fields.length; i++) {
+				if (this.ruleValues[i] >= 0) {
+					updatedValue.put(this.fields[i], values[this.ruleValues[i]]);
+				} else if (this.nestedUpdates[i] != null) {
+					Struct nestedValue = value.getStruct(this.inputFields[i].name());
+					updatedValue.put(this.fields[i],
+							nestedValue == null ? null : this.nestedUpdates[i].apply(nestedValue, values));
+				} else {
+					updatedValue.put(this.fields[i], value.get(this.inputFields[i]));
+				}
+			}
+
+			return updatedValue;
+		}
+	}
+
+	private static final class UpdateKey {
+		final Schema schema;
+		final BitSet applied;
+
+		UpdateKey(Schema schema, BitSet applied) {
+			this.schema = schema;
+			this.applied = applied;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof UpdateKey)) {
+				return false;
+			}
+			UpdateKey other = (UpdateKey) o;
+			return this.schema.equals(other.schema) && this.applied.equals(other.applied);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.schema, this.applied);
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The {@code timestamp.formats} of a timestamp rule, compiled once and tried
+ * in order on a value. The {@code iso8601}, {@code epoch} and
+ * {@code epoch_millis} formats are parsed by {@link Timestamps}, the others are
+ * {@link DateTimeFormatter} patterns.
+ * <p>
+ * Since consecutive log lines mostly share their second, the epoch of the
+ * last {@code yyyy-MM-ddTHH:mm:ss} prefix of an ISO-8601 value is kept, and so
+ * is the last value parsed by each pattern. The cached entries are immutable,
+ * so that the parser can be shared by the threads of a batch.
+ */
+final class TimestampParser {
+
+	static final String ISO8601 = "iso8601";
+	static final String EPOCH = "epoch";
+	static final String EPOCH_MILLIS = "epoch_millis";
+
+	private static final class Parsed {
+		final String value;
+		final long millis;
+
+		Parsed(String value, long millis) {
+			this.value = value;
+			this.millis = millis;
+		}
+	}
+
+	private static final byte PATTERN = 0;
+	private static final byte ISO8601_FORMAT = 1;
+	private static final byte EPOCH_FORMAT = 2;
+	private static final byte EPOCH_MILLIS_FORMAT = 3;
+
+	private final String[] formats;
+	private final byte[] kinds;
+	private final DateTimeFormatter[] formatters;
+	private final Parsed[] lastParsed;
+	private Parsed lastSecond;
+
+	private TimestampParser(String[] formats, byte[] kinds, DateTimeFormatter[] formatters) {
+		this.formats = formats;
+		this.kinds = kinds;
+		this.formatters = formatters;
+		this.lastParsed = new Parsed[formats.length];
+	}
+
+	/**
+	 * @param zone zone of the patterns without offset
+	 * @throws IllegalArgumentException if a pattern is not valid
+	 */
+	static TimestampParser compile(List<String> formats, ZoneId zone) {
+		String[] names = formats.toArray(new String[0]);
+		byte[] kinds = new byte[names.length];
+		DateTimeFormatter[] formatters = new DateTimeFormatter[names.length];
+		for (int i = 0; i < names.length; i++) {
+			switch (names[i]) {
+			case ISO8601:
+				kinds[i] = ISO8601_FORMAT;
+				break;
+			case EPOCH:
+				kinds[i] = EPOCH_FORMAT;
+				break;
+			case EPOCH_MILLIS:
+				kinds[i] = EPOCH_MILLIS_FORMAT;
+				break;
+			default:
+				kinds[i] = PATTERN;
+				formatters[i] = DateTimeFormatter.ofPattern(names[i], Locale.ENGLISH).withZone(zone);
+			}
+		}
+		return new TimestampParser(names, kinds, formatters);
+	}
+
+	/**
+	 * Returns the epoch milliseconds of a number, in the unit of the first
+	 * epoch format, or of a string, {@link Timestamps#INVALID} if no format
+	 * matches.
+	 */
+	long parse(Object value) {
+		if (value instanceof Number) {
+			for (byte kind : this.kinds) {
+				if (kind == EPOCH_FORMAT || kind == EPOCH_MILLIS_FORMAT) {
+					return Timestamps.fromEpoch((Number) value, kind == EPOCH_MILLIS_FORMAT);
+				}
+			}
+		}
+		return parse(String.valueOf(value));
+	}
+
+	long parse(String value) {
+		for (int i = 0; i < this.kinds.length; i++) {
+			long millis;
+			switch (this.kinds[i]) {
+			case ISO8601_FORMAT:
+				millis = parseIso8601(value);
+				break;
+			case EPOCH_FORMAT:
+				millis = Timestamps.parseEpoch(value, false);
+				break;
+			case EPOCH_MILLIS_FORMAT:
+				millis = Timestamps.parseEpoch(value, true);
+				break;
+			default:
+				millis = parsePattern(value, i);
+			}
+			if (millis != Timestamps.INVALID) {
+				return millis;
+			}
+		}
+		return Timestamps.INVALID;
+	}
+
+	private long parseIso8601(String value) {
+		if (value.length() < Timestamps.SECOND_PREFIX_LENGTH || value.charAt(16) != ':') {
+			return Timestamps.parseIso8601(value);
+		}
+
+		Parsed lastSecond = this.lastSecond;
+		if (lastSecond == null || !value.regionMatches(0, lastSecond.value, 0, Timestamps.SECOND_PREFIX_LENGTH)) {
+			String prefix = value.substring(0, Timestamps.SECOND_PREFIX_LENGTH);
+			long millis = Timestamps.parseIso8601(prefix);
+			if (millis == Timestamps.INVALID) {
+				return Timestamps.INVALID;
+			}
+			lastSecond = new Parsed(prefix, millis);
+			this.lastSecond = lastSecond;
+		}
+		return Timestamps.parseIso8601Fraction(value, Timestamps.SECOND_PREFIX_LENGTH, lastSecond.millis);
+	}
+
+	private long parsePattern(String value, int format) {
+		Parsed lastParsed = this.lastParsed[format];
+		if (lastParsed != null && lastParsed.value.equals(value)) {
+			return lastParsed.millis;
+		}
+
+		long millis;
+		try {
+			ParsePosition position = new ParsePosition(0);
+			TemporalAccessor parsed = this.formatters[format].parse(value, position);
+			if (position.getIndex() != value.length()) {
+				return Timestamps.INVALID;
+			}
+			millis = Instant.from(parsed).toEpochMilli();
+		} catch (DateTimeException | ArithmeticException e) {
+			return Timestamps.INVALID;
+		}
+		this.lastParsed[format] = new Parsed(value, millis);
+		return millis;
+	}
+
+	@Override
+	public String toString() {
+		return String.join(",", this.formats);
+	}
+}
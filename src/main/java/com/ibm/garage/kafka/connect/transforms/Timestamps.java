@@ -0,0 +1,272 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Parsing of event timestamps into epoch milliseconds without
+ * {@code java.time} or {@code SimpleDateFormat}, nothing being allocated per
+ * value. The methods return {@link #INVALID} for a value which cannot be
+ * parsed.
+ */
+final class Timestamps {
+
+	static final long INVALID = Long.MIN_VALUE;
+
+	// beyond the year 9999 in seconds, so that the milliseconds cannot overflow
+	private static final long MAX_EPOCH_SECONDS = 253402300799L;
+
+	/**
+	 * Length of the {@code yyyy-MM-ddTHH:mm:ss} prefix of an ISO-8601
+	 * date-time.
+	 */
+	static final int SECOND_PREFIX_LENGTH = 19;
+
+	private Timestamps() {
+	}
+
+	/**
+	 * Parses an ISO-8601 date-time, or an epoch in seconds (or milliseconds)
+	 * with an optional fraction.
+	 */
+	static long parse(String value, boolean epochMillis) {
+		if (value.isEmpty()) {
+			return INVALID;
+		}
+		// an ISO-8601 date always has a '-' after the year
+		return value.length() > 4 && value.charAt(4) == '-' ? parseIso8601(value) : parseEpoch(value, epochMillis);
+	}
+
+	/**
+	 * Converts a numeric epoch in seconds (or milliseconds).
+	 */
+	static long fromEpoch(Number value, boolean epochMillis) {
+		if (value instanceof Double || value instanceof Float) {
+			double epoch = value.doubleValue() * (epochMillis ? 1 : 1000);
+			return Double.isNaN(epoch) || Math.abs(epoch) > MAX_EPOCH_SECONDS * 1000 ? INVALID : Math.round(epoch);
+		}
+		long epoch = value.longValue();
+		if (Math.abs(epoch) > (epochMillis ? MAX_EPOCH_SECONDS * 1000 : MAX_EPOCH_SECONDS)) {
+			return INVALID;
+		}
+		return epochMillis ? epoch : epoch * 1000;
+	}
+
+	/**
+	 * Parses {@code [-]digits[.digits]}, the fraction being truncated to the
+	 * millisecond.
+	 */
+	static long parseEpoch(String value, boolean epochMillis) {
+		if (value.isEmpty()) {
+			return INVALID;
+		}
+		boolean negative = value.charAt(0) == '-';
+		int pos = negative ? 1 : 0;
+		int integerStart = pos;
+		long integer = 0;
+		while (pos < value.length() && isDigit(value.charAt(pos))) {
+			integer = integer * 10 + (value.charAt(pos++) - '0');
+			if (integer > MAX_EPOCH_SECONDS * 1000) {
+				return INVALID;
+			}
+		}
+		if (pos == integerStart) {
+			return INVALID;
+		}
+
+		long millis;
+		if (epochMillis) {
+			millis = integer;
+		} else if (integer > MAX_EPOCH_SECONDS) {
+			return INVALID;
+		} else {
+			millis = integer * 1000;
+		}
+
+		if (pos < value.length()) {
+			if (value.charAt(pos) != '.' || pos + 1 == value.length()) {
+				return INVALID;
+			}
+			int fractionScale = epochMillis ? 1 : 1000;
+			long fraction = 0;
+			for (pos++; pos < value.length(); pos++) {
+				if (!isDigit(value.charAt(pos))) {
+					return INVALID;
+				}
+				if (fractionScale > 1) {
+					fractionScale /= 10;
+					fraction += (value.charAt(pos) - '0') * fractionScale;
+				}
+			}
+			millis += fraction;
+		}
+		return negative ? -millis : millis;
+	}
+
+	/**
+	 * Parses {@code yyyy-MM-dd} optionally followed by {@code 'T'} (or a
+	 * space), {@code HH:mm[:ss[.fraction]]} and an offset, {@code Z},
+	 * {@code +HH}, {@code -HHmm} or {@code +HH:mm}. A date-time without offset
+	 * is in UTC.
+	 */
+	static long parseIso8601(String value) {
+		int length = value.length();
+		if (length < 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+			return INVALID;
+		}
+		int year = digits(value, 0, 4);
+		int month = digits(value, 5, 2);
+		int day = digits(value, 8, 2);
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+			return INVALID;
+		}
+		long millis = daysFromCivil(year, month, day) * 86400000L;
+		if (length == 10) {
+			return millis;
+		}
+
+		char separator = value.charAt(10);
+		if ((separator != 'T' && separator != 't' && separator != ' ') || length < 16 || value.charAt(13) != ':') {
+			return INVALID;
+		}
+		int hour = digits(value, 11, 2);
+		int minute = digits(value, 14, 2);
+		if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+			return INVALID;
+		}
+		millis += hour * 3600000L + minute * 60000L;
+
+		if (length == 16 || value.charAt(16) != ':') {
+			return parseIso8601Offset(value, 16, millis);
+		}
+		int second = length >= SECOND_PREFIX_LENGTH ? digits(value, 17, 2) : -1;
+		if (second < 0 || second > 59) {
+			return INVALID;
+		}
+		return parseIso8601Fraction(value, SECOND_PREFIX_LENGTH, millis + second * 1000L);
+	}
+
+	/**
+	 * Parses the optional fraction of second and offset from {@code pos},
+	 * e.g. after the {@link #SECOND_PREFIX_LENGTH} characters of
+	 * {@code yyyy-MM-ddTHH:mm:ss}, whose epoch milliseconds in UTC are
+	 * {@code millis}.
+	 */
+	static long parseIso8601Fraction(String value, int pos, long millis) {
+		int length = value.length();
+		if (pos < length && (value.charAt(pos) == '.' || value.charAt(pos) == ',')) {
+			int fractionStart = ++pos;
+			int fractionScale = 1000;
+			while (pos < length && isDigit(value.charAt(pos))) {
+				if (fractionScale > 1) {
+					fractionScale /= 10;
+					millis += (value.charAt(pos) - '0') * fractionScale;
+				}
+				pos++;
+			}
+			if (pos == fractionStart) {
+				return INVALID;
+			}
+		}
+		return parseIso8601Offset(value, pos, millis);
+	}
+
+	private static long parseIso8601Offset(String value, int pos, long millis) {
+		int length = value.length();
+		if (pos == length) {
+			return millis;
+		}
+		char offsetSign = value.charAt(pos);
+		if ((offsetSign == 'Z' || offsetSign == 'z') && pos + 1 == length) {
+			return millis;
+		}
+		if (offsetSign != '+' && offsetSign != '-') {
+			return INVALID;
+		}
+		int offsetHours = pos + 3 <= length ? digits(value, pos + 1, 2) : -1;
+		int offsetMinutes;
+		if (pos + 3 == length) {
+			offsetMinutes = 0;
+		} else if (pos + 5 == length) {
+			offsetMinutes = digits(value, pos + 3, 2);
+		} else if (pos + 6 == length && value.charAt(pos + 3) == ':') {
+			offsetMinutes = digits(value, pos + 4, 2);
+		} else {
+			return INVALID;
+		}
+		if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59) {
+			return INVALID;
+		}
+		long offset = offsetHours * 3600000L + offsetMinutes * 60000L;
+		return offsetSign == '+' ? millis - offset : millis + offset;
+	}
+
+	/**
+	 * Returns the value of {@code count} decimal digits, -1 if one of them is
+	 * not a digit.
+	 */
+	private static int digits(String value, int start, int count) {
+		int result = 0;
+		for (int i = start; i < start + count; i++) {
+			char c = value.charAt(i);
+			if (!isDigit(c)) {
+				return -1;
+			}
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static int daysInMonth(int year, int month) {
+		if (month == 2) {
+			return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+		}
+		return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+	}
+
+	/**
+	 * Days since 1970-01-01 of a date of the proleptic Gregorian calendar.
+	 */
+	static long daysFromCivil(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+
+	/**
+	 * Writes epoch milliseconds as seconds with a fraction of milliseconds,
+	 * the form of the HEC {@code time}, e.g. {@code 1634392536.123}.
+	 */
+	static void writeEpochSeconds(long millis, ByteArrayOutputStream out) {
+		if (millis < 0) {
+			out.write('-');
+			millis = -millis;
+		}
+		writeDigits(millis / 1000, out);
+		long fraction = millis % 1000;
+		if (fraction != 0) {
+			out.write('.');
+			out.write('0' + (int) (fraction / 100));
+			out.write('0' + (int) (fraction / 10 % 10));
+			out.write('0' + (int) (fraction % 10));
+		}
+	}
+
+	private static void writeDigits(long value, ByteArrayOutputStream out) {
+		if (value >= 10) {
+			writeDigits(value / 10, out);
+		}
+		out.write('0' + (int) (value % 10));
+	}
+}
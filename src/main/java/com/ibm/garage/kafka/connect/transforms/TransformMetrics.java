@@ -0,0 +1,195 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.JmxReporter;
+import org.apache.kafka.common.metrics.KafkaMetricsContext;
+import org.apache.kafka.common.metrics.Measurable;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.utils.Time;
+
+/**
+ * Counters and latency histograms of a transformation instance. They are
+ * plain {@link LongAdder}s on the record path and are only read when the
+ * metrics are collected, through Kafka {@link Metrics} and JMX, under the
+ * {@value #JMX_PREFIX} domain with an {@code instance} tag.
+ */
+final class TransformMetrics implements AutoCloseable {
+
+	static final String JMX_PREFIX = "com.ibm.garage.kafka.connect.transforms";
+	static final String INSTANCE_TAG = "instance";
+
+	private static final AtomicInteger instances = new AtomicInteger();
+
+	private static final class Registry {
+		static final Metrics METRICS = new Metrics(new MetricConfig(),
+				Collections.singletonList(new JmxReporter()), Time.SYSTEM, new KafkaMetricsContext(JMX_PREFIX));
+	}
+
+	private final String group;
+	private final Map<String, String> descriptions = new LinkedHashMap<>();
+	private final Map<String, Measurable> measurables = new LinkedHashMap<>();
+	private final List<MetricName> registered = new ArrayList<>();
+
+	TransformMetrics(String group) {
+		this.group = group;
+	}
+
+	LongAdder counter(String name, String description) {
+		LongAdder counter = new LongAdder();
+		add(name, description, (config, now) -> counter.sum());
+		return counter;
+	}
+
+	LatencyHistogram latency(String name, String description) {
+		LatencyHistogram histogram = new LatencyHistogram();
+		add(name + "-avg-ns", "Average of the " + description, (config, now) -> histogram.average());
+		add(name + "-max-ns", "Maximum of the " + description, (config, now) -> histogram.max.get());
+		for (double percentile : new double[] { 50, 99, 99.9 }) {
+			String suffix = String.valueOf(percentile).replace(".0", "").replace('.', '_');
+			add(name + "-p" + suffix + "-ns", "Percentile " + percentile + " of the " + description,
+					(config, now) -> histogram.percentile(percentile));
+		}
+		return histogram;
+	}
+
+	private void add(String name, String description, Measurable measurable) {
+		this.descriptions.put(name, description);
+		this.measurables.put(name, measurable);
+	}
+
+	/**
+	 * Publishes the metrics created so far under a new {@code instance} tag
+	 * and returns the tags. Metrics published before are removed first.
+	 */
+	Map<String, String> register() {
+		close();
+
+		Map<String, String> tags = Collections.singletonMap(INSTANCE_TAG,
+				String.valueOf(instances.incrementAndGet()));
+		for (Map.Entry<String, Measurable> measurable : this.measurables.entrySet()) {
+			MetricName metricName = new MetricName(measurable.getKey(), this.group,
+					this.descriptions.get(measurable.getKey()), tags);
+			Registry.METRICS.addMetric(metricName, measurable.getValue());
+			this.registered.add(metricName);
+		}
+		return tags;
+	}
+
+	@Override
+	public void close() {
+		for (MetricName metricName : this.registered) {
+			Registry.METRICS.removeMetric(metricName);
+		}
+		this.registered.clear();
+	}
+
+	static Metrics registry() {
+		return Registry.METRICS;
+	}
+
+	/**
+	 * Cumulative histogram of nanosecond latencies with 4 buckets per power of
+	 * two, so that a recorded value is off by at most 25%.
+	 */
+	static final class LatencyHistogram {
+
+		private static final int SUB_BUCKET_BITS = 2;
+		private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+		private final LongAdder[] buckets = new LongAdder[(Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS];
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		LatencyHistogram() {
+			for (int i = 0; i < this.buckets.length; i++) {
+				this.buckets[i] = new LongAdder();
+			}
+		}
+
+		void record(long nanos) {
+			long value = Math.max(nanos, 0);
+			this.buckets[bucket(value)].increment();
+			this.count.increment();
+			this.sum.add(value);
+			if (value > this.max.get()) {
+				this.max.accumulate(value);
+			}
+		}
+
+		/**
+		 * Records the same latency {@code count} times, e.g. the average latency
+		 * of the records of a batch.
+		 */
+		void record(long nanos, int count) {
+			long value = Math.max(nanos, 0);
+			this.buckets[bucket(value)].add(count);
+			this.count.add(count);
+			this.sum.add(value * count);
+			if (value > this.max.get()) {
+				this.max.accumulate(value);
+			}
+		}
+
+		private static int bucket(long value) {
+			if (value < SUB_BUCKETS) {
+				return (int) value;
+			}
+			int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+			return (exponent + 1) * SUB_BUCKETS + (int) ((value >>> exponent) & (SUB_BUCKETS - 1));
+		}
+
+		/**
+		 * Upper bound of the values counted in the bucket.
+		 */
+		private static long bucketUpperBound(int bucket) {
+			if (bucket < SUB_BUCKETS) {
+				return bucket;
+			}
+			int exponent = bucket / SUB_BUCKETS - 1;
+			long subBucket = SUB_BUCKETS + bucket % SUB_BUCKETS;
+			return ((subBucket + 1) << exponent) - 1;
+		}
+
+		double average() {
+			long count = this.count.sum();
+			return count == 0 ? 0 : (double) this.sum.sum() / count;
+		}
+
+		double percentile(double percentile) {
+			long count = this.count.sum();
+			if (count == 0) {
+				return 0;
+			}
+
+			long rank = (long) Math.ceil(count * percentile / 100);
+			long seen = 0;
+			for (int i = 0; i < this.buckets.length; i++) {
+				seen += this.buckets[i].sum();
+				if (seen >= rank) {
+					return Math.min(bucketUpperBound(i), this.max.get());
+				}
+			}
+			return this.max.get();
+		}
+
+		long count() {
+			return this.count.sum();
+		}
+	}
+}
@@ -5,11 +5,17 @@
 
 package com.ibm.garage.kafka.connect.transforms;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.kafka.common.record.TimestampType;
@@ -52,6 +58,53 @@ public class FilterTest {
 			this.shouldThrow(props);
 		}
 
+		@Test
+		@DisplayName("Should throw an exception if more than one value matcher is configured")
+		public void configuration_throwsRuntimeException_multipleValueMatchers() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.HEADER_KEY_CONFIG, "testHeaderKey");
+			props.put(Filter.VALUE_EQUALS_CONFIG, "prod");
+			props.put(Filter.VALUE_PREFIX_CONFIG, "pr");
+
+			this.shouldThrow(props);
+		}
+
+		@Test
+		@DisplayName("Should throw an exception if valueRegex configuration is not valid")
+		public void configuration_throwsRuntimeException_valueRegex_badFormat() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.HEADER_KEY_CONFIG, "testHeaderKey");
+			props.put(Filter.VALUE_REGEX_CONFIG, "^(.*$");
+
+			this.shouldThrow(props);
+		}
+
+		@Test
+		@DisplayName("Should throw an exception if a condition has no headerKey")
+		public void configuration_throwsRuntimeException_condition_headerKey_Null() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.CONDITIONS_CONFIG, "index");
+			props.put(Filter.CONDITIONS_CONFIG + ".index." + Filter.VALUE_EQUALS_CONFIG, "prod");
+
+			this.shouldThrow(props);
+		}
+
+		@Test
+		@DisplayName("Should throw an exception if a value key is combined with conditions")
+		public void configuration_throwsRuntimeException_conditions_and_valueKeys() {
+			for (String valueKey : new String[] { Filter.VALUE_EQUALS_CONFIG, Filter.VALUE_IN_CONFIG,
+					Filter.VALUE_PREFIX_CONFIG, Filter.VALUE_REGEX_CONFIG }) {
+				Map<String, Object> props = new HashMap<>();
+				props.put(Filter.CONDITIONS_CONFIG, "index");
+				props.put(Filter.CONDITIONS_CONFIG + ".index." + Filter.HEADER_KEY_CONFIG, "index");
+				props.put(valueKey, "prod");
+
+				transformation = new Filter<>();
+				RuntimeException e = assertThrows(RuntimeException.class, () -> transformation.configure(props));
+				assertTrue(e.getMessage().contains(valueKey), valueKey);
+			}
+		}
+
 		private void shouldThrow(Map<String, ?> props) {
 			transformation = new Filter<>();
 
@@ -152,6 +205,281 @@ public class FilterTest {
 		}
 	}
 
+	@Nested
+	@DisplayName("FilterTest - Header values")
+	class HeaderValues {
+
+		private static final String INDEX_HEADER_KEY = "splunk.header.index";
+		private static final String HOST_HEADER_KEY = "splunk.header.host";
+
+		@Test
+		@DisplayName("Should return null if the header value equals valueEquals")
+		public void message_returnNullMessage_valueEquals() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.HEADER_KEY_CONFIG, INDEX_HEADER_KEY);
+			props.put(Filter.VALUE_EQUALS_CONFIG, "prod");
+
+			assertNull(apply(props, "prod", null));
+			assertNotNull(apply(props, "production", null));
+		}
+
+		@Test
+		@DisplayName("Should return null if the header value is one of valueIn")
+		public void message_returnNullMessage_valueIn() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.HEADER_KEY_CONFIG, INDEX_HEADER_KEY);
+			props.put(Filter.VALUE_IN_CONFIG, "prod,audit");
+
+			assertNull(apply(props, "audit", null));
+			assertNotNull(apply(props, "dev", null));
+			assertNotNull(apply(props, null, null));
+		}
+
+		@Test
+		@DisplayName("Should return null if the header value starts with valuePrefix")
+		public void message_returnNullMessage_valuePrefix() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.HEADER_KEY_CONFIG, INDEX_HEADER_KEY);
+			props.put(Filter.VALUE_PREFIX_CONFIG, "cloud_");
+
+			assertNull(apply(props, "cloud_databases", null));
+			assertNotNull(apply(props, "my_cloud_databases", null));
+		}
+
+		@Test
+		@DisplayName("Should return null if the header value matches valueRegex")
+		public void message_returnNullMessage_valueRegex() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.HEADER_KEY_CONFIG, INDEX_HEADER_KEY);
+			props.put(Filter.VALUE_REGEX_CONFIG, "cloud_.*_logdna");
+
+			assertNull(apply(props, "cloud_databases_logdna", null));
+			assertNotNull(apply(props, "cloud_databases", null));
+		}
+
+		@Test
+		@DisplayName("Should return a record if the header value matches and negate is true")
+		public void message_returnMessage_valueEquals_negate() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.HEADER_KEY_CONFIG, INDEX_HEADER_KEY);
+			props.put(Filter.VALUE_EQUALS_CONFIG, "prod");
+			props.put(Filter.NEGATE_CONFIG, Boolean.TRUE);
+
+			assertNotNull(apply(props, "prod", null));
+			assertNull(apply(props, "dev", null));
+		}
+
+		@Test
+		@DisplayName("Should return null only if all conditions match when the operator is AND")
+		public void message_returnNullMessage_conditions_and() {
+			Map<String, Object> props = conditionsProps();
+
+			assertNull(apply(props, "prod", "kube-worker-1"));
+			assertNotNull(apply(props, "prod", "vm-1"));
+			assertNotNull(apply(props, "prod", null));
+		}
+
+		@Test
+		@DisplayName("Should return null if any condition matches when the operator is OR")
+		public void message_returnNullMessage_conditions_or() {
+			Map<String, Object> props = conditionsProps();
+			props.put(Filter.OPERATOR_CONFIG, "OR");
+
+			assertNull(apply(props, "prod", "vm-1"));
+			assertNull(apply(props, null, "kube-worker-1"));
+			assertNotNull(apply(props, "dev", "vm-1"));
+		}
+
+		private Map<String, Object> conditionsProps() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.CONDITIONS_CONFIG, "index,host");
+			props.put(Filter.CONDITIONS_CONFIG + ".index." + Filter.HEADER_KEY_CONFIG, INDEX_HEADER_KEY);
+			props.put(Filter.CONDITIONS_CONFIG + ".index." + Filter.VALUE_IN_CONFIG, "prod,audit");
+			props.put(Filter.CONDITIONS_CONFIG + ".host." + Filter.HEADER_KEY_CONFIG, HOST_HEADER_KEY);
+			props.put(Filter.CONDITIONS_CONFIG + ".host." + Filter.VALUE_PREFIX_CONFIG, "kube-");
+			return props;
+		}
+
+		private SinkRecord apply(Map<String, Object> props, String indexHeaderValue, String hostHeaderValue) {
+			transformation = new Filter<>();
+			transformation.configure(props);
+
+			Headers headers = new ConnectHeaders();
+			headers.add("something_else", new SchemaAndValue(Schema.STRING_SCHEMA, "header value"));
+			if (indexHeaderValue != null) {
+				headers.add(INDEX_HEADER_KEY, new SchemaAndValue(Schema.STRING_SCHEMA, indexHeaderValue));
+			}
+			if (hostHeaderValue != null) {
+				headers.add(HOST_HEADER_KEY, new SchemaAndValue(Schema.STRING_SCHEMA, hostHeaderValue));
+			}
+
+			return transformation.apply(newRecord(new HashMap<>(), headers));
+		}
+	}
+
+	@Nested
+	@DisplayName("FilterTest - Field values")
+	class FieldValues {
+
+		@Test
+		@DisplayName("Should return null if the nested field value matches")
+		public void message_returnNullMessage_field_valueEquals() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.FIELD_CONFIG, "_app.level");
+			props.put(Filter.VALUE_EQUALS_CONFIG, "debug");
+
+			assertNull(apply(props, fieldValue("debug")));
+			assertNotNull(apply(props, fieldValue("info")));
+			assertNotNull(apply(props, new HashMap<>()));
+		}
+
+		@Test
+		@DisplayName("Should return null if the field exists when no value matcher is configured")
+		public void message_returnNullMessage_field_exists() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.FIELD_CONFIG, "_app.level");
+
+			assertNull(apply(props, fieldValue("info")));
+			assertNotNull(apply(props, Collections.singletonMap("_app", "not an object")));
+			assertNotNull(apply(props, Collections.singletonMap("_app", fieldValue("info"))));
+		}
+
+		@Test
+		@DisplayName("Should return null if the field of a Struct value matches")
+		public void message_returnNullMessage_field_struct() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.FIELD_CONFIG, "nested.level");
+			props.put(Filter.VALUE_PREFIX_CONFIG, "deb");
+
+			assertNull(apply(props, SplunkTestHelper.createNestedStruct("level", "debug")));
+			assertNotNull(apply(props, SplunkTestHelper.createNestedStruct("level", "info")));
+			assertNotNull(apply(props, SplunkTestHelper.createNestedStruct("other", "debug")));
+		}
+
+		@Test
+		@DisplayName("Should combine field and header conditions")
+		public void message_returnNullMessage_field_and_header() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.CONDITIONS_CONFIG, "level,index");
+			props.put(Filter.CONDITIONS_CONFIG + ".level." + Filter.FIELD_CONFIG, "_app.level");
+			props.put(Filter.CONDITIONS_CONFIG + ".level." + Filter.VALUE_EQUALS_CONFIG, "debug");
+			props.put(Filter.CONDITIONS_CONFIG + ".index." + Filter.HEADER_KEY_CONFIG, "index");
+
+			Headers headers = new ConnectHeaders();
+			headers.add("index", new SchemaAndValue(Schema.STRING_SCHEMA, "prod"));
+
+			assertNull(apply(props, fieldValue("debug"), headers));
+			assertNotNull(apply(props, fieldValue("debug"), new ConnectHeaders()));
+			assertNotNull(apply(props, fieldValue("info"), headers));
+		}
+
+		@Test
+		@DisplayName("Should throw an exception if both headerKey and field are configured")
+		public void configuration_throwsRuntimeException_headerKey_and_field() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.HEADER_KEY_CONFIG, "testHeaderKey");
+			props.put(Filter.FIELD_CONFIG, "_app.level");
+
+			assertThrows(RuntimeException.class, () -> new Filter<>().configure(props));
+		}
+
+		@Test
+		@DisplayName("Should return null if the field of a JSON value in bytes matches")
+		public void message_returnNullMessage_field_jsonBytes() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.FIELD_CONFIG, "_app.level");
+			props.put(Filter.VALUE_EQUALS_CONFIG, "debug");
+
+			assertNull(apply(props, "{\"msg\": [1, 2], \"_app\": {\"level\": \"debug\"}}".getBytes(StandardCharsets.UTF_8)));
+			assertNotNull(apply(props, "{\"_app\": {\"level\": \"info\"}}".getBytes(StandardCharsets.UTF_8)));
+			assertNotNull(apply(props, "\"debug\"".getBytes(StandardCharsets.UTF_8)));
+		}
+
+		@Test
+		@DisplayName("Should leave out the matching records of a batch and keep the order of the others")
+		public void batch_returnKeptRecords() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.FIELD_CONFIG, "_app.level");
+			props.put(Filter.VALUE_EQUALS_CONFIG, "debug");
+
+			transformation = new Filter<>();
+			transformation.configure(props);
+
+			SinkRecord info = newRecord(fieldValue("info"), new ConnectHeaders());
+			SinkRecord warn = newRecord(fieldValue("warn"), new ConnectHeaders());
+			List<SinkRecord> result = ((Filter<SinkRecord>) transformation).applyAll(Arrays.asList(
+					newRecord(fieldValue("debug"), new ConnectHeaders()), info, newRecord(fieldValue("debug"),
+							new ConnectHeaders()), warn));
+
+			assertEquals(Arrays.asList(info, warn), result);
+			assertEquals(2, SplunkTestHelper.lastMetricValue(Filter.METRIC_GROUP, "records-filtered-total"));
+		}
+
+		private Map<String, Object> fieldValue(String level) {
+			Map<String, Object> app = new HashMap<>();
+			app.put("level", level);
+
+			Map<String, Object> value = new HashMap<>();
+			value.put("_app", app);
+			return value;
+		}
+
+		private SinkRecord apply(Map<String, Object> props, Object value) {
+			return apply(props, value, new ConnectHeaders());
+		}
+
+		private SinkRecord apply(Map<String, Object> props, Object value, Headers headers) {
+			transformation = new Filter<>();
+			transformation.configure(props);
+
+			return transformation.apply(
+					new SinkRecord("topic", 1, null, null, null, value, 1L, 1L, TimestampType.NO_TIMESTAMP_TYPE, headers));
+		}
+	}
+
+	@Nested
+	@DisplayName("FilterTest - Metrics and trace")
+	class Metrics {
+
+		@Test
+		@DisplayName("Should count the processed and the discarded records")
+		public void metrics_countFilteredRecords() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.HEADER_KEY_CONFIG, "testHeaderKey");
+
+			transformation = new Filter<>();
+			transformation.configure(props);
+
+			Headers headers = new ConnectHeaders();
+			headers.add("testHeaderKey", new SchemaAndValue(Schema.STRING_SCHEMA, "header value"));
+			transformation.apply(newRecord(new HashMap<>(), headers));
+			transformation.apply(newRecord(new HashMap<>(), new ConnectHeaders()));
+
+			assertEquals(2, SplunkTestHelper.lastMetricValue(Filter.METRIC_GROUP, "records-in-total"));
+			assertEquals(1, SplunkTestHelper.lastMetricValue(Filter.METRIC_GROUP, "records-filtered-total"));
+		}
+
+		@Test
+		@DisplayName("Should log the condition results of 1 in N records")
+		public void trace_logSampledRecords() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Filter.HEADER_KEY_CONFIG, "testHeaderKey");
+			props.put(Filter.TRACE_SAMPLE_RATE_CONFIG, 3);
+
+			transformation = new Filter<>();
+			transformation.configure(props);
+
+			try (SplunkTestHelper.LogMessages log = SplunkTestHelper.captureLog(Filter.class)) {
+				for (int i = 0; i < 6; i++) {
+					assertNotNull(transformation.apply(newRecord(new HashMap<>(), new ConnectHeaders())));
+				}
+
+				assertEquals(2, log.messages().size());
+				assertTrue(log.messages().get(0).contains("condition \"testHeaderKey\" does not match"));
+			}
+		}
+	}
+
 	private SinkRecord newRecord(Map<String, Object> value, Iterable<Header> headers) {
 		return new SinkRecord("topic", 1, null, null, null, value, 1L, 1L, TimestampType.NO_TIMESTAMP_TYPE, headers);
 	}
@@ -0,0 +1,213 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.header.ConnectHeaders;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public class HecEventTest {
+
+	private HecEvent<SinkRecord> transformation;
+
+	private static SinkRecord newRecord(Object value, Long timestamp, ConnectHeaders headers) {
+		return new SinkRecord("logs", 0, null, null, null, value, 1L, timestamp,
+				timestamp == null ? TimestampType.NO_TIMESTAMP_TYPE : TimestampType.CREATE_TIME, headers);
+	}
+
+	private static Map<String, Object> value() {
+		Map<String, Object> labels = new LinkedHashMap<>();
+		labels.put("app", "billing");
+		labels.put("zones", Arrays.asList("a", "b"));
+		Map<String, Object> value = new LinkedHashMap<>();
+		value.put("ts", "2021-10-16T13:55:36.123+02:00");
+		value.put("labels", labels);
+		value.put("message", "log \"line\"");
+		return value;
+	}
+
+	@Nested
+	@DisplayName("HecEventTest - Wrapping")
+	class Wrapping {
+
+		@Test
+		@DisplayName("Should write the metadata from the headers, the time and the indexed fields")
+		public void wrap_metadataTimeAndFields() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(HecEvent.TIME_FIELD_CONFIG, "ts");
+			props.put(HecEvent.FIELDS_CONFIG, "labels.app,labels.zones,missing");
+			props.put(HecEvent.HOST_CONFIG, "default-host");
+
+			transformation = new HecEvent<>();
+			transformation.configure(props);
+
+			ConnectHeaders headers = new ConnectHeaders();
+			headers.addString("splunk.header.index", "finance");
+			headers.addString("splunk.header.host", "kube-1");
+			SinkRecord record = newRecord(value(), 1L, headers);
+			SinkRecord wrapped = transformation.apply(record);
+
+			assertEquals("{\"time\":1634385336.123,\"host\":\"kube-1\",\"index\":\"finance\",\"event\":"
+					+ "{\"ts\":\"2021-10-16T13:55:36.123+02:00\",\"labels\":{\"app\":\"billing\",\"zones\":[\"a\",\"b\"]},"
+					+ "\"message\":\"log \\\"line\\\"\"},\"fields\":{\"labels.app\":\"billing\",\"labels.zones\":[\"a\",\"b\"]}}",
+					wrapped.value());
+			assertSame(record.headers(), wrapped.headers());
+			assertEquals(1L, wrapped.timestamp());
+		}
+
+		@Test
+		@DisplayName("Should copy JSON bytes and fall back to the record timestamp")
+		public void wrap_jsonBytes() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(HecEvent.TIME_FIELD_CONFIG, "labels.ts");
+			props.put(HecEvent.SOURCETYPE_CONFIG, "kube:logs");
+			props.put(HecEvent.OUTPUT_CONFIG, HecEvent.OUTPUT_BYTES);
+
+			transformation = new HecEvent<>();
+			transformation.configure(props);
+
+			byte[] json = "{ \"labels\": {\"ts\": \"not a time\"} }".getBytes(StandardCharsets.UTF_8);
+			SinkRecord wrapped = transformation.apply(newRecord(json, 1634385336000L, new ConnectHeaders()));
+			assertArrayEquals(("{\"time\":1634385336,\"sourcetype\":\"kube:logs\",\"event\":"
+					+ "{ \"labels\": {\"ts\": \"not a time\"} }}").getBytes(StandardCharsets.UTF_8),
+					(byte[]) wrapped.value());
+			assertEquals(1, SplunkTestHelper.lastMetricValue(HecEvent.METRIC_GROUP, "records-time-defaulted-total"));
+
+			wrapped = transformation.apply(newRecord("raw\tline".getBytes(StandardCharsets.UTF_8), null,
+					new ConnectHeaders()));
+			assertArrayEquals("{\"sourcetype\":\"kube:logs\",\"event\":\"raw\\tline\"}".getBytes(StandardCharsets.UTF_8),
+					(byte[]) wrapped.value());
+		}
+
+		@Test
+		@DisplayName("Should name the indexed fields with the escaped dots unescaped")
+		public void wrap_fieldsWithEscapedDot() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(HecEvent.FIELDS_CONFIG, "labels.app\\.kubernetes\\.io/name,app\\.version");
+
+			transformation = new HecEvent<>();
+			transformation.configure(props);
+
+			Map<String, Object> labels = new LinkedHashMap<>();
+			labels.put("app.kubernetes.io/name", "billing");
+			Map<String, Object> value = new LinkedHashMap<>();
+			value.put("labels", labels);
+			value.put("app.version", 2);
+			assertEquals("{\"event\":{\"labels\":{\"app.kubernetes.io/name\":\"billing\"},\"app.version\":2},"
+					+ "\"fields\":{\"labels.app.kubernetes.io/name\":\"billing\",\"app.version\":\"2\"}}",
+					transformation.apply(newRecord(value, null, new ConnectHeaders())).value());
+		}
+
+		@Test
+		@DisplayName("Should read epoch times in seconds or milliseconds")
+		public void wrap_epochTimes() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(HecEvent.TIME_FIELD_CONFIG, "ts");
+
+			transformation = new HecEvent<>();
+			transformation.configure(props);
+			Map<String, Object> value = new HashMap<>();
+			value.put("ts", 1634385336.5d);
+			assertEquals("{\"time\":1634385336.500,\"event\":{\"ts\":1.6343853365E9}}",
+					transformation.apply(newRecord(value, null, new ConnectHeaders())).value());
+
+			props.put(HecEvent.TIME_UNIT_CONFIG, HecEvent.TIME_UNIT_MILLISECONDS);
+			transformation = new HecEvent<>();
+			transformation.configure(props);
+			value.put("ts", 1634385336007L);
+			assertEquals("{\"time\":1634385336.007,\"event\":{\"ts\":1634385336007}}",
+					transformation.apply(newRecord(value, null, new ConnectHeaders())).value());
+			value.put("ts", "1634385336007");
+			assertEquals("{\"time\":1634385336.007,\"event\":{\"ts\":\"1634385336007\"}}",
+					transformation.apply(newRecord(value, null, new ConnectHeaders())).value());
+		}
+
+		@Test
+		@DisplayName("Should throw an exception for Struct values")
+		public void wrap_throwsDataException_struct() {
+			transformation = new HecEvent<>();
+			transformation.configure(new HashMap<>());
+
+			Struct value = new Struct(SchemaBuilder.struct().field("message", SchemaBuilder.string()).build())
+					.put("message", "log line");
+			assertThrows(DataException.class, () -> transformation.apply(newRecord(value, null, new ConnectHeaders())));
+		}
+
+		@Test
+		@DisplayName("Should throw an exception for malformed JSON bytes, even without fields to read")
+		public void wrap_throwsDataException_malformedJsonBytes() {
+			transformation = new HecEvent<>();
+			transformation.configure(new HashMap<>());
+
+			for (String json : new String[] { "{\"a\":1", "{\"a\":\"1}", "{\"a\":1} x", "{\"a\":1}}", "{} {}" }) {
+				SinkRecord record = newRecord(json.getBytes(StandardCharsets.UTF_8), null, new ConnectHeaders());
+				assertThrows(DataException.class, () -> transformation.apply(record), json);
+			}
+			assertEquals("{\"event\":{\"a\":1} \n}", transformation.apply(
+					newRecord("{\"a\":1} \n".getBytes(StandardCharsets.UTF_8), null, new ConnectHeaders())).value());
+		}
+	}
+
+	@Nested
+	@DisplayName("HecEventTest - Timestamps")
+	class TimestampParsing {
+
+		@Test
+		@DisplayName("Should parse ISO-8601 date-times as java.time does")
+		public void parse_iso8601() {
+			for (String value : new String[] { "2021-10-16T13:55:36Z", "2021-10-16T13:55:36.1+01:00",
+					"1999-12-31T23:59:59.999999-05:30", "2024-02-29T00:00:00,5Z", "1969-07-20T20:17:40.000Z",
+					"1600-03-01T00:00:00+14:00" }) {
+				assertEquals(OffsetDateTime.parse(value.replace(',', '.')).toInstant().toEpochMilli(),
+						Timestamps.parse(value, false), value);
+			}
+			assertEquals(1634392536000L, Timestamps.parse("2021-10-16 13:55:36", false));
+			assertEquals(1634392500000L, Timestamps.parse("2021-10-16T15:55+0200", false));
+			assertEquals(1634342400000L, Timestamps.parse("2021-10-16", false));
+		}
+
+		@Test
+		@DisplayName("Should reject malformed timestamps")
+		public void parse_invalid() {
+			for (String value : new String[] { "", "now", "2021-02-29T00:00:00Z", "2021-10-16T24:00:00Z",
+					"2021-10-16T13:55:36.Z", "2021-10-16T13:55:36+2", "2021-10-16X13:55", "1634392536.",
+					"1634392536a", "99999999999999999999" }) {
+				assertEquals(Timestamps.INVALID, Timestamps.parse(value, false), value);
+			}
+		}
+
+		@Test
+		@DisplayName("Should write epoch seconds with milliseconds")
+		public void writeEpochSeconds() {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Timestamps.writeEpochSeconds(Timestamps.parse("-1.25", false), out);
+			out.write(' ');
+			Timestamps.writeEpochSeconds(Timestamps.parse("0.0909", false), out);
+			out.write(' ');
+			Timestamps.writeEpochSeconds(0, out);
+			assertEquals("-1.250 0.090 0", new String(out.toByteArray(), StandardCharsets.US_ASCII));
+		}
+	}
+}
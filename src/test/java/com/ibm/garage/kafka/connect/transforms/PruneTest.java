@@ -0,0 +1,174 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public class PruneTest {
+
+	private static final String JSON = "{ \"message\": \"Caf\u00e9 opened\", \"error\": {\"stack\": \"at a\\nat b\", "
+			+ "\"code\": 42}, \"kubernetes\": {\"labels\": {\"app\": \"billing\", \"hash\": \"9f8e\"}, "
+			+ "\"annotations\": {\"blob\": \"QUJD\"}, \"host\": \"kube-1\"}, \"tags\": [\"a\", \"bcdefgh\"] }";
+
+	private Prune<SinkRecord> transformation;
+
+	private static SinkRecord newRecord(Object value) {
+		return new SinkRecord("logs", 0, null, null, null, value, 1L, 1L, TimestampType.CREATE_TIME);
+	}
+
+	private static Map<String, Object> value() {
+		Map<String, Object> labels = new LinkedHashMap<>();
+		labels.put("app", "billing");
+		labels.put("hash", "9f8e");
+		Map<String, Object> annotations = new LinkedHashMap<>();
+		annotations.put("blob", "QUJD");
+		Map<String, Object> kubernetes = new LinkedHashMap<>();
+		kubernetes.put("labels", labels);
+		kubernetes.put("annotations", annotations);
+		kubernetes.put("host", "kube-1");
+		Map<String, Object> error = new LinkedHashMap<>();
+		error.put("stack", "at a\nat b");
+		error.put("code", 42L);
+		Map<String, Object> value = new LinkedHashMap<>();
+		value.put("message", "Caf\u00e9 opened");
+		value.put("error", error);
+		value.put("kubernetes", kubernetes);
+		value.put("tags", Arrays.asList("a", "bcdefgh"));
+		return value;
+	}
+
+	private SinkRecord prune(Map<String, Object> props, Object value) {
+		transformation = new Prune<>();
+		transformation.configure(props);
+		return transformation.apply(newRecord(value));
+	}
+
+	private String pruneJson(Map<String, Object> props) {
+		return new String((byte[]) prune(props, JSON.getBytes(StandardCharsets.UTF_8)).value(), StandardCharsets.UTF_8);
+	}
+
+	@Nested
+	@DisplayName("PruneTest - Configuration")
+	class Configuration {
+
+		@Test
+		@DisplayName("Should throw an exception if nothing is pruned")
+		public void configuration_throwsRuntimeException_nothingToPrune() {
+			transformation = new Prune<>();
+			assertThrows(RuntimeException.class, () -> transformation.configure(new HashMap<>()));
+		}
+
+		@Test
+		@DisplayName("Should throw an exception for Struct values")
+		public void prune_throwsDataException_struct() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Prune.EXCLUDE_CONFIG, "message");
+
+			Struct value = new Struct(SchemaBuilder.struct().field("message", SchemaBuilder.string()).build())
+					.put("message", "log line");
+			assertThrows(DataException.class, () -> prune(props, value));
+		}
+
+		@Test
+		@DisplayName("Should throw an exception for malformed JSON bytes")
+		public void prune_throwsDataException_malformedJson() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Prune.EXCLUDE_CONFIG, "message");
+			props.put(Prune.FIELD_MAX_BYTES_CONFIG, 4);
+
+			for (String json : new String[] { "{\"a\":1", "{\"a\":", "{", "{\"a\":[\"bcdefgh\"",
+					"{\"a\":\"\\uZZZZ\"}" }) {
+				assertThrows(DataException.class, () -> prune(props, json.getBytes(StandardCharsets.UTF_8)), json);
+			}
+		}
+	}
+
+	@Nested
+	@DisplayName("PruneTest - Pruning")
+	@SuppressWarnings("unchecked")
+	class Pruning {
+
+		@Test
+		@DisplayName("Should drop the excluded fields and share the untouched objects")
+		public void prune_excludedFields() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Prune.EXCLUDE_CONFIG, "error.stack,kubernetes.annotations,missing.field");
+
+			Map<String, Object> value = value();
+			Map<String, Object> pruned = (Map<String, Object>) prune(props, value).value();
+			assertEquals("{\"message\":\"Caf\u00e9 opened\",\"error\":{\"code\":42},\"kubernetes\":{\"labels\":"
+					+ "{\"app\":\"billing\",\"hash\":\"9f8e\"},\"host\":\"kube-1\"},\"tags\":[\"a\",\"bcdefgh\"]}",
+					new String(LazyJsonMap.toJson(pruned), StandardCharsets.UTF_8));
+			assertSame(((Map<?, ?>) value.get("kubernetes")).get("labels"),
+					((Map<?, ?>) pruned.get("kubernetes")).get("labels"));
+			assertEquals(value(), value);
+			assertEquals(2, SplunkTestHelper.lastMetricValue(Prune.METRIC_GROUP, "fields-dropped-total"));
+
+			assertEquals("{\"message\":\"Caf\u00e9 opened\",\"error\":{\"code\":42},\"kubernetes\":{\"labels\":"
+					+ "{\"app\": \"billing\", \"hash\": \"9f8e\"},\"host\":\"kube-1\"},\"tags\":[\"a\", \"bcdefgh\"]}",
+					pruneJson(props));
+		}
+
+		@Test
+		@DisplayName("Should keep the included fields only, without the excluded ones")
+		public void prune_includedFields() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Prune.INCLUDE_CONFIG, "message,kubernetes.labels,kubernetes.missing,error.missing");
+			props.put(Prune.EXCLUDE_CONFIG, "kubernetes.labels.hash");
+
+			String expected = "{\"message\":\"Caf\u00e9 opened\",\"kubernetes\":{\"labels\":{\"app\":\"billing\"}}}";
+			assertEquals(expected, new String(LazyJsonMap.toJson((Map<String, Object>) prune(props, value()).value()),
+					StandardCharsets.UTF_8));
+			assertEquals(expected, pruneJson(props));
+		}
+
+		@Test
+		@DisplayName("Should truncate the long strings on a character boundary")
+		public void prune_truncateLongStrings() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Prune.EXCLUDE_CONFIG, "kubernetes");
+			props.put(Prune.FIELD_MAX_BYTES_CONFIG, 4);
+
+			String expected = "{\"message\":\"Caf\",\"error\":{\"stack\":\"at a\",\"code\":42},\"tags\":[\"a\",\"bcde\"]}";
+			assertEquals(expected, new String(LazyJsonMap.toJson((Map<String, Object>) prune(props, value()).value()),
+					StandardCharsets.UTF_8));
+			assertEquals(expected, pruneJson(props));
+			assertEquals(3, SplunkTestHelper.lastMetricValue(Prune.METRIC_GROUP, "fields-truncated-total"));
+		}
+
+		@Test
+		@DisplayName("Should return the record unchanged if nothing is pruned")
+		public void prune_unchangedRecord() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Prune.EXCLUDE_CONFIG, "error.missing");
+			props.put(Prune.FIELD_MAX_BYTES_CONFIG, 1024);
+
+			transformation = new Prune<>();
+			transformation.configure(props);
+			SinkRecord record = newRecord(JSON.getBytes(StandardCharsets.UTF_8));
+			assertSame(record, transformation.apply(record));
+			record = newRecord(value());
+			assertSame(record, transformation.apply(record));
+		}
+	}
+}
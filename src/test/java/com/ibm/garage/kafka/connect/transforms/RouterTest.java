@@ -0,0 +1,194 @@
+/*
+ Copyright 2021 IBM Inc. All rights reserved
+ SPDX-License-Identifier: Apache2.0
+*/
+
+package com.ibm.garage.kafka.connect.transforms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.header.ConnectHeaders;
+import org.apache.kafka.connect.header.Header;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public class RouterTest {
+
+	private static final String INDEX_HEADER = "splunk.header.index";
+	private static final String SOURCETYPE_HEADER = "splunk.header.sourcetype";
+
+	private Router<SinkRecord> transformation;
+
+	private static SinkRecord newRecord(Object value, String headerKey, String headerValue) {
+		ConnectHeaders headers = new ConnectHeaders();
+		if (headerKey != null) {
+			headers.addString(headerKey, headerValue);
+		}
+		return new SinkRecord("logs", 0, null, null, null, value, 1L, 1L, TimestampType.NO_TIMESTAMP_TYPE, headers);
+	}
+
+	private static Map<String, Object> value(String app) {
+		Map<String, Object> labels = new HashMap<>();
+		labels.put("app", app);
+		Map<String, Object> value = new HashMap<>();
+		value.put("labels", labels);
+		value.put("message", "log line");
+		return value;
+	}
+
+	private static Object header(SinkRecord record, String key) {
+		Header header = record.headers().lastWithName(key);
+		return header == null ? null : header.value();
+	}
+
+	@Nested
+	@DisplayName("RouterTest - Configuration")
+	class Configuration {
+
+		@Test
+		@DisplayName("Should throw an exception if a route sets nothing")
+		public void configuration_throwsRuntimeException_routeWithoutTarget() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Router.ROUTES_CONFIG, "billing");
+			props.put("routes.billing.field", "labels.app");
+			props.put("routes.billing.valueEquals", "billing");
+
+			transformation = new Router<>();
+			assertThrows(RuntimeException.class, () -> transformation.configure(props));
+		}
+
+		@Test
+		@DisplayName("Should throw an exception if a route is listed twice")
+		public void configuration_throwsRuntimeException_duplicatedRoute() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Router.ROUTES_CONFIG, "billing,billing");
+			props.put("routes.billing.field", "labels.app");
+			props.put("routes.billing.index", "billing");
+
+			transformation = new Router<>();
+			assertThrows(RuntimeException.class, () -> transformation.configure(props));
+		}
+	}
+
+	@Nested
+	@DisplayName("RouterTest - Routing")
+	class Routing {
+
+		@Test
+		@DisplayName("Should apply the first matching route")
+		public void route_firstMatchingRoute() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Router.ROUTES_CONFIG, "audit,billing,team,fallback");
+			props.put("routes.audit.field", "labels.app");
+			props.put("routes.audit.valuePrefix", "audit-");
+			props.put("routes.audit.index", "audit");
+			props.put("routes.billing.field", "labels.app");
+			props.put("routes.billing.valueEquals", "audit-billing");
+			props.put("routes.billing.index", "never");
+			props.put("routes.team.field", "labels.app");
+			props.put("routes.team.valueIn", "billing,payments");
+			props.put("routes.team.index", "finance");
+			props.put("routes.team.sourcetype", "kube:finance");
+			props.put("routes.team.topic", "finance-logs");
+			props.put("routes.fallback.field", "labels.app");
+			props.put("routes.fallback.valueRegex", ".*");
+			props.put("routes.fallback.index", "main");
+
+			transformation = new Router<>();
+			transformation.configure(props);
+
+			assertEquals("audit", header(transformation.apply(newRecord(value("audit-billing"), null, null)), INDEX_HEADER));
+
+			SinkRecord routed = transformation.apply(newRecord(value("payments"), INDEX_HEADER, "previous"));
+			assertEquals("finance-logs", routed.topic());
+			assertEquals("finance", header(routed, INDEX_HEADER));
+			assertEquals(2, routed.headers().size());
+			assertEquals("kube:finance", header(routed, SOURCETYPE_HEADER));
+
+			routed = transformation.apply(newRecord(value("search"), null, null));
+			assertEquals("logs", routed.topic());
+			assertEquals("main", header(routed, INDEX_HEADER));
+		}
+
+		@Test
+		@DisplayName("Should route by header and by a field of JSON bytes")
+		public void route_headerAndJsonBytes() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Router.ROUTES_CONFIG, "byHeader,byField");
+			props.put("routes.byHeader.headerKey", "tenant");
+			props.put("routes.byHeader.valueIn", "acme,globex");
+			props.put("routes.byHeader.topic", "tenant-logs");
+			props.put("routes.byField.field", "labels.app");
+			props.put("routes.byField.valueEquals", "billing");
+			props.put("routes.byField.topic", "billing-logs");
+
+			transformation = new Router<>();
+			transformation.configure(props);
+
+			byte[] json = "{\"labels\":{\"app\":\"billing\"}}".getBytes(StandardCharsets.UTF_8);
+			assertEquals("tenant-logs", transformation.apply(newRecord(json, "tenant", "globex")).topic());
+			SinkRecord routed = transformation.apply(newRecord(json, "tenant", "initech"));
+			assertEquals("billing-logs", routed.topic());
+			assertSame(json, routed.value());
+		}
+
+		@Test
+		@DisplayName("Should keep or discard the records matching no route")
+		public void route_unmatched() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Router.ROUTES_CONFIG, "billing");
+			props.put("routes.billing.field", "labels.app");
+			props.put("routes.billing.valueEquals", "billing");
+			props.put("routes.billing.index", "finance");
+
+			transformation = new Router<>();
+			transformation.configure(props);
+			SinkRecord record = newRecord(value("search"), null, null);
+			assertSame(record, transformation.apply(record));
+			assertEquals(1, SplunkTestHelper.lastMetricValue(Router.METRIC_GROUP, "records-unmatched-total"));
+
+			props.put(Router.UNMATCHED_CONFIG, Router.UNMATCHED_DISCARD);
+			transformation = new Router<>();
+			transformation.configure(props);
+			assertNull(transformation.apply(record));
+
+			List<SinkRecord> routed = transformation.applyAll(
+					Arrays.asList(record, newRecord(value("billing"), null, null), newRecord(value("other"), null, null)));
+			assertEquals(1, routed.size());
+			assertEquals("finance", header(routed.get(0), INDEX_HEADER));
+		}
+
+		@Test
+		@DisplayName("Should look up hundreds of equality routes")
+		public void route_manyEqualityRoutes() {
+			Map<String, Object> props = new HashMap<>();
+			StringBuilder routes = new StringBuilder();
+			for (int i = 0; i < 500; i++) {
+				routes.append(i == 0 ? "" : ",").append("tenant").append(i);
+				props.put("routes.tenant" + i + ".headerKey", "tenant");
+				props.put("routes.tenant" + i + ".valueEquals", "tenant-" + i);
+				props.put("routes.tenant" + i + ".index", "index_" + i);
+			}
+			props.put(Router.ROUTES_CONFIG, routes.toString());
+
+			transformation = new Router<>();
+			transformation.configure(props);
+
+			assertEquals("index_0", header(transformation.apply(newRecord(value("x"), "tenant", "tenant-0")), INDEX_HEADER));
+			assertEquals("index_499",
+					header(transformation.apply(newRecord(value("x"), "tenant", "tenant-499")), INDEX_HEADER));
+		}
+	}
+}
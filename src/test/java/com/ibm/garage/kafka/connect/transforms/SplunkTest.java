@@ -14,22 +14,39 @@ import static com.ibm.garage.kafka.connect.transforms.SplunkTestHelper.SOURCE_FI
 import static com.ibm.garage.kafka.connect.transforms.SplunkTestHelper.SOURCE_PRESERVE_TRUE;
 import static com.ibm.garage.kafka.connect.transforms.SplunkTestHelper.TEST_PURPOSE;
 import static com.ibm.garage.kafka.connect.transforms.SplunkTestHelper.applyTransformation;
+import static com.ibm.garage.kafka.connect.transforms.SplunkTestHelper.createNestedStruct;
 import static com.ibm.garage.kafka.connect.transforms.SplunkTestHelper.createNestedValueMap;
 import static com.ibm.garage.kafka.connect.transforms.SplunkTestHelper.createValueMap;
 import static com.ibm.garage.kafka.connect.transforms.SplunkTestHelper.getNestedValueMap;
+import static com.ibm.garage.kafka.connect.transforms.SplunkTestHelper.newRecord;
 import static com.ibm.garage.kafka.connect.transforms.SplunkTestHelper.processTransformation;
 import static org.apache.kafka.connect.transforms.util.Requirements.requireMapOrNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
 import org.apache.kafka.connect.header.Header;
 import org.apache.kafka.connect.sink.SinkRecord;
 import org.apache.kafka.connect.transforms.Transformation;
@@ -124,6 +141,37 @@ public class SplunkTest {
 			props.put(Splunk.DEST_KEY_CONFIG, SOURCE_FIELD_NAME);
 
 			this.shouldThrow(props);
+
+			// the escaped dot of source.key is part of the root key named by dest.key
+			props.put(Splunk.SOURCE_KEY_CONFIG, "app\\.name");
+			props.put(Splunk.DEST_KEY_CONFIG, "app.name");
+			this.shouldThrow(props);
+		}
+
+		@Test
+		@DisplayName("Should accept a nested source.key spelled as a dotted dest.key")
+		public void configuration_nestedSourceKey_dottedDestKey() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+			props.put(Splunk.DEST_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			Map<String, Object> value = processTransformation(transformation, createNestedValueMap());
+			assertEquals(SOURCE_FIELD_VALUE, value.get(NESTED_SOURCE_FIELD_NAME));
+			assertFalse(getNestedValueMap(value).containsKey(SOURCE_FIELD_NAME));
+		}
+
+		@Test
+		@DisplayName("Should throw an exception if the regex.format ends with an unescaped dollar sign")
+		public void configuration_throwsRuntimeException_regexFormat_badFormat() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(Splunk.REGEX_PATTERN_CONFIG, "^(.*)$");
+			props.put(Splunk.REGEX_FORMAT_CONFIG, "cloud_$");
+
+			this.shouldThrow(props);
 		}
 
 		private void shouldThrow(Map<String, ?> props) {
@@ -238,6 +286,47 @@ public class SplunkTest {
 			assertEquals(SOURCE_FIELD_VALUE, resultValueMap.get(DEST_FIELD_NAME));
 		}
 
+		@Test
+		@DisplayName("Should rename a nested source.key field whose key contains an escaped dot")
+		public void message_returnRenamedField_escapedDotSourceKey() {
+			final String DOTTED_FIELD_NAME = "my." + SOURCE_FIELD_NAME;
+
+			Map<String, String> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_PARENT_OBJECT + ".my\\." + SOURCE_FIELD_NAME);
+			props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			Map<String, Object> valueMap = createNestedValueMap(DOTTED_FIELD_NAME, SOURCE_FIELD_VALUE);
+
+			Map<String, Object> resultValueMap = processTransformation(transformation, valueMap);
+			Map<String, Object> nestedResultValueMap = getNestedValueMap(resultValueMap);
+
+			assertFalse(nestedResultValueMap.containsKey(DOTTED_FIELD_NAME));
+			assertEquals(SOURCE_FIELD_VALUE, resultValueMap.get(DEST_FIELD_NAME));
+		}
+
+		@Test
+		@DisplayName("Should rename a source.key field (not nested!) whose key contains an escaped dot")
+		public void message_returnRenamedField_escapedDotRootSourceKey() {
+			final String DOTTED_FIELD_NAME = SOURCE_FIELD_PARENT_OBJECT + "." + SOURCE_FIELD_NAME;
+
+			Map<String, String> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_PARENT_OBJECT + "\\." + SOURCE_FIELD_NAME);
+			props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			Map<String, Object> valueMap = createValueMap(DOTTED_FIELD_NAME, SOURCE_FIELD_VALUE);
+
+			Map<String, Object> resultValueMap = processTransformation(transformation, valueMap);
+
+			assertFalse(resultValueMap.containsKey(DOTTED_FIELD_NAME));
+			assertEquals(SOURCE_FIELD_VALUE, resultValueMap.get(DEST_FIELD_NAME));
+		}
+
 		@Test
 		@DisplayName("Should return unchanged message if the source.key field does not exist")
 		public void message_returnUnchangedMessage() {
@@ -540,6 +629,37 @@ public class SplunkTest {
 				assertEquals(EXPECTED_RESULT, headerIterator.next().value());
 			}
 
+			@Test
+			@DisplayName("Should format the value exactly like String.matches and String.replaceAll do")
+			public void message_returnRegexFormat_sameAsReplaceAll() {
+				final String[][] CASES = {
+						{ "^(.*)$", "my_custom_$1_format", "source_value" },
+						{ "(.*)", "[$1]", "source_value" },
+						{ "(.*?)", "[$1]", "abc" },
+						{ "a|ab", "x", "ab" },
+						{ "(a)|(b)", "$1-$2", "b" },
+						{ "(?<app>[^-]+)-(?<env>.*)", "${env}_${app}", "billing-prod" },
+						{ "(\\d)(\\d)", "$12\\$", "12" },
+						{ "x*", "-", "" } };
+
+				for (String[] testCase : CASES) {
+					Map<String, Object> props = new HashMap<>();
+					props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+					props.put(Splunk.REGEX_PATTERN_CONFIG, testCase[0]);
+					props.put(Splunk.REGEX_FORMAT_CONFIG, testCase[1]);
+
+					transformation = new Splunk<>();
+					transformation.configure(props);
+
+					Map<String, Object> valueMap = createValueMap(SOURCE_FIELD_NAME, testCase[2]);
+
+					Map<String, Object> resultValueMap = processTransformation(transformation, valueMap);
+
+					assertTrue(testCase[2].matches(testCase[0]));
+					assertEquals(testCase[2].replaceAll(testCase[0], testCase[1]), resultValueMap.get(SOURCE_FIELD_NAME));
+				}
+			}
+
 			@Test
 			@DisplayName("Should return original value if regex does not match and no default value is specified")
 			public void message_returnOriginalNoRegexFormat() {
@@ -797,5 +917,1316 @@ public class SplunkTest {
 			assertTrue(headerIterator.hasNext());
 			assertEquals(SOURCE_FIELD_VALUE, headerIterator.next().value());
 		}
+
+		@Test
+		@DisplayName("Should replace the existing headers with the same key in place")
+		public void message_returnReplacedHeader() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+			props.put(Splunk.DEST_TO_HEADER_CONFIG, DEST_TO_HEADER_TRUE);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			SinkRecord record = newRecord(createValueMap());
+			record.headers().addString(DEST_FIELD_NAME, "old").addString("other", "value").addString(DEST_FIELD_NAME,
+					"older");
+
+			SinkRecord result = transformation.apply(record);
+
+			Iterator<Header> headerIterator = result.headers().iterator();
+			Header header = headerIterator.next();
+			assertEquals(DEST_FIELD_NAME, header.key());
+			assertEquals(SOURCE_FIELD_VALUE, header.value());
+			assertEquals("other", headerIterator.next().key());
+			assertFalse(headerIterator.hasNext());
+		}
+
+		@Test
+		@DisplayName("Should share the header of a value between the records, up to header.cache.size values")
+		public void message_returnSharedHeader() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(Splunk.DEST_TO_HEADER_CONFIG, DEST_TO_HEADER_TRUE);
+			props.put(Splunk.HEADER_CACHE_SIZE_CONFIG, 1);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			Header first = applyTransformation(transformation, createValueMap()).headers().lastWithName(SOURCE_FIELD_NAME);
+			Header second = applyTransformation(transformation, createValueMap()).headers().lastWithName(SOURCE_FIELD_NAME);
+			Header other = applyTransformation(transformation, createValueMap(SOURCE_FIELD_NAME, "other"))
+					.headers().lastWithName(SOURCE_FIELD_NAME);
+
+			assertSame(first, second);
+			assertEquals("other", other.value());
+			assertNotSame(other, applyTransformation(transformation, createValueMap(SOURCE_FIELD_NAME, "other"))
+					.headers().lastWithName(SOURCE_FIELD_NAME));
+		}
+	}
+
+	@Nested
+	@DisplayName("SplunkTest - Rules")
+	class Rules {
+
+		private static final String INDEX_RULE = "index";
+		private static final String HOST_RULE = "host";
+
+		@Test
+		@DisplayName("Should throw an exception if a rule has no source.key")
+		public void configuration_throwsRuntimeException_rule_sourceKey_Null() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.RULES_CONFIG, INDEX_RULE);
+			props.put(ruleKey(INDEX_RULE, Splunk.DEST_KEY_CONFIG), DEST_FIELD_NAME);
+
+			this.shouldThrow(props);
+		}
+
+		@Test
+		@DisplayName("Should throw an exception if source.key is combined with rules")
+		public void configuration_throwsRuntimeException_rules_and_sourceKey() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.RULES_CONFIG, INDEX_RULE);
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(ruleKey(INDEX_RULE, Splunk.SOURCE_KEY_CONFIG), SOURCE_FIELD_NAME);
+
+			this.shouldThrow(props);
+		}
+
+		@Test
+		@DisplayName("Should throw an exception if any other rule key is combined with rules")
+		public void configuration_throwsRuntimeException_rules_and_ruleKeys() {
+			for (String ruleKey : new String[] { Splunk.REGEX_PATTERN_CONFIG, Splunk.REGEX_FORMAT_CONFIG,
+					Splunk.DEST_KEY_CONFIG, Splunk.DEST_TO_HEADER_CONFIG, Splunk.SOURCE_PRESERVE_CONFIG,
+					Splunk.REGEX_OUTPUTS_CONFIG + ".index" }) {
+				Map<String, Object> props = new HashMap<>();
+				props.put(Splunk.RULES_CONFIG, INDEX_RULE);
+				props.put(ruleKey(INDEX_RULE, Splunk.SOURCE_KEY_CONFIG), SOURCE_FIELD_NAME);
+				props.put(ruleKey, "true");
+
+				this.shouldThrow(props);
+			}
+		}
+
+		@Test
+		@DisplayName("Should throw an exception if a rule is listed twice")
+		public void configuration_throwsRuntimeException_rules_duplicated() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.RULES_CONFIG, INDEX_RULE + "," + INDEX_RULE);
+			props.put(ruleKey(INDEX_RULE, Splunk.SOURCE_KEY_CONFIG), SOURCE_FIELD_NAME);
+
+			this.shouldThrow(props);
+		}
+
+		@Test
+		@DisplayName("Should apply all rules in the configured order")
+		public void message_returnAllRulesApplied() {
+			final String HOST_FIELD_NAME = "host";
+
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.RULES_CONFIG, INDEX_RULE + "," + HOST_RULE);
+			props.put(ruleKey(INDEX_RULE, Splunk.SOURCE_KEY_CONFIG), NESTED_SOURCE_FIELD_NAME);
+			props.put(ruleKey(INDEX_RULE, Splunk.SOURCE_PRESERVE_CONFIG), SOURCE_PRESERVE_TRUE);
+			props.put(ruleKey(INDEX_RULE, Splunk.DEST_KEY_CONFIG), DEST_FIELD_NAME);
+			props.put(ruleKey(INDEX_RULE, Splunk.DEST_TO_HEADER_CONFIG), DEST_TO_HEADER_TRUE);
+			props.put(ruleKey(INDEX_RULE, Splunk.REGEX_PATTERN_CONFIG), "^(.*)$");
+			props.put(ruleKey(INDEX_RULE, Splunk.REGEX_FORMAT_CONFIG), "index_$1");
+			props.put(ruleKey(HOST_RULE, Splunk.SOURCE_KEY_CONFIG), NESTED_SOURCE_FIELD_NAME);
+			props.put(ruleKey(HOST_RULE, Splunk.DEST_KEY_CONFIG), HOST_FIELD_NAME);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			Map<String, Object> valueMap = createNestedValueMap();
+
+			SinkRecord result = applyTransformation(transformation, valueMap);
+
+			Map<String, Object> resultValueMap = requireMapOrNull(result.value(), TEST_PURPOSE);
+			assertFalse(getNestedValueMap(resultValueMap).containsKey(SOURCE_FIELD_NAME));
+			assertFalse(resultValueMap.containsKey(DEST_FIELD_NAME));
+			assertEquals(SOURCE_FIELD_VALUE, resultValueMap.get(HOST_FIELD_NAME));
+
+			Iterator<Header> headerIterator = result.headers().allWithName(DEST_FIELD_NAME);
+			assertTrue(headerIterator.hasNext());
+			assertEquals("index_" + SOURCE_FIELD_VALUE, headerIterator.next().value());
+		}
+
+		@Test
+		@DisplayName("Should apply the remaining rules if one of the rules does not match")
+		public void message_returnMatchingRulesApplied() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.RULES_CONFIG, INDEX_RULE + "," + HOST_RULE);
+			props.put(ruleKey(INDEX_RULE, Splunk.SOURCE_KEY_CONFIG), "missing");
+			props.put(ruleKey(INDEX_RULE, Splunk.DEST_KEY_CONFIG), "missing_renamed");
+			props.put(ruleKey(HOST_RULE, Splunk.SOURCE_KEY_CONFIG), SOURCE_FIELD_NAME);
+			props.put(ruleKey(HOST_RULE, Splunk.DEST_KEY_CONFIG), DEST_FIELD_NAME);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			Map<String, Object> valueMap = createValueMap();
+
+			Map<String, Object> resultValueMap = processTransformation(transformation, valueMap);
+
+			assertFalse(resultValueMap.containsKey("missing_renamed"));
+			assertFalse(resultValueMap.containsKey(SOURCE_FIELD_NAME));
+			assertEquals(SOURCE_FIELD_VALUE, resultValueMap.get(DEST_FIELD_NAME));
+		}
+
+		@Test
+		@DisplayName("Should apply rules whose source.key fields share the same parent objects")
+		public void message_returnRulesApplied_sharedNestedParents() {
+			final String POD_RULE = "pod";
+			final String NAMESPACE_RULE = "namespace";
+
+			Map<String, Object> pod = createValueMap("name", "my-pod");
+			Map<String, Object> kubernetes = createValueMap("pod", pod);
+			kubernetes.put("namespace", "my-namespace");
+			Map<String, Object> valueMap = createValueMap("kubernetes", kubernetes);
+
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.RULES_CONFIG, POD_RULE + "," + NAMESPACE_RULE);
+			props.put(ruleKey(POD_RULE, Splunk.SOURCE_KEY_CONFIG), "kubernetes.pod.name");
+			props.put(ruleKey(POD_RULE, Splunk.DEST_KEY_CONFIG), "pod");
+			props.put(ruleKey(NAMESPACE_RULE, Splunk.SOURCE_KEY_CONFIG), "kubernetes.namespace");
+			props.put(ruleKey(NAMESPACE_RULE, Splunk.DEST_KEY_CONFIG), "namespace");
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			Map<String, Object> resultValueMap = processTransformation(transformation, valueMap);
+
+			assertEquals("my-pod", resultValueMap.get("pod"));
+			assertEquals("my-namespace", resultValueMap.get("namespace"));
+			assertTrue(pod.isEmpty());
+			assertFalse(kubernetes.containsKey("namespace"));
+		}
+
+		@Test
+		@DisplayName("Should not apply a rule whose parent object has been replaced by the dest.key of a previous rule")
+		public void message_returnRulesApplied_parentReplacedByDestKey() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.RULES_CONFIG, INDEX_RULE + "," + HOST_RULE);
+			props.put(ruleKey(INDEX_RULE, Splunk.SOURCE_KEY_CONFIG), "index");
+			props.put(ruleKey(INDEX_RULE, Splunk.DEST_KEY_CONFIG), SOURCE_FIELD_PARENT_OBJECT);
+			props.put(ruleKey(HOST_RULE, Splunk.SOURCE_KEY_CONFIG), NESTED_SOURCE_FIELD_NAME);
+			props.put(ruleKey(HOST_RULE, Splunk.DEST_KEY_CONFIG), DEST_FIELD_NAME);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			Map<String, Object> valueMap = createNestedValueMap();
+			valueMap.put("index", "my-index");
+
+			Map<String, Object> resultValueMap = processTransformation(transformation, valueMap);
+
+			assertEquals("my-index", resultValueMap.get(SOURCE_FIELD_PARENT_OBJECT));
+			assertFalse(resultValueMap.containsKey(DEST_FIELD_NAME));
+		}
+
+		private String ruleKey(String rule, String key) {
+			return Splunk.RULES_CONFIG + "." + rule + "." + key;
+		}
+
+		private void shouldThrow(Map<String, ?> props) {
+			transformation = new Splunk<>();
+
+			assertThrows(RuntimeException.class, () -> {
+				transformation.configure(props);
+			});
+		}
+	}
+
+	@Nested
+	@DisplayName("SplunkTest - Struct")
+	class WithSchema {
+
+		@Test
+		@DisplayName("Should move and rename nested source.key field of a Struct to header")
+		public void message_returnRenamedHeaderField_struct() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+			props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+			props.put(Splunk.DEST_TO_HEADER_CONFIG, DEST_TO_HEADER_TRUE);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			SinkRecord result = transformation.apply(newRecord(createNestedStruct(SOURCE_FIELD_NAME, SOURCE_FIELD_VALUE)));
+
+			Struct resultValue = (Struct) result.value();
+			assertEquals(result.valueSchema(), resultValue.schema());
+			assertNull(resultValue.schema().field(SOURCE_FIELD_PARENT_OBJECT).schema().field(SOURCE_FIELD_NAME));
+			assertNull(resultValue.schema().field(DEST_FIELD_NAME));
+			assertEquals(1, resultValue.get("id"));
+
+			Iterator<Header> headerIterator = result.headers().allWithName(DEST_FIELD_NAME);
+			assertTrue(headerIterator.hasNext());
+			assertEquals(SOURCE_FIELD_VALUE, headerIterator.next().value());
+		}
+
+		@Test
+		@DisplayName("Should apply regex & format to the nested source.key field of a Struct and rename it")
+		public void message_returnRegexFormat_struct() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+			props.put(Splunk.SOURCE_PRESERVE_CONFIG, SOURCE_PRESERVE_TRUE);
+			props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+			props.put(Splunk.REGEX_PATTERN_CONFIG, "^(.*)$");
+			props.put(Splunk.REGEX_FORMAT_CONFIG, "my_custom_$1_format");
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			SinkRecord result = transformation.apply(newRecord(createNestedStruct(SOURCE_FIELD_NAME, SOURCE_FIELD_VALUE)));
+
+			Struct resultValue = (Struct) result.value();
+			assertEquals(SOURCE_FIELD_VALUE, resultValue.getStruct(SOURCE_FIELD_PARENT_OBJECT).get(SOURCE_FIELD_NAME));
+			assertEquals("my_custom_" + SOURCE_FIELD_VALUE + "_format", resultValue.get(DEST_FIELD_NAME));
+		}
+
+		@Test
+		@DisplayName("Should reuse the derived schema for records with the same schema")
+		public void message_returnCachedSchema_struct() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+			props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			SinkRecord first = transformation.apply(newRecord(createNestedStruct(SOURCE_FIELD_NAME, "first")));
+			SinkRecord second = transformation.apply(newRecord(createNestedStruct(SOURCE_FIELD_NAME, "second")));
+
+			assertSame(first.valueSchema(), second.valueSchema());
+			assertEquals("second", ((Struct) second.value()).get(DEST_FIELD_NAME));
+		}
+
+		@Test
+		@DisplayName("Should return original record unchanged if regex does not match the Struct field")
+		public void message_returnOrigRecordNoPatternMatch_struct() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+			props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+			props.put(Splunk.REGEX_PATTERN_CONFIG, "noregex");
+			props.put(Splunk.REGEX_FORMAT_CONFIG, "cloud_$1_logdna");
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			SinkRecord record = newRecord(createNestedStruct(SOURCE_FIELD_NAME, SOURCE_FIELD_VALUE));
+			SinkRecord result = transformation.apply(record);
+
+			assertSame(record, result);
+		}
+	}
+
+	@Nested
+	@DisplayName("SplunkTest - Metrics")
+	class Metrics {
+
+		@Test
+		@DisplayName("Should count the records and the outcome of the rules")
+		public void metrics_countRecordsAndOutcomes() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+			props.put(Splunk.DEST_TO_HEADER_CONFIG, DEST_TO_HEADER_TRUE);
+			props.put(Splunk.REGEX_PATTERN_CONFIG, "^prod-(.*)$");
+			props.put(Splunk.REGEX_FORMAT_CONFIG, "$1");
+			props.put(Splunk.REGEX_DEFAULT_VALUE_CONFIG, "unknown");
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			applyTransformation(transformation, createValueMap(SOURCE_FIELD_NAME, "prod-index"));
+			applyTransformation(transformation, createValueMap(SOURCE_FIELD_NAME, "dev-index"));
+			applyTransformation(transformation, createValueMap("other", "prod-index"));
+			applyTransformation(transformation, new HashMap<>());
+
+			assertEquals(4, metricValue("records-in-total"));
+			assertEquals(2, metricValue("records-modified-total"));
+			assertEquals(1, metricValue("records-empty-total"));
+			assertEquals(1, metricValue("rule-modified-total"));
+			assertEquals(1, metricValue("rule-defaulted-total"));
+			assertEquals(1, metricValue("rule-source-key-not-found-total"));
+			assertEquals(2, metricValue("rule-moved-to-header-total"));
+			assertTrue(metricValue("apply-latency-max-ns") > 0);
+		}
+
+		@Test
+		@DisplayName("Should publish the metrics through JMX until the transformation is closed")
+		public void metrics_publishedThroughJmx() throws Exception {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+			applyTransformation(transformation, createValueMap());
+
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName names = new ObjectName(TransformMetrics.JMX_PREFIX + ":type=" + Splunk.METRIC_GROUP + ",*");
+			int registered = server.queryNames(names, null).size();
+			assertTrue(registered > 0);
+
+			transformation.close();
+			assertEquals(registered - 1, server.queryNames(names, null).size());
+		}
+
+		private double metricValue(String name) {
+			return SplunkTestHelper.lastMetricValue(Splunk.METRIC_GROUP, name);
+		}
+	}
+
+	@Nested
+	@DisplayName("SplunkTest - Trace")
+	class Trace {
+
+		@Test
+		@DisplayName("Should log the rule outcomes and values of 1 in N records")
+		public void trace_logSampledRecords() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+			props.put(Splunk.TRACE_SAMPLE_RATE_CONFIG, 2);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			try (SplunkTestHelper.LogMessages log = SplunkTestHelper.captureLog(Splunk.class)) {
+				for (int i = 0; i < 4; i++) {
+					Map<String, Object> result = processTransformation(transformation, createValueMap());
+					assertEquals(SOURCE_FIELD_VALUE, result.get(DEST_FIELD_NAME));
+				}
+
+				assertEquals(2, log.messages().size());
+				assertTrue(log.messages().get(0).contains("rule \"" + SOURCE_FIELD_NAME + "\""));
+				assertTrue(log.messages().get(0).contains("\"" + SOURCE_FIELD_VALUE + "\" -> \"" + SOURCE_FIELD_VALUE + "\""));
+			}
+		}
+
+		@Test
+		@DisplayName("Should not log anything when the trace is disabled")
+		public void trace_disabled() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			try (SplunkTestHelper.LogMessages log = SplunkTestHelper.captureLog(Splunk.class)) {
+				processTransformation(transformation, createValueMap());
+				applyTransformation(transformation, createValueMap("other", "value"));
+
+				assertTrue(log.messages().isEmpty());
+			}
+		}
+	}
+
+	@Nested
+	@DisplayName("SplunkTest - Copy on write")
+	class CopyOnWrite {
+
+		@Test
+		@DisplayName("Should leave the original value and headers unchanged and share the untouched objects")
+		public void message_returnCopiedPath_copyOnWrite() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+			props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+			props.put(Splunk.DEST_TO_HEADER_CONFIG, DEST_TO_HEADER_TRUE);
+			props.put(Splunk.COPY_ON_WRITE_CONFIG, Boolean.TRUE);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			Map<String, Object> valueMap = createNestedValueMap();
+			Map<String, Object> untouchedValueMap = createValueMap();
+			valueMap.put("untouched", untouchedValueMap);
+			SinkRecord record = newRecord(valueMap);
+
+			SinkRecord result = transformation.apply(record);
+			Map<String, Object> resultValueMap = requireMapOrNull(result.value(), TEST_PURPOSE);
+
+			assertEquals(SOURCE_FIELD_VALUE, getNestedValueMap(valueMap).get(SOURCE_FIELD_NAME));
+			assertTrue(record.headers().isEmpty());
+			assertFalse(getNestedValueMap(resultValueMap).containsKey(SOURCE_FIELD_NAME));
+			assertSame(untouchedValueMap, resultValueMap.get("untouched"));
+			assertEquals(SOURCE_FIELD_VALUE, result.headers().lastWithName(DEST_FIELD_NAME).value());
+		}
+
+		@Test
+		@DisplayName("Should share the source.key object if it is preserved")
+		public void message_returnSharedSourceObject_copyOnWrite() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.RULES_CONFIG, "first,second");
+			props.put(Splunk.RULES_CONFIG + ".first." + Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+			props.put(Splunk.RULES_CONFIG + ".first." + Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+			props.put(Splunk.RULES_CONFIG + ".first." + Splunk.SOURCE_PRESERVE_CONFIG, SOURCE_PRESERVE_TRUE);
+			props.put(Splunk.RULES_CONFIG + ".second." + Splunk.SOURCE_KEY_CONFIG, DEST_FIELD_NAME);
+			props.put(Splunk.RULES_CONFIG + ".second." + Splunk.REGEX_PATTERN_CONFIG, "^sourceField (.*)$");
+			props.put(Splunk.RULES_CONFIG + ".second." + Splunk.REGEX_FORMAT_CONFIG, "$1");
+			props.put(Splunk.COPY_ON_WRITE_CONFIG, Boolean.TRUE);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			Map<String, Object> valueMap = createNestedValueMap();
+			Map<String, Object> resultValueMap = processTransformation(transformation, valueMap);
+
+			assertFalse(valueMap.containsKey(DEST_FIELD_NAME));
+			assertEquals("value", resultValueMap.get(DEST_FIELD_NAME));
+			assertSame(getNestedValueMap(valueMap), getNestedValueMap(resultValueMap));
+		}
+	}
+
+	@Nested
+	@DisplayName("SplunkTest - JSON bytes")
+	class JsonBytes {
+
+		@Test
+		@DisplayName("Should move and rename nested source.key field to header and copy the rest verbatim")
+		public void message_returnRenamedHeaderField_json() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+			props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+			props.put(Splunk.DEST_TO_HEADER_CONFIG, DEST_TO_HEADER_TRUE);
+
+			SinkRecord result = apply(props,
+					"{ \"id\": 1, \"nested\": { \"sourceField\": \"sourceField value\", \"other\": [1, {\"a\": \"}\"}] }, \"tail\" : {\"b\":  null} }");
+
+			assertEquals("{\"id\": 1,\"nested\": {\"other\": [1, {\"a\": \"}\"}]},\"tail\" : {\"b\":  null}}", json(result));
+			assertEquals(SOURCE_FIELD_VALUE, result.headers().lastWithName(DEST_FIELD_NAME).value());
+		}
+
+		@Test
+		@DisplayName("Should apply regex & format in place and decode and encode escaped strings")
+		public void message_returnRegexFormat_json() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(Splunk.REGEX_PATTERN_CONFIG, "^(.*) \"(.*)\"$");
+			props.put(Splunk.REGEX_FORMAT_CONFIG, "$2\t$1");
+
+			SinkRecord result = apply(props, "{\"sourceField\":\"caf\\u00e9 \\\"quoted\\\"\",\"n\":2}");
+
+			assertEquals("{\"sourceField\":\"quoted\\tcaf\u00e9\",\"n\":2}", json(result));
+		}
+
+		@Test
+		@DisplayName("Should apply several rules like on a Map")
+		public void message_returnRules_json() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.RULES_CONFIG, "index,copy");
+			props.put(Splunk.RULES_CONFIG + ".index." + Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+			props.put(Splunk.RULES_CONFIG + ".index." + Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+			props.put(Splunk.RULES_CONFIG + ".index." + Splunk.REGEX_PATTERN_CONFIG, "^prod-(.*)$");
+			props.put(Splunk.RULES_CONFIG + ".index." + Splunk.REGEX_FORMAT_CONFIG, "$1");
+			props.put(Splunk.RULES_CONFIG + ".index." + Splunk.REGEX_DEFAULT_VALUE_CONFIG, "main");
+			props.put(Splunk.RULES_CONFIG + ".copy." + Splunk.SOURCE_KEY_CONFIG, DEST_FIELD_NAME);
+			props.put(Splunk.RULES_CONFIG + ".copy." + Splunk.DEST_KEY_CONFIG, "copy");
+			props.put(Splunk.RULES_CONFIG + ".copy." + Splunk.SOURCE_PRESERVE_CONFIG, SOURCE_PRESERVE_TRUE);
+
+			SinkRecord result = apply(props, "{\"nested\":{\"sourceField\":\"dev-app\"},\"destField\":0}");
+
+			assertEquals("{\"nested\":{},\"destField\":\"main\",\"copy\":\"main\"}", json(result));
+		}
+
+		@Test
+		@DisplayName("Should return the original record if the rules do not apply or the object is empty")
+		public void message_returnOrigRecord_json() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			for (String json : new String[] { "{}", " {\"nested\": {}}", "{\"nested\": \"string\"}",
+					"{\"nested\": {\"sourceField\": {\"object\": true}}}" }) {
+				SinkRecord record = newRecord(json.getBytes(StandardCharsets.UTF_8));
+				assertSame(record, transformation.apply(record));
+			}
+		}
+
+		@Test
+		@DisplayName("Should read the JSON numbers as in the map mode")
+		public void message_parseNumbers_json() {
+			String[] numbers = { "1.50", "-0.5E-3", "1e3", "12345678901234567890", "0" };
+			String[] expected = { "1.5", "-5.0E-4", "1000.0", "12345678901234567890", "0" };
+			for (String jsonMode : new String[] { Splunk.JSON_MODE_SCAN, Splunk.JSON_MODE_MAP }) {
+				Map<String, Object> props = new HashMap<>();
+				props.put(Splunk.JSON_MODE_CONFIG, jsonMode);
+				props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+				props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+
+				for (int i = 0; i < numbers.length; i++) {
+					assertEquals("{\"destField\":\"" + expected[i] + "\"}",
+							json(apply(props, "{\"sourceField\":" + numbers[i] + "}")), jsonMode + " " + numbers[i]);
+				}
+				assertThrows(DataException.class, () -> apply(props, "{\"sourceField\":01}"), jsonMode);
+			}
+		}
+
+		@Test
+		@DisplayName("Should throw an exception if the value is not a JSON object")
+		public void message_throwsDataException_json() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			assertThrows(DataException.class, () -> transformation.apply(newRecord("[1]".getBytes(StandardCharsets.UTF_8))));
+			assertThrows(DataException.class,
+					() -> transformation.apply(newRecord("{\"a\": \"b".getBytes(StandardCharsets.UTF_8))));
+			assertThrows(DataException.class, () -> transformation
+					.apply(newRecord("{\"sourceField\": \"\\uZZZZ\"}".getBytes(StandardCharsets.UTF_8))));
+		}
+
+		private SinkRecord apply(Map<String, Object> props, String json) {
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			return transformation.apply(newRecord(json.getBytes(StandardCharsets.UTF_8)));
+		}
+
+		private String json(SinkRecord record) {
+			return new String((byte[]) record.value(), StandardCharsets.UTF_8);
+		}
+	}
+
+	@Nested
+	@DisplayName("SplunkTest - Lazy JSON map")
+	class LazyJson {
+
+		@Test
+		@DisplayName("Should move nested source.key field to header and copy the untouched values verbatim")
+		public void message_returnRenamedHeaderField_lazyJson() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.JSON_MODE_CONFIG, Splunk.JSON_MODE_MAP);
+			props.put(Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+			props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+			props.put(Splunk.DEST_TO_HEADER_CONFIG, DEST_TO_HEADER_TRUE);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+			SinkRecord result = transformation.apply(newRecord(
+					("{ \"id\": 1, \"nested\": { \"sourceField\": \"sourceField value\", \"other\": [1, {\"a\": \"}\"}] }, \"tail\" : {\"b\":  null} }")
+							.getBytes(StandardCharsets.UTF_8)));
+
+			assertEquals("{\"id\":1,\"nested\":{\"other\":[1, {\"a\": \"}\"}]},\"tail\":{\"b\":  null}}",
+					new String((byte[]) result.value(), StandardCharsets.UTF_8));
+			assertEquals(SOURCE_FIELD_VALUE, result.headers().lastWithName(DEST_FIELD_NAME).value());
+		}
+
+		@Test
+		@DisplayName("Should write the same JSON as the byte scan, copying the changed maps if asked to")
+		public void message_returnRules_lazyJson() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.JSON_MODE_CONFIG, Splunk.JSON_MODE_MAP);
+			props.put(Splunk.COPY_ON_WRITE_CONFIG, "true");
+			props.put(Splunk.RULES_CONFIG, "index,copy");
+			props.put(Splunk.RULES_CONFIG + ".index." + Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+			props.put(Splunk.RULES_CONFIG + ".index." + Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+			props.put(Splunk.RULES_CONFIG + ".index." + Splunk.REGEX_PATTERN_CONFIG, "^prod-(.*)$");
+			props.put(Splunk.RULES_CONFIG + ".index." + Splunk.REGEX_FORMAT_CONFIG, "$1");
+			props.put(Splunk.RULES_CONFIG + ".index." + Splunk.REGEX_DEFAULT_VALUE_CONFIG, "main");
+			props.put(Splunk.RULES_CONFIG + ".copy." + Splunk.SOURCE_KEY_CONFIG, DEST_FIELD_NAME);
+			props.put(Splunk.RULES_CONFIG + ".copy." + Splunk.DEST_KEY_CONFIG, "copy");
+			props.put(Splunk.RULES_CONFIG + ".copy." + Splunk.SOURCE_PRESERVE_CONFIG, SOURCE_PRESERVE_TRUE);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+			byte[] value = "{\"nested\":{\"sourceField\":\"dev-app\"},\"destField\":0,\"n\":[1.5e3,true]}"
+					.getBytes(StandardCharsets.UTF_8);
+			SinkRecord result = transformation.apply(newRecord(value.clone()));
+
+			assertEquals("{\"nested\":{},\"destField\":\"main\",\"n\":[1500.0,true],\"copy\":\"main\"}",
+					new String((byte[]) result.value(), StandardCharsets.UTF_8));
+		}
+
+		@Test
+		@DisplayName("Should return the original record if the rules do not apply or the object is empty")
+		public void message_returnOrigRecord_lazyJson() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.JSON_MODE_CONFIG, Splunk.JSON_MODE_MAP);
+			props.put(Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			for (String json : new String[] { "{}", " {\"nested\": {}}", "{\"nested\": \"string\"}",
+					"{\"nested\": {\"sourceField\": {\"object\": true}}}" }) {
+				SinkRecord record = newRecord(json.getBytes(StandardCharsets.UTF_8));
+				assertSame(record, transformation.apply(record));
+			}
+			assertThrows(DataException.class,
+					() -> transformation.apply(newRecord("{\"a\": \"b".getBytes(StandardCharsets.UTF_8))));
+			assertThrows(DataException.class, () -> transformation.apply(
+					newRecord("{\"nested\": {\"sourceField\": \"\\u12G4\"}}".getBytes(StandardCharsets.UTF_8))));
+		}
+
+		@Test
+		@DisplayName("Should read the JSON numbers which do not fit a long or a double, and only JSON numbers")
+		public void message_parseNumbers_lazyJson() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.JSON_MODE_CONFIG, Splunk.JSON_MODE_MAP);
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			String[] numbers = { "12345678901234567890", "-9223372036854775808", "1e400", "-0.5E-3", "0" };
+			String[] expected = { "12345678901234567890", "-9223372036854775808", "1E+400", "-5.0E-4", "0" };
+			for (int i = 0; i < numbers.length; i++) {
+				SinkRecord result = transformation
+						.apply(newRecord(("{\"sourceField\": " + numbers[i] + "}").getBytes(StandardCharsets.UTF_8)));
+				assertEquals("{\"destField\":\"" + expected[i] + "\"}",
+						new String((byte[]) result.value(), StandardCharsets.UTF_8));
+			}
+
+			for (String number : new String[] { "1.5d", "1f", "0x1p3", "01", "1.", "-", "+1", "1e" }) {
+				assertThrows(DataException.class, () -> transformation
+						.apply(newRecord(("{\"sourceField\": " + number + "}").getBytes(StandardCharsets.UTF_8))),
+						number);
+			}
+		}
+
+		@Test
+		@DisplayName("Should reject an unknown json.mode")
+		public void config_throwsConfigException_jsonMode() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.JSON_MODE_CONFIG, "tree");
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+
+			transformation = new Splunk<>();
+			assertThrows(ConfigException.class, () -> transformation.configure(props));
+		}
+	}
+
+	@Nested
+	@DisplayName("SplunkTest - Batches")
+	class Batch {
+
+		@Test
+		@DisplayName("Should transform a batch of records like one record at a time")
+		public void batch_returnTransformedRecords() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+			props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+			props.put(Splunk.REGEX_PATTERN_CONFIG, "^(.*) value$");
+			props.put(Splunk.REGEX_FORMAT_CONFIG, "$1");
+
+			Splunk<SinkRecord> splunk = new Splunk<>();
+			splunk.configure(props);
+
+			SinkRecord unchanged = newRecord(createValueMap());
+			List<SinkRecord> result = splunk.applyAll(Arrays.asList(newRecord(createNestedValueMap()),
+					unchanged, newRecord(createNestedValueMap(SOURCE_FIELD_NAME, "other value"))));
+
+			assertEquals(3, result.size());
+			assertEquals("sourceField", requireMapOrNull(result.get(0).value(), TEST_PURPOSE).get(DEST_FIELD_NAME));
+			assertSame(unchanged, result.get(1));
+			assertEquals("other", requireMapOrNull(result.get(2).value(), TEST_PURPOSE).get(DEST_FIELD_NAME));
+			assertEquals(3, SplunkTestHelper.lastMetricValue(Splunk.METRIC_GROUP, "records-in-total"));
+			assertEquals(2, SplunkTestHelper.lastMetricValue(Splunk.METRIC_GROUP, "records-modified-total"));
+			splunk.close();
+		}
+
+		@Test
+		@DisplayName("Should apply a chain of transformations to a batch, leaving out the discarded records")
+		public void batch_returnChainedRecords() {
+			Map<String, Object> filterProps = new HashMap<>();
+			filterProps.put(Filter.FIELD_CONFIG, SOURCE_FIELD_NAME);
+			Filter<SinkRecord> filter = new Filter<>();
+			filter.configure(filterProps);
+
+			Map<String, Object> splunkProps = new HashMap<>();
+			splunkProps.put(Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+			splunkProps.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+			Splunk<SinkRecord> splunk = new Splunk<>();
+			splunk.configure(splunkProps);
+
+			try (BatchTransformationChain<SinkRecord> chain = new BatchTransformationChain<>(
+					Arrays.asList(filter, splunk))) {
+				SinkRecord discarded = newRecord(createValueMap(SOURCE_FIELD_NAME, SOURCE_FIELD_VALUE));
+				List<SinkRecord> result = chain.apply(Arrays.asList(discarded, newRecord(createNestedValueMap())));
+
+				assertEquals(1, result.size());
+				assertEquals(SOURCE_FIELD_VALUE,
+						requireMapOrNull(result.get(0).value(), TEST_PURPOSE).get(DEST_FIELD_NAME));
+				assertTrue(chain.apply(Collections.singleton(discarded)).isEmpty());
+			}
+		}
+
+		@Test
+		@DisplayName("Should transform a large batch in parallel, in order and tracing the same records")
+		public void batch_returnTransformedRecords_parallel() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(Splunk.REGEX_PATTERN_CONFIG, "^value-(.*)$");
+			props.put(Splunk.REGEX_FORMAT_CONFIG, "$1");
+			props.put(Splunk.BATCH_PARALLELISM_CONFIG, 4);
+			props.put(Splunk.BATCH_PARALLEL_THRESHOLD_CONFIG, 100);
+			props.put(Splunk.TRACE_SAMPLE_RATE_CONFIG, 7);
+
+			Splunk<SinkRecord> splunk = new Splunk<>();
+			splunk.configure(props);
+
+			try (SplunkTestHelper.LogMessages log = SplunkTestHelper.captureLog(Splunk.class)) {
+				// the countdown goes on from the records transformed one by one
+				splunk.apply(newRecord(createValueMap(SOURCE_FIELD_NAME, "value-x")));
+
+				List<SinkRecord> records = new ArrayList<>();
+				for (int i = 0; i < 1001; i++) {
+					records.add(newRecord(createValueMap(SOURCE_FIELD_NAME, "value-" + i)));
+				}
+				List<SinkRecord> result = splunk.applyAll(records);
+
+				assertEquals(records.size(), result.size());
+				for (int i = 0; i < records.size(); i++) {
+					assertEquals(String.valueOf(i),
+							requireMapOrNull(result.get(i).value(), TEST_PURPOSE).get(SOURCE_FIELD_NAME));
+				}
+				// 1002 records traced 1 in 7
+				assertEquals(143, log.messages().size());
+				// the parts are traced concurrently, so in any order
+				assertTrue(log.messages().stream().anyMatch(message -> message.contains("\"value-12\" -> \"12\"")));
+				assertFalse(log.messages().stream().anyMatch(message -> message.contains("\"value-13\" -> \"13\"")));
+
+				// the last traced record of the batch is at index 999
+				for (int i = 0; i < 5; i++) {
+					splunk.apply(newRecord(createValueMap(SOURCE_FIELD_NAME, "value-x")));
+				}
+				assertEquals(143, log.messages().size());
+				splunk.apply(newRecord(createValueMap(SOURCE_FIELD_NAME, "value-x")));
+				assertEquals(144, log.messages().size());
+			}
+			splunk.close();
+		}
+
+		@Test
+		@DisplayName("Should throw the exception of a record transformed in parallel")
+		public void batch_throwsDataException_parallel() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(Splunk.BATCH_PARALLELISM_CONFIG, 2);
+			props.put(Splunk.BATCH_PARALLEL_THRESHOLD_CONFIG, 2);
+
+			Splunk<SinkRecord> splunk = new Splunk<>();
+			splunk.configure(props);
+
+			assertThrows(DataException.class, () -> splunk.applyAll(Arrays.asList(newRecord(createValueMap()),
+					newRecord(createValueMap()), newRecord("[]".getBytes(StandardCharsets.UTF_8)))));
+			splunk.close();
+		}
+	}
+
+	@Nested
+	@DisplayName("SplunkTest - Regex cache")
+	class RegexCache {
+
+		@Test
+		@DisplayName("Should return the cached regex results, including the default value")
+		public void message_returnCachedRegexResults() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(Splunk.REGEX_PATTERN_CONFIG, "^app-(.*)$");
+			props.put(Splunk.REGEX_FORMAT_CONFIG, "$1");
+			props.put(Splunk.REGEX_DEFAULT_VALUE_CONFIG, "other");
+			props.put(Splunk.REGEX_CACHE_SIZE_CONFIG, 2);
+			props.put(Splunk.REGEX_CACHE_MAX_KEY_LENGTH_CONFIG, 8);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			for (int i = 0; i < 2; i++) {
+				assertEquals("a", processTransformation(transformation, createValueMap(SOURCE_FIELD_NAME, "app-a"))
+						.get(SOURCE_FIELD_NAME));
+				assertEquals("other", processTransformation(transformation, createValueMap(SOURCE_FIELD_NAME, "b"))
+						.get(SOURCE_FIELD_NAME));
+				assertEquals("long-value", processTransformation(transformation,
+						createValueMap(SOURCE_FIELD_NAME, "app-long-value")).get(SOURCE_FIELD_NAME));
+			}
+
+			assertEquals(2, SplunkTestHelper.lastMetricValue(Splunk.METRIC_GROUP, "regex-cache-hit-total"));
+			assertEquals(4, SplunkTestHelper.lastMetricValue(Splunk.METRIC_GROUP, "regex-cache-miss-total"));
+		}
+
+		@Test
+		@DisplayName("Should evict the least recently used regex results")
+		public void message_evictRegexResults() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(Splunk.REGEX_PATTERN_CONFIG, "^(.*)$");
+			props.put(Splunk.REGEX_FORMAT_CONFIG, "$1!");
+			props.put(Splunk.REGEX_CACHE_SIZE_CONFIG, 1);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			for (String value : new String[] { "a", "a", "b", "a" }) {
+				assertEquals(value + "!", processTransformation(transformation, createValueMap(SOURCE_FIELD_NAME, value))
+						.get(SOURCE_FIELD_NAME));
+			}
+
+			assertEquals(1, SplunkTestHelper.lastMetricValue(Splunk.METRIC_GROUP, "regex-cache-hit-total"));
+			assertEquals(3, SplunkTestHelper.lastMetricValue(Splunk.METRIC_GROUP, "regex-cache-miss-total"));
+		}
+	}
+
+	@Nested
+	@DisplayName("SplunkTest - Regex budget")
+	class RegexBudget {
+
+		// polynomial backtracking, about 2 seconds with {12} instead of {4}
+		private static final String BACKTRACKING_REGEX = "^(.*a){4}$";
+		private static final String BACKTRACKING_VALUE = "aaaaaaaaaaaaaaaaaaaaaaaaaa!";
+
+		@Test
+		@DisplayName("Should write regex.defaultValue if the regex exceeds its budget")
+		public void message_returnDefaultValue_regexBudgetExceeded() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(Splunk.REGEX_PATTERN_CONFIG, BACKTRACKING_REGEX);
+			props.put(Splunk.REGEX_FORMAT_CONFIG, "$1");
+			props.put(Splunk.REGEX_DEFAULT_VALUE_CONFIG, "default");
+			props.put(Splunk.REGEX_BUDGET_CONFIG, 100);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			assertEquals("default", processTransformation(transformation,
+					createValueMap(SOURCE_FIELD_NAME, BACKTRACKING_VALUE)).get(SOURCE_FIELD_NAME));
+			assertEquals("a", processTransformation(transformation, createValueMap(SOURCE_FIELD_NAME, "aaaa"))
+					.get(SOURCE_FIELD_NAME));
+			assertEquals(1, SplunkTestHelper.lastMetricValue(Splunk.METRIC_GROUP, "regex-budget-exceeded-total"));
+		}
+
+		@Test
+		@DisplayName("Should return the original record if the regex exceeds its budget without regex.defaultValue")
+		public void message_returnOrigRecord_regexBudgetExceeded() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(Splunk.REGEX_PATTERN_CONFIG, BACKTRACKING_REGEX);
+			props.put(Splunk.REGEX_FORMAT_CONFIG, "$1");
+			props.put(Splunk.REGEX_BUDGET_CONFIG, 100);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			SinkRecord record = newRecord(createValueMap(SOURCE_FIELD_NAME, BACKTRACKING_VALUE));
+			assertSame(record, transformation.apply(record));
+			assertEquals(1, SplunkTestHelper.lastMetricValue(Splunk.METRIC_GROUP, "regex-budget-exceeded-total"));
+		}
+
+		@Test
+		@DisplayName("Should count every value exceeding the budget when the regex results are cached")
+		public void message_countRegexBudgetExceeded_cachedResults() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(Splunk.REGEX_PATTERN_CONFIG, BACKTRACKING_REGEX);
+			props.put(Splunk.REGEX_FORMAT_CONFIG, "$1");
+			props.put(Splunk.REGEX_DEFAULT_VALUE_CONFIG, "default");
+			props.put(Splunk.REGEX_BUDGET_CONFIG, 100);
+			props.put(Splunk.REGEX_CACHE_SIZE_CONFIG, 16);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			for (int i = 0; i < 3; i++) {
+				assertEquals("default", processTransformation(transformation,
+						createValueMap(SOURCE_FIELD_NAME, BACKTRACKING_VALUE)).get(SOURCE_FIELD_NAME));
+			}
+			assertEquals(3, SplunkTestHelper.lastMetricValue(Splunk.METRIC_GROUP, "regex-budget-exceeded-total"));
+			assertEquals(2, SplunkTestHelper.lastMetricValue(Splunk.METRIC_GROUP, "regex-cache-hit-total"));
+		}
+	}
+
+	@Nested
+	@DisplayName("SplunkTest - Linear regex engine")
+	class LinearRegexEngine {
+
+		@Test
+		@DisplayName("Should format the values as the java engine")
+		public void format_sameAsJavaEngine() {
+			String[][] cases = {
+					{ "crn:(?:[^:]+:){3}([^:]+).*", "cloud_$1_logdna", SOURCE_FIELD_VALUE },
+					{ "(?<service>[a-z-]+)-(\\d+)", "${service}:$2", "billing-service-42" },
+					{ "(a|ab)(c|bcd)(d*)", "$1/$2/$3", "abcd" },
+					{ "(.*?)(\\d+)", "$2", "abc123" },
+					{ "a*", "<$0>", "aaa" },
+					{ "(?i)ERROR|warn(ing)?", "[$0$1]", "WARNING" },
+					{ "\\w+\\b.*", "x", "word, other" },
+					{ "[^/]+/", "-", "a/b" } };
+
+			for (String[] c : cases) {
+				assertEquals(RegexFormatter.compile(c[0], c[1]).format(c[2]),
+						RegexFormatter.compileLinear(c[0], c[1]).format(c[2]), c[0]);
+			}
+		}
+
+		@Test
+		@DisplayName("Should find the matches of java.util.regex and its groups outside repetitions")
+		public void find_sameAsPattern() {
+			// regex, input, groups compared
+			Object[][] cases = {
+					{ "(a|ab)(c|bcd)(d*)", "abcd abcd", new int[] { 1, 2, 3 } },
+					{ "b\\d+?(?:[^a]+?)+|b", "b11bb", new int[0] },
+					{ "(?:b+?)+.[ab]*?", "1abbb", new int[0] },
+					{ "(x)?(\\w+?)(\\d*)$", "ab12\n", new int[] { 1, 2, 3 } },
+					{ "(?:(\\w+)=(\\w*)[,;]?)+", "a=1,b=;c=3", new int[0] },
+					{ "(\\w+\\.)+(\\w+)", "a.bc.d", new int[] { 2 } },
+					// Pattern keeps group 1 of an iteration it has backtracked from
+					{ "(?:([^a]){1,2})*", "b1\n", new int[0] },
+					// and group 2 of the failed alternative
+					{ "(([^a]))+?[ab][^a]*|[^a]?[ab]?", "\n", new int[0] },
+					{ "^(?:\\d{1,2}b{0,2}|a.)+\\b", "11bb1a", new int[0] } };
+
+			for (Object[] c : cases) {
+				String regex = (String) c[0];
+				String input = (String) c[1];
+				java.util.regex.Matcher expected = Pattern.compile(regex).matcher(input);
+				LinearRegex.Matcher actual = LinearRegex.compile(regex).matcher();
+
+				boolean found = actual.find(input, 0);
+				while (expected.find()) {
+					assertTrue(found, regex);
+					assertEquals(expected.start() + "-" + expected.end(), actual.start() + "-" + actual.end(), regex);
+					for (int group : (int[]) c[2]) {
+						assertEquals(expected.group(group), actual.group(group), regex + " group " + group);
+					}
+					found = actual.findNext();
+				}
+				assertFalse(found, regex);
+			}
+
+			LinearRegex.Matcher matcher = LinearRegex.compile("(?:([^a]){1,2})*").matcher();
+			assertTrue(matcher.lookingAt("b1\n"));
+			assertEquals("\n", matcher.group(1));
+		}
+
+		@Test
+		@DisplayName("Should reject the repetitions of what may match an empty string")
+		public void compile_throwsIllegalArgumentException_emptyRepetition() {
+			for (String regex : new String[] { "(a*)*", "(?:b*?)+.[ab]*?", "b\\d+?(?:[^a]*?)+|b", "([^a]*?){2}b",
+					"(?:\\b)+", "(|a)+", "(?:a?b?){1,3}" }) {
+				Pattern.compile(regex);
+				IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+						() -> LinearRegex.compile(regex), regex);
+				assertTrue(e.getMessage().contains("may match an empty string"), regex);
+			}
+			for (String regex : new String[] { "(a*)?", "(?:a+b*)+", "(a*){0,1}", "(?:a?b){2}" }) {
+				LinearRegex.compile(regex);
+			}
+		}
+
+		@Test
+		@DisplayName("Should not backtrack catastrophically")
+		public void message_returnDefaultValue_backtrackingRegex() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			// about 2 seconds with the java engine
+			props.put(Splunk.REGEX_PATTERN_CONFIG, "^(.*a){12}$");
+			props.put(Splunk.REGEX_FORMAT_CONFIG, "$1");
+			props.put(Splunk.REGEX_DEFAULT_VALUE_CONFIG, "default");
+			props.put(Splunk.REGEX_ENGINE_CONFIG, Splunk.REGEX_ENGINE_LINEAR);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			assertEquals("default", processTransformation(transformation,
+					createValueMap(SOURCE_FIELD_NAME, "aaaaaaaaaaaaaaaaaaaaaaaaaa!")).get(SOURCE_FIELD_NAME));
+			assertEquals("a", processTransformation(transformation,
+					createValueMap(SOURCE_FIELD_NAME, "aaaaaaaaaaaaaaaaaaaaaaaaaa")).get(SOURCE_FIELD_NAME));
+		}
+
+		@Test
+		@DisplayName("Should throw ConfigException if the regex is not supported by the linear engine")
+		public void config_throwException_unsupportedRegex() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(Splunk.REGEX_PATTERN_CONFIG, "(a+)\\1");
+			props.put(Splunk.REGEX_FORMAT_CONFIG, "$1");
+			props.put(Splunk.REGEX_ENGINE_CONFIG, Splunk.REGEX_ENGINE_LINEAR);
+
+			transformation = new Splunk<>();
+			ConfigException e = assertThrows(ConfigException.class, () -> transformation.configure(props));
+			assertTrue(e.getMessage().contains(Splunk.REGEX_PATTERN_CONFIG));
+
+			props.put(Splunk.REGEX_ENGINE_CONFIG, Splunk.REGEX_ENGINE_JAVA);
+			transformation.configure(props);
+		}
+	}
+
+	@Nested
+	@DisplayName("SplunkTest - Simple regex shapes")
+	class SimpleRegex {
+
+		@Test
+		@DisplayName("Should format the values as the regex")
+		public void format_sameAsRegex() {
+			String[] regexes = { "^(.*)$", "(.*)", "^prefix-(.*)$", "(.*)-suffix", "^a\\.b(.*)c$", "literal$", ".*" };
+			String[] values = { "", "prefix-", "prefix-value", "value-suffix", "a.bxc", "literal", "line\nbreak",
+					"prefix-line\r" };
+
+			for (String regex : regexes) {
+				assertNotNull(LiteralRegex.compile(regex, "f_$0"), regex);
+				RegexFormatter formatter = RegexFormatter.compile(regex, "f_$0");
+				for (String value : values) {
+					assertEquals(value.matches(regex) ? value.replaceAll(regex, "f_$0") : null, formatter.format(value),
+							regex + " on " + value);
+				}
+			}
+			assertEquals("my_custom_value_format", RegexFormatter.compile("^(.*)$", "my_custom_$1_format").format("value"));
+		}
+
+		@Test
+		@DisplayName("Should leave the other regexes to the regex engine")
+		public void compile_returnNull_notSimpleRegex() {
+			for (String regex : new String[] { "(.*?)", "^(.+)$", "a*(.*)", "(\\d)(.*)", "(.*)|x", "\\Qa\\E(.*)", "" }) {
+				assertNull(LiteralRegex.compile(regex, "$0"), regex);
+			}
+			assertNull(LiteralRegex.compile("^(.*)$", "${name}"));
+		}
+	}
+
+	@Nested
+	@DisplayName("SplunkTest - Timestamp rules")
+	class TimestampRule {
+
+		@Test
+		@DisplayName("Should set the record timestamp and leave the value unchanged")
+		public void message_setRecordTimestamp() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+			props.put(Splunk.TIMESTAMP_FORMATS_CONFIG, "iso8601,epoch");
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			Map<String, Object> value = createValueMap(SOURCE_FIELD_PARENT_OBJECT,
+					createValueMap(SOURCE_FIELD_NAME, "2021-10-16T13:55:36.123Z"));
+			SinkRecord record = newRecord(value);
+			SinkRecord result = transformation.apply(record);
+			assertEquals(1634392536123L, result.timestamp());
+			assertSame(value, result.value());
+			assertEquals("2021-10-16T13:55:36.123Z", getNestedValueMap(value).get(SOURCE_FIELD_NAME));
+
+			getNestedValueMap(value).put(SOURCE_FIELD_NAME, 1634392536L);
+			assertEquals(1634392536000L, transformation.apply(record).timestamp());
+
+			getNestedValueMap(value).put(SOURCE_FIELD_NAME, "yesterday");
+			assertSame(record, transformation.apply(record));
+			assertEquals(1, SplunkTestHelper.lastMetricValue(Splunk.METRIC_GROUP, "rule-timestamp-not-parsed-total"));
+		}
+
+		@Test
+		@DisplayName("Should write the timestamp of JSON bytes and Struct values to a header")
+		public void message_timestampToHeader() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.RULES_CONFIG, "time,index");
+			props.put("rules.time.source.key", NESTED_SOURCE_FIELD_NAME);
+			props.put("rules.time.timestamp.formats", "dd/MMM/yyyy:HH:mm:ss Z,epoch_millis");
+			props.put("rules.time.dest.key", "splunk.header.time");
+			props.put("rules.time.dest.toHeader", true);
+			props.put("rules.index.source.key", "index");
+			props.put("rules.index.dest.toHeader", true);
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			byte[] json = "{\"index\":\"main\",\"nested\":{\"sourceField\":\"16/Oct/2021:13:55:36 +0200\"}}"
+					.getBytes(StandardCharsets.UTF_8);
+			SinkRecord result = transformation.apply(newRecord(json));
+			assertEquals("1634385336000", result.headers().lastWithName("splunk.header.time").value());
+			assertEquals("main", result.headers().lastWithName("index").value());
+			assertEquals("{\"nested\":{\"sourceField\":\"16/Oct/2021:13:55:36 +0200\"}}",
+					new String((byte[]) result.value(), StandardCharsets.UTF_8));
+
+			result = transformation.apply(newRecord(createNestedStruct(SOURCE_FIELD_NAME, "1634385336007")));
+			assertEquals("1634385336007", result.headers().lastWithName("splunk.header.time").value());
+			assertNull(result.timestamp());
+		}
+
+		@Test
+		@DisplayName("Should set the record timestamp of JSON bytes parsed with a regex")
+		public void message_setRecordTimestamp_jsonBytesRegex() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, "message");
+			props.put(Splunk.REGEX_PATTERN_CONFIG, "^\\[([^\\]]+)\\].*");
+			props.put(Splunk.REGEX_FORMAT_CONFIG, "$1");
+			props.put(Splunk.TIMESTAMP_FORMATS_CONFIG, "iso8601");
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			byte[] json = "{\"message\":\"[2021-10-16 13:55:36,5+02:00] started\"}".getBytes(StandardCharsets.UTF_8);
+			SinkRecord record = newRecord(json);
+			SinkRecord result = transformation.apply(record);
+			assertEquals(1634385336500L, result.timestamp());
+			assertSame(json, result.value());
+		}
+
+		@Test
+		@DisplayName("Should reuse the parsed second of consecutive timestamps")
+		public void parse_consecutiveTimestamps() {
+			TimestampParser parser = TimestampParser.compile(Arrays.asList("iso8601", "yyyy/MM/dd HH:mm:ss"),
+					java.time.ZoneId.of("Europe/Paris"));
+			String[] values = { "2021-10-16T13:55:36.001Z", "2021-10-16T13:55:36.999+01:00", "2021-10-16T13:55:37Z",
+					"2021-10-16T13:55:36,5Z", "2021-10-16T13:55:36.5x" };
+			long[] expected = { 1634392536001L, 1634388936999L, 1634392537000L, 1634392536500L, Timestamps.INVALID };
+			for (int i = 0; i < values.length; i++) {
+				assertEquals(expected[i], parser.parse(values[i]), values[i]);
+			}
+			assertEquals(1634385336000L, parser.parse("2021/10/16 13:55:36"));
+			assertEquals(1634385336000L, parser.parse("2021/10/16 13:55:36"));
+			assertEquals(Timestamps.INVALID, parser.parse("2021/10/16"));
+		}
+
+		@Test
+		@DisplayName("Should throw an exception for an invalid timestamp rule")
+		public void config_throwException_invalidTimestampRule() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, SOURCE_FIELD_NAME);
+			props.put(Splunk.TIMESTAMP_FORMATS_CONFIG, "iso8601,yyyy-MM-dd'T");
+
+			transformation = new Splunk<>();
+			ConfigException e = assertThrows(ConfigException.class, () -> transformation.configure(props));
+			assertTrue(e.getMessage().contains(Splunk.TIMESTAMP_FORMATS_CONFIG));
+
+			props.put(Splunk.TIMESTAMP_FORMATS_CONFIG, "iso8601");
+			props.put(Splunk.TIMESTAMP_ZONE_CONFIG, "Mars/Olympus");
+			assertThrows(ConfigException.class, () -> transformation.configure(props));
+
+			props.remove(Splunk.TIMESTAMP_ZONE_CONFIG);
+			props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+			assertThrows(RuntimeException.class, () -> transformation.configure(props));
+		}
+	}
+
+	@Nested
+	@DisplayName("SplunkTest - Regex outputs")
+	class RegexOutputs {
+
+		private Map<String, Object> outputProps() {
+			Map<String, Object> props = new HashMap<>();
+			props.put(Splunk.SOURCE_KEY_CONFIG, NESTED_SOURCE_FIELD_NAME);
+			props.put(Splunk.REGEX_PATTERN_CONFIG, "^(\\w+) (?<app>[\\w-]+): (.*)$");
+			props.put(Splunk.REGEX_FORMAT_CONFIG, "$3");
+			props.put(Splunk.REGEX_OUTPUTS_CONFIG, "index,host,sourcetype");
+			props.put("regex.outputs.index", "$1");
+			props.put("regex.outputs.host", "${app}");
+			props.put("regex.outputs.host.toHeader", true);
+			props.put("regex.outputs.sourcetype", "app:${app}");
+			return props;
+		}
+
+		@Test
+		@DisplayName("Should fill the outputs of Map, JSON bytes and Struct values from the same match")
+		public void message_fillOutputs() {
+			transformation = new Splunk<>();
+			transformation.configure(outputProps());
+
+			Map<String, Object> value = createValueMap(SOURCE_FIELD_PARENT_OBJECT,
+					createValueMap(SOURCE_FIELD_NAME, "main billing-api: started"));
+			SinkRecord result = transformation.apply(newRecord(value));
+			assertEquals("started", getNestedValueMap(value).get(SOURCE_FIELD_NAME));
+			assertEquals("main", value.get("index"));
+			assertEquals("app:billing-api", value.get("sourcetype"));
+			assertFalse(value.containsKey("host"));
+			assertEquals("billing-api", result.headers().lastWithName("host").value());
+
+			byte[] json = "{\"nested\":{\"sourceField\":\"main billing-api: started\"}}".getBytes(StandardCharsets.UTF_8);
+			result = transformation.apply(newRecord(json));
+			assertEquals("{\"nested\":{\"sourceField\":\"started\"},\"index\":\"main\",\"sourcetype\":\"app:billing-api\"}",
+					new String((byte[]) result.value(), StandardCharsets.UTF_8));
+			assertEquals("billing-api", result.headers().lastWithName("host").value());
+
+			result = transformation.apply(newRecord(createNestedStruct(SOURCE_FIELD_NAME, "main billing-api: started")));
+			Struct struct = (Struct) result.value();
+			assertEquals("started", struct.getStruct(SOURCE_FIELD_PARENT_OBJECT).get(SOURCE_FIELD_NAME));
+			assertEquals("main", struct.get("index"));
+			assertEquals("app:billing-api", struct.get("sourcetype"));
+			assertEquals("billing-api", result.headers().lastWithName("host").value());
+		}
+
+		@Test
+		@DisplayName("Should write the default value to the outputs if the regex does not match")
+		public void message_defaultOutputs() {
+			Map<String, Object> props = outputProps();
+			props.put(Splunk.REGEX_DEFAULT_VALUE_CONFIG, "unknown");
+			props.put(Splunk.REGEX_ENGINE_CONFIG, Splunk.REGEX_ENGINE_LINEAR);
+			props.put("regex.outputs.host", "$2");
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			Map<String, Object> value = createValueMap(SOURCE_FIELD_PARENT_OBJECT,
+					createValueMap(SOURCE_FIELD_NAME, "main billing-api: started"));
+			SinkRecord result = transformation.apply(newRecord(value));
+			assertEquals("started", getNestedValueMap(value).get(SOURCE_FIELD_NAME));
+			assertEquals("main", value.get("index"));
+			assertEquals("billing-api", result.headers().lastWithName("host").value());
+
+			byte[] json = "{\"nested\":{\"sourceField\":\"started\"}}".getBytes(StandardCharsets.UTF_8);
+			result = transformation.apply(newRecord(json));
+			assertEquals("{\"nested\":{\"sourceField\":\"unknown\"},\"index\":\"unknown\",\"sourcetype\":\"unknown\"}",
+					new String((byte[]) result.value(), StandardCharsets.UTF_8));
+			assertEquals("unknown", result.headers().lastWithName("host").value());
+		}
+
+		@Test
+		@DisplayName("Should leave the source field unchanged without regex.format")
+		public void message_outputsOnly() {
+			Map<String, Object> props = outputProps();
+			props.remove(Splunk.REGEX_FORMAT_CONFIG);
+			props.put(Splunk.REGEX_OUTPUTS_CONFIG, "host");
+
+			transformation = new Splunk<>();
+			transformation.configure(props);
+
+			Map<String, Object> value = createValueMap(SOURCE_FIELD_PARENT_OBJECT,
+					createValueMap(SOURCE_FIELD_NAME, "main billing-api: started"));
+			SinkRecord result = transformation.apply(newRecord(value));
+			assertEquals(createValueMap(SOURCE_FIELD_PARENT_OBJECT,
+					createValueMap(SOURCE_FIELD_NAME, "main billing-api: started")), value);
+			assertEquals("billing-api", result.headers().lastWithName("host").value());
+
+			byte[] json = "{\"nested\":{\"sourceField\":\"main billing-api: started\"}}".getBytes(StandardCharsets.UTF_8);
+			result = transformation.apply(newRecord(json));
+			assertSame(json, result.value());
+			assertEquals("billing-api", result.headers().lastWithName("host").value());
+
+			Struct struct = createNestedStruct(SOURCE_FIELD_NAME, "main billing-api: started");
+			result = transformation.apply(newRecord(struct));
+			assertSame(struct, result.value());
+			assertEquals("billing-api", result.headers().lastWithName("host").value());
+		}
+
+		@Test
+		@DisplayName("Should throw an exception for invalid outputs")
+		public void config_throwException_invalidOutputs() {
+			Map<String, Object> props = outputProps();
+			props.remove("regex.outputs.index");
+
+			transformation = new Splunk<>();
+			ConfigException e = assertThrows(ConfigException.class, () -> transformation.configure(props));
+			assertTrue(e.getMessage().contains("regex.outputs.index"));
+
+			props.put("regex.outputs.index", "${missing}");
+			props.put(Splunk.REGEX_ENGINE_CONFIG, Splunk.REGEX_ENGINE_LINEAR);
+			e = assertThrows(ConfigException.class, () -> transformation.configure(props));
+			assertTrue(e.getMessage().contains(Splunk.REGEX_OUTPUTS_CONFIG));
+
+			props.put("regex.outputs.index", "$1");
+			props.remove(Splunk.REGEX_FORMAT_CONFIG);
+			props.put(Splunk.DEST_KEY_CONFIG, DEST_FIELD_NAME);
+			assertThrows(RuntimeException.class, () -> transformation.configure(props));
+
+			props.remove(Splunk.DEST_KEY_CONFIG);
+			props.remove(Splunk.REGEX_PATTERN_CONFIG);
+			assertThrows(RuntimeException.class, () -> transformation.configure(props));
+		}
 	}
-}
\ No newline at end of file
+}
@@ -7,9 +7,19 @@ package com.ibm.garage.kafka.connect.transforms;
 
 import static org.apache.kafka.connect.transforms.util.Requirements.requireMapOrNull;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
 import org.apache.kafka.connect.sink.SinkRecord;
 import org.apache.kafka.connect.transforms.Transformation;
 
@@ -32,6 +42,14 @@ public class SplunkTestHelper {
 		return new SinkRecord("topic", 1, null, null, null, value, 1L);
 	}
 
+	public static SinkRecord newRecord(Struct value) {
+		return new SinkRecord("topic", 1, null, null, value.schema(), value, 1L);
+	}
+
+	public static SinkRecord newRecord(byte[] value) {
+		return new SinkRecord("topic", 1, null, null, null, value, 1L);
+	}
+
 	public static SinkRecord applyTransformation(Transformation<SinkRecord> transformation,
 			Map<String, Object> valueMap) {
 		return transformation.apply(newRecord(valueMap));
@@ -75,6 +93,66 @@ public class SplunkTestHelper {
 		return parentValueMap;
 	}
 
+	public static Struct createNestedStruct(String fieldName, String fieldValue) {
+		Schema nestedSchema = SchemaBuilder.struct().field(fieldName, Schema.STRING_SCHEMA).build();
+		Schema parentSchema = SchemaBuilder.struct().field("id", Schema.INT32_SCHEMA)
+				.field(SOURCE_FIELD_PARENT_OBJECT, nestedSchema).build();
+
+		return new Struct(parentSchema).put("id", 1)
+				.put(SOURCE_FIELD_PARENT_OBJECT, new Struct(nestedSchema).put(fieldName, fieldValue));
+	}
+
+	/**
+	 * Returns the value of a metric of the last configured transformation.
+	 */
+	public static double lastMetricValue(String group, String name) {
+		return TransformMetrics.registry().metrics().entrySet().stream()
+				.filter(metric -> metric.getKey().group().equals(group) && metric.getKey().name().equals(name))
+				.max(Comparator.comparingInt(
+						metric -> Integer.parseInt(metric.getKey().tags().get(TransformMetrics.INSTANCE_TAG))))
+				.map(metric -> (Double) metric.getValue().metricValue())
+				.orElseThrow(() -> new AssertionError("Metric " + group + "/" + name + " is not registered"));
+	}
+
+	/**
+	 * Collects the messages logged by the class until the returned appender is
+	 * closed.
+	 */
+	public static LogMessages captureLog(Class<?> loggerClass) {
+		LogMessages messages = new LogMessages(Logger.getLogger(loggerClass));
+		messages.logger.addAppender(messages);
+		return messages;
+	}
+
+	public static class LogMessages extends AppenderSkeleton implements AutoCloseable {
+
+		private final Logger logger;
+		private final List<String> messages = new ArrayList<>();
+
+		LogMessages(Logger logger) {
+			this.logger = logger;
+		}
+
+		public List<String> messages() {
+			return this.messages;
+		}
+
+		@Override
+		protected void append(LoggingEvent event) {
+			this.messages.add(event.getRenderedMessage());
+		}
+
+		@Override
+		public void close() {
+			this.logger.removeAppender(this);
+		}
+
+		@Override
+		public boolean requiresLayout() {
+			return false;
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	public static Map<String, Object> getNestedValueMap(Map<String, Object> valueMap) {
 		return (Map<String, Object>) valueMap.get(SOURCE_FIELD_PARENT_OBJECT);